@@ -0,0 +1,111 @@
+package com.microservicio.ms_imagenes_dyc.benchmark;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservicio.ms_imagenes_dyc.config.DeliveryProperties;
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.config.MetadataIndexProperties;
+import com.microservicio.ms_imagenes_dyc.controller.AwsS3Controller;
+import com.microservicio.ms_imagenes_dyc.service.ContentDeliveryService;
+import com.microservicio.ms_imagenes_dyc.service.ImageResizeService;
+import com.microservicio.ms_imagenes_dyc.service.MetadataIndex;
+
+// Camino completo del controlador (dispatch de Spring MVC, Jackson para el listado y el
+// byte[] de la descarga) sobre el servicio real y el S3 en memoria, sin Tomcat ni red
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    private static final String KEY = "fotos/campania.png";
+
+    @State(Scope.Benchmark)
+    public static class Listing {
+
+        @Param({"100", "1000"})
+        int objects;
+
+        S3Fixture fixture;
+        MockMvc mockMvc;
+
+        @Setup
+        public void setUp() {
+            fixture = new S3Fixture(false);
+            ListBenchmark.fill(fixture, objects);
+            mockMvc = mockMvc(fixture);
+        }
+
+        @TearDown
+        public void tearDown() {
+            fixture.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Download {
+
+        @Param({"1024", "1048576"})
+        int size;
+
+        S3Fixture fixture;
+        MockMvc mockMvc;
+
+        @Setup
+        public void setUp() {
+            fixture = new S3Fixture(true);
+            fixture.s3.put(S3Fixture.BUCKET, KEY, InMemoryS3.content(size));
+            mockMvc = mockMvc(fixture);
+        }
+
+        @TearDown
+        public void tearDown() {
+            fixture.close();
+        }
+    }
+
+    @Benchmark
+    public byte[] listObjects(Listing state) throws Exception {
+        return state.mockMvc.perform(get("/s3/{bucket}/objects", S3Fixture.BUCKET).param("prefix", ListBenchmark.PREFIX))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] downloadObject(Download state) throws Exception {
+        return state.mockMvc.perform(get("/s3/{bucket}/object", S3Fixture.BUCKET).param("key", KEY))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    // Solo los endpoints medidos: las variantes, los lotes y la deduplicación no intervienen. Sin
+    // Accept la negociación de /object no consulta S3 y se mide el camino del original; sin índice
+    // el listado va al S3 en memoria (ListBenchmark mide el índice).
+    private static MockMvc mockMvc(S3Fixture fixture) {
+        ContentDeliveryService delivery = new ContentDeliveryService(fixture.service,
+                new ImageResizeService(fixture.service, new ImageProperties(), fixture.metrics, Runnable::run), new DeliveryProperties(),
+                Runnable::run);
+        return MockMvcBuilders
+                .standaloneSetup(new AwsS3Controller(fixture.service, null, null, null, delivery,
+                        new MetadataIndex(fixture.service, null, new MetadataIndexProperties(), new ImageProperties()),
+                        new ObjectMapper(), new ImageProperties()))
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.microservicio.ms_imagenes_dyc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// downloadAsBytes: objeto completo en memoria, con y sin la cache de objetos delante
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadBenchmark {
+
+    private static final String KEY = "fotos/campania.png";
+
+    // Hasta 4MB: por encima de s3.cache.max-object-size no se cachea
+    @Param({"1024", "65536", "1048576", "4194304"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean cache;
+
+    private S3Fixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = new S3Fixture(cache);
+        fixture.s3.put(S3Fixture.BUCKET, KEY, InMemoryS3.content(size));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public byte[] downloadAsBytes() {
+        return fixture.service.downloadAsBytes(S3Fixture.BUCKET, KEY);
+    }
+}
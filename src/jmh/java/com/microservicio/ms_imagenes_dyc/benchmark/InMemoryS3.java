@@ -0,0 +1,197 @@
+package com.microservicio.ms_imagenes_dyc.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+// S3 en memoria detrás del S3Client real: el benchmark mide la serialización, la firma y el
+// parseo de respuestas del SDK, pero no la red. Entiende lo justo para los benchmarks:
+// GET/PUT/DELETE de objetos y ListObjectsV2 (path-style, sin versiones ni checksums).
+public class InMemoryS3 implements SdkHttpClient {
+
+    private static final String LAST_MODIFIED = "2025-07-19T10:15:30.000Z";
+    private static final String HTTP_LAST_MODIFIED = "Sat, 19 Jul 2025 10:15:30 GMT";
+
+    private final Map<String, NavigableMap<String, byte[]>> buckets = new ConcurrentHashMap<>();
+
+    // Cliente como el de la aplicación pero apuntando a este stand-in. El endpoint https evita
+    // que el SDK firme el cuerpo por chunks; nunca se abre una conexión.
+    public S3Client client() {
+        return S3Client.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKID", "SECRET")))
+                .endpointOverride(URI.create("https://s3.local"))
+                .forcePathStyle(true)
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED)
+                .httpClient(this)
+                .build();
+    }
+
+    public void put(String bucket, String key, byte[] content) {
+        buckets.computeIfAbsent(bucket, ignored -> new ConcurrentSkipListMap<>()).put(key, content);
+    }
+
+    @Override
+    public ExecutableHttpRequest prepareRequest(HttpExecuteRequest request) {
+        return new ExecutableHttpRequest() {
+            @Override
+            public HttpExecuteResponse call() throws IOException {
+                return handle(request);
+            }
+
+            @Override
+            public void abort() {
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private HttpExecuteResponse handle(HttpExecuteRequest request) throws IOException {
+        SdkHttpRequest http = request.httpRequest();
+        String path = URLDecoder.decode(http.encodedPath().replace("+", "%2B"), StandardCharsets.UTF_8);
+        int slash = path.indexOf('/', 1);
+        String bucket = slash < 0 ? path.substring(1) : path.substring(1, slash);
+        String key = slash < 0 ? "" : path.substring(slash + 1);
+
+        if (key.isEmpty()) {
+            return list(bucket, http.rawQueryParameters());
+        }
+        NavigableMap<String, byte[]> objects = buckets.computeIfAbsent(bucket, ignored -> new ConcurrentSkipListMap<>());
+        switch (http.method()) {
+            case PUT -> {
+                try (InputStream body = request.contentStreamProvider().orElseThrow().newStream()) {
+                    objects.put(key, body.readAllBytes());
+                }
+                return response(200, eTag(key), null);
+            }
+            case DELETE -> {
+                objects.remove(key);
+                return response(204, null, null);
+            }
+            case GET, HEAD -> {
+                byte[] content = objects.get(key);
+                if (content == null) {
+                    return error(404, "NoSuchKey");
+                }
+                return response(200, eTag(key), content);
+            }
+            default -> {
+                return error(405, "MethodNotAllowed");
+            }
+        }
+    }
+
+    // ListObjectsV2 con prefix, max-keys y continuation-token (la última key devuelta)
+    private HttpExecuteResponse list(String bucket, Map<String, List<String>> query) {
+        NavigableMap<String, byte[]> objects = buckets.getOrDefault(bucket, new ConcurrentSkipListMap<>());
+        String prefix = first(query, "prefix", "");
+        int maxKeys = Integer.parseInt(first(query, "max-keys", "1000"));
+        String token = first(query, "continuation-token", null);
+
+        NavigableMap<String, byte[]> range = token != null ? objects.tailMap(token, false) : objects;
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        String last = null;
+        boolean truncated = false;
+        for (Map.Entry<String, byte[]> entry : range.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                if (entry.getKey().compareTo(prefix) > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            contents.append("<Contents><Key>").append(xml(entry.getKey())).append("</Key>")
+                    .append("<LastModified>").append(LAST_MODIFIED).append("</LastModified>")
+                    .append("<ETag>").append(xml(eTag(entry.getKey()))).append("</ETag>")
+                    .append("<Size>").append(entry.getValue().length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+            last = entry.getKey();
+            count++;
+        }
+
+        StringBuilder body = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(xml(bucket)).append("</Name>")
+                .append("<Prefix>").append(xml(prefix)).append("</Prefix>")
+                .append("<KeyCount>").append(count).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            body.append("<NextContinuationToken>").append(xml(last)).append("</NextContinuationToken>");
+        }
+        body.append(contents).append("</ListBucketResult>");
+        return response(200, null, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HttpExecuteResponse response(int status, String eTag, byte[] body) {
+        SdkHttpResponse.Builder response = SdkHttpResponse.builder()
+                .statusCode(status)
+                .putHeader("Content-Length", String.valueOf(body != null ? body.length : 0))
+                .putHeader("Last-Modified", HTTP_LAST_MODIFIED);
+        if (eTag != null) {
+            response.putHeader("ETag", eTag);
+        }
+        return HttpExecuteResponse.builder()
+                .response(response.build())
+                .responseBody(AbortableInputStream.create(
+                        new ByteArrayInputStream(body != null ? body : new byte[0])))
+                .build();
+    }
+
+    private static HttpExecuteResponse error(int status, String code) {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code>"
+                + "<Message>" + code + "</Message></Error>").getBytes(StandardCharsets.UTF_8);
+        return response(status, null, body);
+    }
+
+    private static String eTag(String key) {
+        return "\"" + Integer.toHexString(key.hashCode()) + "\"";
+    }
+
+    private static String first(Map<String, List<String>> query, String name, String fallback) {
+        List<String> values = query.get(name);
+        return values == null || values.isEmpty() ? fallback : values.get(0);
+    }
+
+    private static String xml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    // Cuerpo de prueba del tamaño pedido (no comprimible, como una imagen)
+    public static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+}
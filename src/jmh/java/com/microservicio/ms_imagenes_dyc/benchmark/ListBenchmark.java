@@ -0,0 +1,84 @@
+package com.microservicio.ms_imagenes_dyc.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.config.MetadataIndexProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
+import com.microservicio.ms_imagenes_dyc.service.MetadataIndex;
+
+// Una página de ListObjectsV2 (parseo del XML del SDK más el mapeo a S3ObjectDto) contra la
+// misma página y una búsqueda por tamaño resueltas desde el índice en memoria
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListBenchmark {
+
+    static final String PREFIX = "fotos/";
+
+    @Param({"10", "100", "1000"})
+    int objects;
+
+    private S3Fixture fixture;
+    private MetadataIndex index;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        fixture = new S3Fixture(false);
+        fill(fixture, objects);
+        MetadataIndexProperties properties = new MetadataIndexProperties();
+        properties.setEnabled(true);
+        properties.setBuckets(List.of(S3Fixture.BUCKET));
+        index = new MetadataIndex(fixture.service, fixture.executor, properties, new ImageProperties());
+        index.init();
+        while (!index.isReady(S3Fixture.BUCKET)) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        index.shutdown();
+        fixture.close();
+    }
+
+    @Benchmark
+    public S3ObjectPageDto listObjects() {
+        return fixture.service.listObjects(S3Fixture.BUCKET, PREFIX, null, 1000, null);
+    }
+
+    @Benchmark
+    public S3ObjectPageDto listObjectsFromIndex() {
+        return index.list(S3Fixture.BUCKET, PREFIX, null, 1000, null);
+    }
+
+    @Benchmark
+    public List<S3ObjectDto> searchBySizeFromIndex() {
+        return index.search(S3Fixture.BUCKET, PREFIX, new MetadataIndex.Filter(2048L, null, null, null), 1000);
+    }
+
+    static void fill(S3Fixture fixture, int objects) {
+        byte[] content = InMemoryS3.content(1024);
+        for (int i = 0; i < objects; i++) {
+            fixture.s3.put(S3Fixture.BUCKET, String.format("%s%05d.png", PREFIX, i), content);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.microservicio.ms_imagenes_dyc.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.microservicio.ms_imagenes_dyc.config.ObjectCacheProperties;
+import com.microservicio.ms_imagenes_dyc.config.UploadProperties;
+import com.microservicio.ms_imagenes_dyc.service.AwsS3Service;
+import com.microservicio.ms_imagenes_dyc.service.DiskObjectCache;
+import com.microservicio.ms_imagenes_dyc.service.MultipartUploader;
+import com.microservicio.ms_imagenes_dyc.service.S3Metrics;
+import com.microservicio.ms_imagenes_dyc.service.S3ObjectCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.services.s3.S3Client;
+
+// AwsS3Service armado como en la aplicación (métricas incluidas) sobre el S3 en memoria
+final class S3Fixture implements AutoCloseable {
+
+    static final String BUCKET = "bucketdyc";
+
+    final InMemoryS3 s3 = new InMemoryS3();
+    final S3Client s3Client = s3.client();
+    final S3Metrics metrics = new S3Metrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+    final AwsS3Service service;
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // Sin cache los GET llegan siempre al SDK; con cache se mide el camino de acierto
+    S3Fixture(boolean cache) {
+        ObjectCacheProperties cacheProperties = new ObjectCacheProperties();
+        cacheProperties.setEnabled(cache);
+        service = new AwsS3Service(s3Client, new S3ObjectCache(cacheProperties), new DiskObjectCache(cacheProperties),
+                new MultipartUploader(s3Client, new UploadProperties(), executor), event -> { }, metrics,
+                executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        s3Client.close();
+    }
+}
@@ -0,0 +1,61 @@
+package com.microservicio.ms_imagenes_dyc.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+// getObjectInputStream leído hasta el final con un buffer fijo, como lo copia /object/stream
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamBenchmark {
+
+    private static final String KEY = "videos/campania.mp4";
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    int size;
+
+    private final byte[] buffer = new byte[8192];
+    private S3Fixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = new S3Fixture(false);
+        fixture.s3.put(S3Fixture.BUCKET, KEY, InMemoryS3.content(size));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public long getObjectInputStream() throws IOException {
+        try (ResponseInputStream<GetObjectResponse> in = fixture.service.getObjectInputStream(S3Fixture.BUCKET, KEY)) {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                total += read;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.microservicio.ms_imagenes_dyc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+// upload de un MultipartFile (el camino de POST /object), hasta el límite de 3MB del multipart
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"1024", "65536", "1048576", "3145728"})
+    int size;
+
+    private S3Fixture fixture;
+    private MockMultipartFile file;
+
+    @Setup
+    public void setUp() {
+        fixture = new S3Fixture(true);
+        file = new MockMultipartFile("file", "campania.png", "image/png", InMemoryS3.content(size));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public String upload() {
+        return fixture.service.upload(S3Fixture.BUCKET, "subidas/campania.png", file);
+    }
+}
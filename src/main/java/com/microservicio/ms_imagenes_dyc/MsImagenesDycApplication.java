@@ -2,8 +2,10 @@ package com.microservicio.ms_imagenes_dyc;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class MsImagenesDycApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,35 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Control de admisión delante de los endpoints de /s3/**. Las URLs firmadas se generan
+// localmente sin llamar a S3, así que quedan fuera.
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+@ConditionalOnProperty(prefix = "s3.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionConfig implements WebMvcConfigurer {
+
+	private final AdmissionProperties properties;
+
+	public AdmissionConfig(AdmissionProperties properties) {
+		this.properties = properties;
+	}
+
+	// También es un MeterBinder: límites en curso, tokens y rechazos por bucket en /actuator/metrics
+	@Bean
+	public S3AdmissionControl s3AdmissionControl() {
+		return new S3AdmissionControl(properties);
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new S3AdmissionInterceptor(s3AdmissionControl()))
+				.addPathPatterns("/s3/**")
+				.excludePathPatterns("/s3/*/presigned", "/s3/*/presigned/**");
+	}
+}
@@ -0,0 +1,62 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@ConfigurationProperties(prefix = "s3.admission")
+public class AdmissionProperties {
+
+	// Control de admisión de /s3/**; desactivado, todas las peticiones pasan
+	private boolean enabled = true;
+
+	// Límites de cada bucket para lecturas (GET/HEAD) y escrituras (POST/PUT/DELETE)
+	private Limits read = new Limits(200, 400, 64);
+	private Limits write = new Limits(50, 100, 16);
+
+	// Límites propios de algunos buckets; cada bloque read/write reemplaza al general completo
+	private Map<String, Budgets> buckets = new HashMap<>();
+
+	// Límites adicionales por operación (nombre del método del controller, ej. exportZip),
+	// también por bucket y sumados a los de read/write
+	private Map<String, Limits> operations = new HashMap<>();
+
+	// Retry-After de los rechazos por concurrencia (los de tasa calculan cuándo habrá token)
+	private Duration busyRetryAfter = Duration.ofSeconds(1);
+
+	// Buckets sin límites propios con presupuesto propio; a partir de aquí comparten uno, así un
+	// path inventado no crea límites (ni métricas) sin fin. Los de "buckets" no cuentan.
+	private int maxBuckets = 100;
+
+	// Sin peticiones durante este tiempo, un bucket cede su lugar a uno nuevo
+	private Duration idleBucketTimeout = Duration.ofMinutes(10);
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Limits {
+
+		// Peticiones por segundo sostenidas (0 = sin límite de tasa)
+		private double ratePerSecond;
+
+		// Ráfaga admitida por encima de la tasa (0 = la tasa de un segundo)
+		private int burst;
+
+		// Peticiones en curso a la vez (0 = sin límite)
+		private int maxConcurrency;
+	}
+
+	@Data
+	public static class Budgets {
+
+		private Limits read;
+		private Limits write;
+	}
+}
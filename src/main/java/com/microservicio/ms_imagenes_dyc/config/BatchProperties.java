@@ -0,0 +1,21 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.batch")
+public class BatchProperties {
+
+	// Copias en paralelo por cada movimiento en lote
+	private int moveParallelism = 8;
+
+	// Objetos que se piden a S3 por adelantado mientras se escribe el ZIP de un prefijo
+	private int zipPrefetchObjects = 8;
+
+	// Bytes de cada objeto adelantado que se leen a memoria; el resto se copia del stream de S3
+	// al escribirlo. Memoria máxima por ZIP: zipPrefetchObjects x zipPrefetchBytes.
+	private DataSize zipPrefetchBytes = DataSize.ofMegabytes(1);
+}
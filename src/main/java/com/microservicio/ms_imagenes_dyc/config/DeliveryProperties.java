@@ -0,0 +1,36 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.delivery")
+public class DeliveryProperties {
+
+	// Cache-Control de /object y /image (la respuesta varía por Accept/Accept-Encoding)
+	private String cacheControl = "public, max-age=3600";
+
+	// Tipos que se guardan también comprimidos con gzip al subirlos por /object
+	private List<String> compressibleTypes = new ArrayList<>(List.of(
+			"text/plain", "text/css", "text/csv", "text/html", "text/javascript",
+			"application/javascript", "application/json", "application/xml", "image/svg+xml"));
+
+	// Objetos más chicos no se comprimen (el ahorro no compensa el GET extra)
+	private DataSize compressionMinSize = DataSize.ofKilobytes(1);
+
+	// Ni más grandes: la copia comprimida se arma en memoria antes de subirla
+	private DataSize compressionMaxSize = DataSize.ofMegabytes(20);
+
+	// Formatos de imagen que se ofrecen según Accept, en orden de preferencia; los que ImageIO
+	// no sabe escribir se ignoran (WebP viene con webp-imageio; AVIF necesita agregar un plugin)
+	private List<String> imageFormats = new ArrayList<>(List.of("webp"));
+
+	// Tiempo que se recuerda que una variante no existe antes de volver a preguntar a S3
+	private Duration missingVariantTtl = Duration.ofMinutes(5);
+}
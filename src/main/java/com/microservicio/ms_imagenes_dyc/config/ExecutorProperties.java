@@ -0,0 +1,13 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.executor")
+public class ExecutorProperties {
+
+	// Hilos del pool compartido para llamadas concurrentes a S3 (partes de subida, copias en lote)
+	private int threads = 16;
+}
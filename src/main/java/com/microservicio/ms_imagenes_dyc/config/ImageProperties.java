@@ -0,0 +1,52 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.images")
+public class ImageProperties {
+
+	// Hilos para decodificar/redimensionar; 0 = cantidad de núcleos
+	private int threads = 0;
+
+	// Trabajos en espera antes de rechazar con 503
+	private int queueCapacity = 100;
+
+	// Tiempo máximo de espera de un redimensionado
+	private Duration timeout = Duration.ofSeconds(30);
+
+	// Lado máximo permitido para una variante
+	private int maxDimension = 4096;
+
+	// Píxeles máximos (ancho x alto) de un original a decodificar; más grande se rechaza con 413.
+	// 50M píxeles ocupan unos 200MB ya decodificados
+	private long maxSourcePixels = 50_000_000L;
+
+	// Originales más pesados que esto no generan variantes al subirse, porque se leen enteros a
+	// memoria (ej. los que llegan por PUT /object sin límite de tamaño); se generan al pedirlos
+	private DataSize maxEagerSourceSize = DataSize.ofMegabytes(32);
+
+	// Calidad JPEG (0..1)
+	private float jpegQuality = 0.85f;
+
+	// Prefijo bajo el que se guardan las variantes generadas
+	private String variantPrefix = "_variants/";
+
+	// Variantes generadas en segundo plano al subir una imagen, con el mismo formato que su
+	// nombre en S3: "150x150-cover", "600xauto-contain", "600xauto-contain.webp"
+	private List<String> eagerVariants = new ArrayList<>();
+
+	// Hilos que orquestan la generación anticipada (descarga, redimensionado y subida)
+	private int eagerThreads = 2;
+
+	// Subidas en espera; con la cola llena se omiten (métrica s3.images.eager.skipped) y cada
+	// variante se genera al primer pedido
+	private int eagerQueueCapacity = 50;
+}
@@ -0,0 +1,34 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.index")
+public class MetadataIndexProperties {
+
+	// Índice en memoria de los metadatos de los buckets listados; los demás se listan en S3
+	private boolean enabled = false;
+
+	// Buckets a indexar al arrancar
+	private List<String> buckets = new ArrayList<>();
+
+	// Niveles de "carpetas" que se expanden con delimiter antes de repartir el escaneo:
+	// cada prefijo de ese nivel se lista completo en paralelo
+	private int scanDepth = 1;
+
+	// Separador de "carpetas" para repartir el escaneo
+	private String scanDelimiter = "/";
+
+	// Listados simultáneos durante el escaneo
+	private int scanParallelism = 8;
+
+	// Cada cuánto se vuelve a escanear el bucket para incorporar cambios hechos fuera del
+	// servicio (subidas con URL firmada, otros procesos)
+	private Duration reconcileInterval = Duration.ofMinutes(30);
+}
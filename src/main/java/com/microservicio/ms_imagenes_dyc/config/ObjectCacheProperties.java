@@ -0,0 +1,59 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.cache")
+public class ObjectCacheProperties {
+
+	// Activa la cache en memoria delante de downloadAsBytes
+	private boolean enabled = true;
+
+	// Presupuesto total en bytes (no en cantidad de entradas)
+	private DataSize maxSize = DataSize.ofMegabytes(64);
+
+	// Objetos más grandes que esto no se cachean
+	private DataSize maxObjectSize = DataSize.ofMegabytes(5);
+
+	// Tiempo en que una entrada se sirve sin consultar a S3; luego se revalida con su ETag
+	private Duration ttl = Duration.ofSeconds(60);
+
+	// Segundo nivel en disco para /object/stream
+	private final Disk disk = new Disk();
+
+	@Data
+	public static class Disk {
+
+		// Desactivado por defecto: requiere un volumen local con espacio reservado
+		private boolean enabled = false;
+
+		// Directorio de los cuerpos y del índice (sobrevive reinicios si es un volumen persistente)
+		private String directory = System.getProperty("java.io.tmpdir") + "/ms-imagenes-dyc/cache";
+
+		// Presupuesto total en disco
+		private DataSize maxSize = DataSize.ofGigabytes(1);
+
+		// Objetos más grandes que esto no se guardan en disco
+		private DataSize maxObjectSize = DataSize.ofMegabytes(512);
+
+		// Tiempo en que una entrada se sirve sin consultar a S3; luego se revalida con su ETag
+		private Duration ttl = Duration.ofMinutes(10);
+
+		// Cada cuánto se persiste el índice si hubo cambios
+		private Duration indexSaveInterval = Duration.ofSeconds(30);
+
+		// Espera máxima de una petición a /object/stream a que arranque la descarga de la misma key
+		// que ya está haciendo otra (la respuesta de S3, no el objeto completo); pasado este tiempo
+		// va a S3 por su cuenta
+		private Duration coalesceWait = Duration.ofSeconds(10);
+
+		// Quien lee el archivo mientras se descarga corta la respuesta si no llegan bytes nuevos
+		// en este tiempo (ej. S3 dejó de enviar el cuerpo)
+		private Duration tailStallTimeout = Duration.ofSeconds(30);
+	}
+}
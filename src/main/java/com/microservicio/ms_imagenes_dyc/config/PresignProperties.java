@@ -0,0 +1,25 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.presign")
+public class PresignProperties {
+
+	// Validez de las URLs de descarga
+	private Duration downloadTtl = Duration.ofHours(12);
+
+	// Validez de las URLs de subida directa (PUT)
+	private Duration uploadTtl = Duration.ofMinutes(15);
+
+	// Una URL cacheada se deja de entregar este tiempo antes de vencer,
+	// para que el cliente tenga margen de usarla
+	private Duration refreshMargin = Duration.ofMinutes(10);
+
+	// Máximo de URLs de descarga cacheadas
+	private long cacheMaxEntries = 10_000;
+}
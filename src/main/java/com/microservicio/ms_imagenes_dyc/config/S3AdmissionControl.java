@@ -0,0 +1,338 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.http.HttpStatus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Admisión de peticiones por bucket: un token bucket (tasa sostenida + ráfaga) y un máximo de
+// peticiones en curso, separados para lecturas y escrituras y, opcionalmente, por operación.
+// Nunca espera: si no hay token o lugar se rechaza en el momento (429 o 503 con Retry-After),
+// así un bucket saturado no ocupa hilos de Tomcat ni conexiones a S3 que necesitan los demás.
+public class S3AdmissionControl implements MeterBinder {
+
+    public enum Access {
+        READ, WRITE
+    }
+
+    // Presupuesto compartido por los buckets sin lugar propio (superado maxBuckets)
+    static final String OTHER_BUCKETS = "_otros";
+
+    private final AdmissionProperties properties;
+    private final LongSupplier nanoClock;
+    // Límites por operación con el nombre en minúsculas: el binding de propiedades no conserva
+    // las mayúsculas de las claves de un Map (exportZip llega como exportzip)
+    private final Map<String, AdmissionProperties.Limits> operations = new HashMap<>();
+    // Buckets sin límites configurados con presupuesto propio, con su último uso (nanoClock).
+    // Los que tienen límites en properties.buckets no ocupan lugar: siempre tienen el suyo.
+    private final ConcurrentHashMap<String, AtomicLong> trackedBuckets = new ConcurrentHashMap<>();
+    // bucket + ámbito ("read", "write" o el nombre de la operación)
+    private final ConcurrentHashMap<String, Budget> budgets = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public S3AdmissionControl(AdmissionProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    S3AdmissionControl(AdmissionProperties properties, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        properties.getOperations().forEach((name, limits) -> operations.put(name.toLowerCase(Locale.ROOT), limits));
+    }
+
+    // Resultado de admit: un permiso a liberar al terminar la petición, o el rechazo
+    public record Decision(Permit permit, HttpStatus status, Duration retryAfter) {
+
+        public boolean admitted() {
+            return permit != null;
+        }
+    }
+
+    public Decision admit(String bucket, Access access, String operation) {
+        String tracked = track(bucket, nanoClock.getAsLong());
+        List<Budget> applicable = new ArrayList<>(2);
+        applicable.add(budget(tracked, access.name().toLowerCase(Locale.ROOT), limits(tracked, access)));
+        AdmissionProperties.Limits operationLimits = operations.get(operation.toLowerCase(Locale.ROOT));
+        if (operationLimits != null) {
+            applicable.add(budget(tracked, operation, operationLimits));
+        }
+
+        // Primero la concurrencia, que se puede devolver; después los tokens
+        List<Budget> holding = new ArrayList<>(applicable.size());
+        for (Budget budget : applicable) {
+            if (!budget.tryEnter()) {
+                holding.forEach(Budget::exit);
+                budget.rejectedBusy.incrementAndGet();
+                return new Decision(null, HttpStatus.SERVICE_UNAVAILABLE, properties.getBusyRetryAfter());
+            }
+            holding.add(budget);
+        }
+        long now = nanoClock.getAsLong();
+        List<Budget> charged = new ArrayList<>(applicable.size());
+        for (Budget budget : applicable) {
+            long waitNanos = budget.tryTake(now);
+            if (waitNanos > 0) {
+                // Un token tomado de otro presupuesto no se gasta si esta petición no entra
+                charged.forEach(Budget::refund);
+                holding.forEach(Budget::exit);
+                budget.rejectedRate.incrementAndGet();
+                return new Decision(null, HttpStatus.TOO_MANY_REQUESTS, retryAfter(waitNanos));
+            }
+            charged.add(budget);
+        }
+        return new Decision(new Permit(holding), null, null);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        budgets.values().forEach(budget -> register(registry, budget));
+    }
+
+    // Peticiones en curso de un bucket y ámbito (para pruebas y diagnóstico)
+    int inFlight(String bucket, String scope) {
+        Budget budget = budgets.get(bucket + "/" + scope);
+        return budget != null ? budget.inFlight() : 0;
+    }
+
+    // Nombre con el que se buscan los presupuestos del bucket: el propio, o OTHER_BUCKETS si no
+    // hay lugar. Un lugar se asigna bajo lock (solo la primera vez que se ve un nombre) y, lleno
+    // el máximo, se recupera el de un bucket sin uso en idleBucketTimeout.
+    private String track(String bucket, long now) {
+        if (properties.getBuckets().containsKey(bucket)) {
+            return bucket;
+        }
+        AtomicLong lastUsed = trackedBuckets.get(bucket);
+        if (lastUsed == null) {
+            synchronized (trackedBuckets) {
+                lastUsed = trackedBuckets.get(bucket);
+                if (lastUsed == null) {
+                    if (trackedBuckets.size() >= properties.getMaxBuckets() && !evictIdle(now)) {
+                        return OTHER_BUCKETS;
+                    }
+                    lastUsed = new AtomicLong(now);
+                    trackedBuckets.put(bucket, lastUsed);
+                }
+            }
+        }
+        lastUsed.set(now);
+        return bucket;
+    }
+
+    // Libera el lugar del bucket sin uso más antiguo, si lleva idleBucketTimeout sin peticiones y
+    // no tiene ninguna en curso; sus presupuestos y métricas se descartan. Con el lock de trackedBuckets.
+    private boolean evictIdle(long now) {
+        long idleNanos = properties.getIdleBucketTimeout().toNanos();
+        String oldest = null;
+        long oldestUse = Long.MAX_VALUE;
+        for (Map.Entry<String, AtomicLong> entry : trackedBuckets.entrySet()) {
+            long used = entry.getValue().get();
+            if (now - used >= idleNanos && used < oldestUse && !busy(entry.getKey())) {
+                oldest = entry.getKey();
+                oldestUse = used;
+            }
+        }
+        if (oldest == null) {
+            return false;
+        }
+        trackedBuckets.remove(oldest);
+        String prefix = oldest + "/";
+        budgets.entrySet().removeIf(entry -> {
+            if (!entry.getKey().startsWith(prefix)) {
+                return false;
+            }
+            MeterRegistry current = registry;
+            if (current != null) {
+                entry.getValue().meters.forEach(current::remove);
+            }
+            return true;
+        });
+        return true;
+    }
+
+    private boolean busy(String bucket) {
+        String prefix = bucket + "/";
+        return budgets.entrySet().stream()
+                .anyMatch(entry -> entry.getKey().startsWith(prefix) && entry.getValue().inFlight() > 0);
+    }
+
+    private AdmissionProperties.Limits limits(String bucket, Access access) {
+        AdmissionProperties.Budgets own = properties.getBuckets().get(bucket);
+        AdmissionProperties.Limits limits = own == null ? null : access == Access.READ ? own.getRead() : own.getWrite();
+        if (limits != null) {
+            return limits;
+        }
+        return access == Access.READ ? properties.getRead() : properties.getWrite();
+    }
+
+    private Budget budget(String bucket, String scope, AdmissionProperties.Limits limits) {
+        Budget budget = budgets.get(bucket + "/" + scope);
+        if (budget != null) {
+            return budget;
+        }
+        Budget created = budgets.computeIfAbsent(bucket + "/" + scope,
+                id -> new Budget(bucket, scope, limits, nanoClock.getAsLong()));
+        MeterRegistry current = registry;
+        if (current != null) {
+            register(current, created);
+        }
+        return created;
+    }
+
+    // Retry-After va en segundos enteros: se redondea hacia arriba para no invitar a reintentar antes
+    private static Duration retryAfter(long waitNanos) {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return Duration.ofSeconds(Math.max(1, (waitNanos + second - 1) / second));
+    }
+
+    private void register(MeterRegistry registry, Budget budget) {
+        budget.meters.add(Gauge.builder("s3.admission.in-flight", budget, Budget::inFlight)
+                .description("Peticiones admitidas en curso")
+                .tag("bucket", budget.bucket)
+                .tag("scope", budget.scope)
+                .register(registry));
+        if (budget.rate != null) {
+            budget.meters.add(Gauge
+                    .builder("s3.admission.tokens", budget, b -> b.rate.available(nanoClock.getAsLong()))
+                    .description("Tokens disponibles del límite de tasa")
+                    .tag("bucket", budget.bucket)
+                    .tag("scope", budget.scope)
+                    .register(registry));
+        }
+        budget.meters.add(FunctionCounter.builder("s3.admission.rejected", budget.rejectedRate, AtomicLong::get)
+                .description("Peticiones rechazadas por el control de admisión")
+                .tag("bucket", budget.bucket)
+                .tag("scope", budget.scope)
+                .tag("reason", "rate")
+                .register(registry));
+        budget.meters.add(FunctionCounter.builder("s3.admission.rejected", budget.rejectedBusy, AtomicLong::get)
+                .description("Peticiones rechazadas por el control de admisión")
+                .tag("bucket", budget.bucket)
+                .tag("scope", budget.scope)
+                .tag("reason", "concurrency")
+                .register(registry));
+    }
+
+    // Lugar ocupado por una petición admitida; se libera una sola vez
+    public static final class Permit {
+
+        private final List<Budget> budgets;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(List<Budget> budgets) {
+            this.budgets = budgets;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                budgets.forEach(Budget::exit);
+            }
+        }
+    }
+
+    private static final class Budget {
+
+        private final String bucket;
+        private final String scope;
+        // null = sin límite
+        private final TokenBucket rate;
+        private final Semaphore slots;
+        private final int maxConcurrency;
+        private final AtomicLong rejectedRate = new AtomicLong();
+        private final AtomicLong rejectedBusy = new AtomicLong();
+        // Métricas registradas, para quitarlas si el bucket pierde su lugar
+        private final List<Meter> meters = new CopyOnWriteArrayList<>();
+
+        Budget(String bucket, String scope, AdmissionProperties.Limits limits, long now) {
+            this.bucket = bucket;
+            this.scope = scope;
+            this.rate = limits.getRatePerSecond() > 0
+                    ? new TokenBucket(limits.getRatePerSecond(), limits.getBurst(), now) : null;
+            this.maxConcurrency = limits.getMaxConcurrency();
+            this.slots = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+        }
+
+        boolean tryEnter() {
+            return slots == null || slots.tryAcquire();
+        }
+
+        void exit() {
+            if (slots != null) {
+                slots.release();
+            }
+        }
+
+        long tryTake(long now) {
+            return rate == null ? 0 : rate.tryTake(now);
+        }
+
+        void refund() {
+            if (rate != null) {
+                rate.refund();
+            }
+        }
+
+        int inFlight() {
+            return slots == null ? 0 : maxConcurrency - slots.availablePermits();
+        }
+    }
+
+    // Token bucket con recarga continua según el tiempo transcurrido
+    static final class TokenBucket {
+
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long updated;
+
+        TokenBucket(double ratePerSecond, int burst, long now) {
+            this.capacity = Math.max(1, burst > 0 ? burst : ratePerSecond);
+            this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.updated = now;
+        }
+
+        // 0 si tomó un token; si no, nanosegundos hasta que haya uno
+        synchronized long tryTake(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+        }
+
+        synchronized void refund() {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+
+        synchronized double available(long now) {
+            refill(now);
+            return tokens;
+        }
+
+        private void refill(long now) {
+            if (now > updated) {
+                tokens = Math.min(capacity, tokens + (now - updated) * tokensPerNano);
+                updated = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Aplica S3AdmissionControl a los endpoints con {bucket} antes de que el controller toque S3.
+// El permiso se guarda en la petición y se libera en afterCompletion: en los endpoints
+// asíncronos eso ocurre al terminar el despacho asíncrono, no al devolver el CompletableFuture.
+public class S3AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = S3AdmissionInterceptor.class.getName() + ".permit";
+
+    private final S3AdmissionControl admissionControl;
+
+    public S3AdmissionInterceptor(S3AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        // Redespacho de una petición asíncrona ya admitida
+        if (!(handler instanceof HandlerMethod method) || request.getAttribute(PERMIT) != null) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request
+                .getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String bucket = variables != null ? variables.get("bucket") : null;
+        if (bucket == null) {
+            return true;
+        }
+
+        S3AdmissionControl.Decision decision = admissionControl.admit(bucket, access(request),
+                method.getMethod().getName());
+        if (decision.admitted()) {
+            request.setAttribute(PERMIT, decision.permit());
+            return true;
+        }
+        response.setStatus(decision.status().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfter().toSeconds()));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("Bucket " + bucket + " saturado, reintentar más tarde");
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof S3AdmissionControl.Permit permit) {
+            permit.release();
+            request.removeAttribute(PERMIT);
+        }
+    }
+
+    private static S3AdmissionControl.Access access(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)
+                ? S3AdmissionControl.Access.READ : S3AdmissionControl.Access.WRITE;
+    }
+}
@@ -0,0 +1,67 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.net.URI;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+import io.awspring.cloud.autoconfigure.core.AwsProperties;
+import io.awspring.cloud.autoconfigure.s3.properties.S3Properties;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.providers.AwsRegionProvider;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3CrtAsyncClientBuilder;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+
+@Configuration
+@ConditionalOnProperty(name = "s3.client.mode", havingValue = "async")
+public class S3AsyncClientConfig {
+
+	// Clase de la librería nativa que el builder CRT necesita en tiempo de ejecución
+	private static final String CRT_CLASS = "software.amazon.awssdk.crt.CRT";
+
+	// Cliente no bloqueante: unos pocos hilos de I/O mantienen miles de peticiones en vuelo. Aplica
+	// spring.cloud.aws.s3.* igual que el S3Client de S3ClientConfig.
+	@Bean(destroyMethod = "close")
+	public S3AsyncClient s3AsyncClient(S3ClientProperties properties, AwsCredentialsProvider credentialsProvider,
+			AwsRegionProvider regionProvider, AwsProperties awsProperties, S3Properties s3Properties,
+			S3ObservationInterceptor observationInterceptor) {
+		S3ClientProperties.Async async = properties.getAsync();
+		// El cliente CRT no admite interceptores: sus llamadas solo se ven en la operación del servicio
+		if (async.getEngine() == S3ClientProperties.Engine.CRT) {
+			// Sin aws-crt el builder compila pero falla con NoClassDefFoundError: se corta el arranque con
+			// un mensaje claro
+			if (!ClassUtils.isPresent(CRT_CLASS, S3AsyncClientConfig.class.getClassLoader())) {
+				throw new IllegalStateException("s3.client.async.engine=crt requiere la dependencia "
+						+ "software.amazon.awssdk.crt:aws-crt en el classpath; agregarla o usar engine=java");
+			}
+			S3CrtAsyncClientBuilder crt = S3AsyncClient.crtBuilder()
+					.credentialsProvider(credentialsProvider)
+					.region(S3ClientConfig.region(regionProvider, s3Properties))
+					.maxConcurrency(async.getMaxConcurrency())
+					.minimumPartSizeInBytes(async.getMinimumPartSize().toBytes())
+					.targetThroughputInGbps(async.getTargetThroughputInGbps());
+			URI endpoint = S3ClientConfig.endpoint(awsProperties, s3Properties);
+			if (endpoint != null) {
+				crt.endpointOverride(endpoint);
+			}
+			if (s3Properties.getPathStyleAccessEnabled() != null) {
+				crt.forcePathStyle(s3Properties.getPathStyleAccessEnabled());
+			}
+			return crt.build();
+		}
+		return S3ClientConfig.applyCloudProperties(S3AsyncClient.builder(), regionProvider, awsProperties, s3Properties)
+				.credentialsProvider(credentialsProvider)
+				.multipartEnabled(true)
+				.multipartConfiguration(MultipartConfiguration.builder()
+						.minimumPartSizeInBytes(async.getMinimumPartSize().toBytes())
+						.build())
+				.httpClientBuilder(NettyNioAsyncHttpClient.builder()
+						.maxConcurrency(async.getMaxConcurrency()))
+				.overrideConfiguration(override -> override.addExecutionInterceptor(observationInterceptor))
+				.build();
+	}
+}
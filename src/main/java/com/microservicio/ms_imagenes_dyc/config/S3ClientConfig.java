@@ -0,0 +1,119 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.awspring.cloud.autoconfigure.core.AwsProperties;
+import io.awspring.cloud.autoconfigure.s3.properties.S3Properties;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.providers.AwsRegionProvider;
+import software.amazon.awssdk.retries.api.BackoffStrategy;
+import software.amazon.awssdk.retries.api.RetryStrategy;
+import software.amazon.awssdk.services.s3.S3BaseClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+@Configuration
+public class S3ClientConfig {
+
+	@Bean
+	public S3ConcurrencyLimiter s3ConcurrencyLimiter(S3ClientProperties properties) {
+		S3ClientProperties.Http http = properties.getHttp();
+		return new S3ConcurrencyLimiter(http.getMaxConnections(),
+				http.getConnectionAcquisitionTimeout().toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Bean
+	public S3ObservationInterceptor s3ObservationInterceptor(ObservationRegistry observationRegistry) {
+		return new S3ObservationInterceptor(observationRegistry);
+	}
+
+	@Bean
+	public S3PoolMetrics s3PoolMetrics(S3ConcurrencyLimiter limiter) {
+		return new S3PoolMetrics(limiter);
+	}
+
+	// Reemplaza el S3Client por defecto de spring-cloud-aws para controlar el pool HTTP,
+	// los timeouts y los reintentos desde s3.client.*. El limitador deja pasar tantas
+	// llamadas como conexiones tiene el pool. Region, endpoint y path-style siguen saliendo
+	// de spring.cloud.aws.s3.* como en el cliente que reemplaza.
+	@Bean(destroyMethod = "close")
+	public S3Client s3Client(S3ClientProperties properties, AwsCredentialsProvider credentialsProvider,
+			AwsRegionProvider regionProvider, AwsProperties awsProperties, S3Properties s3Properties,
+			S3ObservationInterceptor observationInterceptor, S3ConcurrencyLimiter limiter,
+			S3PoolMetrics poolMetrics) {
+		S3ClientProperties.Http http = properties.getHttp();
+		return applyCloudProperties(S3Client.builder(), regionProvider, awsProperties, s3Properties)
+				.credentialsProvider(credentialsProvider)
+				.httpClientBuilder(ApacheHttpClient.builder()
+						.maxConnections(http.getMaxConnections())
+						.connectionAcquisitionTimeout(http.getConnectionAcquisitionTimeout())
+						.connectionTimeout(http.getConnectionTimeout())
+						.socketTimeout(http.getSocketTimeout())
+						.connectionTimeToLive(http.getConnectionTimeToLive())
+						.connectionMaxIdleTime(http.getConnectionMaxIdleTime())
+						.useIdleConnectionReaper(http.isUseIdleConnectionReaper())
+						.tcpKeepAlive(http.isTcpKeepAlive()))
+				.overrideConfiguration(
+						override -> configure(override, properties, observationInterceptor, limiter, poolMetrics))
+				.build();
+	}
+
+	// spring.cloud.aws.s3.region y .endpoint tienen prioridad sobre los globales de spring.cloud.aws
+	static <B extends S3BaseClientBuilder<B, ?>> B applyCloudProperties(B builder, AwsRegionProvider regionProvider,
+			AwsProperties awsProperties, S3Properties s3Properties) {
+		builder.region(region(regionProvider, s3Properties));
+		URI endpoint = endpoint(awsProperties, s3Properties);
+		if (endpoint != null) {
+			builder.endpointOverride(endpoint);
+		}
+		if (s3Properties.getPathStyleAccessEnabled() != null) {
+			builder.serviceConfiguration(S3Configuration.builder()
+					.pathStyleAccessEnabled(s3Properties.getPathStyleAccessEnabled())
+					.build());
+		}
+		return builder;
+	}
+
+	static Region region(AwsRegionProvider regionProvider, S3Properties s3Properties) {
+		return s3Properties.getRegion() != null ? Region.of(s3Properties.getRegion()) : regionProvider.getRegion();
+	}
+
+	static URI endpoint(AwsProperties awsProperties, S3Properties s3Properties) {
+		return s3Properties.getEndpoint() != null ? s3Properties.getEndpoint() : awsProperties.getEndpoint();
+	}
+
+	// El span se abre antes que el limitador para incluir la espera de turno
+	private static void configure(ClientOverrideConfiguration.Builder override, S3ClientProperties properties,
+			S3ObservationInterceptor observationInterceptor, S3ConcurrencyLimiter limiter, S3PoolMetrics poolMetrics) {
+		S3ClientProperties.Http http = properties.getHttp();
+		override.addExecutionInterceptor(observationInterceptor)
+				.addExecutionInterceptor(limiter)
+				.addMetricPublisher(poolMetrics)
+				.retryStrategy(retryStrategy(properties.getRetry()));
+		if (http.getApiCallAttemptTimeout() != null) {
+			override.apiCallAttemptTimeout(http.getApiCallAttemptTimeout());
+		}
+		if (http.getApiCallTimeout() != null) {
+			override.apiCallTimeout(http.getApiCallTimeout());
+		}
+	}
+
+	// Estrategia estándar de AWS con backoff exponencial y jitter completo
+	static RetryStrategy retryStrategy(S3ClientProperties.Retry retry) {
+		return AwsRetryStrategy.standardRetryStrategy().toBuilder()
+				.maxAttempts(retry.getMaxAttempts())
+				.backoffStrategy(BackoffStrategy.exponentialDelay(retry.getBaseDelay(), retry.getMaxBackoff()))
+				.throttlingBackoffStrategy(
+						BackoffStrategy.exponentialDelay(retry.getThrottlingBaseDelay(), retry.getMaxBackoff()))
+				.build();
+	}
+}
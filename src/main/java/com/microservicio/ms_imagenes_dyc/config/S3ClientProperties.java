@@ -0,0 +1,97 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.client")
+public class S3ClientProperties {
+
+	public enum Mode {
+		// Solo S3Client bloqueante (por defecto)
+		SYNC,
+		// Además expone /s3/async/** sobre S3AsyncClient
+		ASYNC
+	}
+
+	public enum Engine {
+		// Cliente asíncrono Java (Netty) con multipart automático
+		JAVA,
+		// Motor CRT nativo: GETs y PUTs por rangos en paralelo. Requiere software.amazon.awssdk.crt:aws-crt
+		CRT
+	}
+
+	private Mode mode = Mode.SYNC;
+
+	private final Http http = new Http();
+
+	private final Retry retry = new Retry();
+
+	private final Async async = new Async();
+
+	@Data
+	public static class Http {
+
+		// Conexiones del pool HTTP del S3Client; con hilos virtuales conviene subirlo
+		private int maxConnections = 50;
+
+		// Espera máxima por una conexión libre (o un permiso del limitador) antes de fallar.
+		// Bajo carga es lo que domina la latencia de cola: mejor fallar rápido que encolar
+		private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+
+		// Tiempo para establecer la conexión TCP/TLS
+		private Duration connectionTimeout = Duration.ofSeconds(2);
+
+		// Tiempo máximo sin recibir datos en un socket abierto
+		private Duration socketTimeout = Duration.ofSeconds(30);
+
+		// Vida máxima de una conexión reutilizable; renovarlas reparte la carga entre IPs de S3
+		private Duration connectionTimeToLive = Duration.ofMinutes(5);
+
+		// Conexiones ociosas más tiempo que esto se cierran
+		private Duration connectionMaxIdleTime = Duration.ofSeconds(30);
+
+		// Hilo que cierra en segundo plano las conexiones ociosas
+		private boolean useIdleConnectionReaper = true;
+
+		// SO_KEEPALIVE en los sockets
+		private boolean tcpKeepAlive = true;
+
+		// Tiempo máximo de un intento y de la llamada completa con reintentos (sin valor = sin límite)
+		private Duration apiCallAttemptTimeout;
+		private Duration apiCallTimeout;
+	}
+
+	@Data
+	public static class Retry {
+
+		// Intentos totales, incluido el primero
+		private int maxAttempts = 3;
+
+		// Backoff exponencial con jitter completo: espera aleatoria entre 0 y min(maxBackoff, baseDelay * 2^n)
+		private Duration baseDelay = Duration.ofMillis(100);
+		private Duration maxBackoff = Duration.ofSeconds(20);
+
+		// Base mayor para respuestas de throttling (503 SlowDown)
+		private Duration throttlingBaseDelay = Duration.ofMillis(500);
+	}
+
+	@Data
+	public static class Async {
+
+		private Engine engine = Engine.JAVA;
+
+		// Peticiones simultáneas a S3 desde el cliente asíncrono
+		private int maxConcurrency = 200;
+
+		// Tamaño de parte para subidas multipart automáticas
+		private DataSize minimumPartSize = DataSize.ofMegabytes(8);
+
+		// Objetivo de throughput para CRT (Gbps); con él CRT decide cuántas conexiones abrir
+		private double targetThroughputInGbps = 10.0;
+	}
+}
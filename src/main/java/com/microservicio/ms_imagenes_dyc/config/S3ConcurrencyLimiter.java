@@ -0,0 +1,142 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.http.Abortable;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+// Limita las llamadas simultáneas del S3Client al tamaño de su pool de conexiones.
+// Con hilos virtuales puede haber miles de peticiones a la vez: sin este límite todas
+// esperarían dentro del pool de Apache (que además fija el hilo virtual a su carrier).
+// Un Semaphore justo las ordena y las estaciona sin ocupar hilos de plataforma.
+//
+// El permiso se libera al terminar la ejecución de la llamada, salvo en getObject: ahí la
+// conexión sigue ocupada mientras se lee el cuerpo, así que el permiso pasa al stream y se
+// libera cuando quien lo recibió lo cierra o lo aborta (el stream es Abortable y el SDK le
+// delega el abort() del ResponseInputStream).
+public class S3ConcurrencyLimiter implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Permit> PERMIT = new ExecutionAttribute<>("S3ConcurrencyPermit");
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long timeoutNanos;
+
+    public S3ConcurrencyLimiter(int maxConcurrency, long timeout, TimeUnit unit) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        try {
+            if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw SdkClientException.create("Límite de concurrencia hacia S3 alcanzado ("
+                        + maxConcurrency + " llamadas en curso)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SdkClientException.create("Interrumpido esperando turno para llamar a S3", e);
+        }
+        executionAttributes.putAttribute(PERMIT, new Permit());
+    }
+
+    // Cuerpo de un getObject exitoso: el permiso lo libera el close() del stream
+    @Override
+    public Optional<InputStream> modifyHttpResponseContent(Context.ModifyHttpResponse context,
+            ExecutionAttributes executionAttributes) {
+        Permit permit = executionAttributes.getAttribute(PERMIT);
+        Optional<InputStream> body = context.responseBody();
+        if (permit == null || body.isEmpty() || !(context.request() instanceof GetObjectRequest)
+                || !context.httpResponse().isSuccessful()) {
+            return body;
+        }
+        permit.handedOff = true;
+        return Optional.of(new PermitReleasingInputStream(body.get(), permit));
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        Permit permit = executionAttributes.getAttribute(PERMIT);
+        if (permit != null && !permit.handedOff) {
+            permit.release();
+        }
+    }
+
+    // Si falla, el stream no llega a quien llamó: se libera aunque ya se hubiera entregado
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Permit permit = executionAttributes.getAttribute(PERMIT);
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int inFlight() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    // Se libera una sola vez aunque el SDK notifique éxito y fallo o el stream se cierre dos veces
+    private final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean handedOff;
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private static final class PermitReleasingInputStream extends FilterInputStream implements Abortable {
+
+        private final Permit permit;
+
+        PermitReleasingInputStream(InputStream in, Permit permit) {
+            super(in);
+            this.permit = permit;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                permit.release();
+            }
+        }
+
+        // Abortar corta la conexión de abajo; el permiso se libera igual que al cerrar
+        @Override
+        public void abort() {
+            try {
+                if (in instanceof Abortable abortable) {
+                    abortable.abort();
+                }
+            } finally {
+                permit.release();
+            }
+        }
+    }
+}
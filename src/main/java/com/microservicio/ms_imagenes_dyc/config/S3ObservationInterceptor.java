@@ -0,0 +1,76 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+// Un span (y el timer s3.sdk.call) por cada llamada del SDK, hijo de la operación del
+// servicio que la origina. Incluye la espera en el limitador, los reintentos y el backoff;
+// el número de intentos queda como atributo del span.
+//
+// No abre un scope: con el cliente asíncrono la llamada termina en otro hilo.
+public class S3ObservationInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Observation> OBSERVATION = new ExecutionAttribute<>("S3Observation");
+    private static final ExecutionAttribute<AtomicInteger> ATTEMPTS = new ExecutionAttribute<>("S3Attempts");
+
+    private final ObservationRegistry registry;
+
+    public S3ObservationInterceptor(ObservationRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        String operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        Observation observation = Observation.createNotStarted("s3.sdk.call", registry)
+                .contextualName("S3." + operation)
+                .lowCardinalityKeyValue("operation", String.valueOf(operation))
+                .start();
+        executionAttributes.putAttribute(OBSERVATION, observation);
+        executionAttributes.putAttribute(ATTEMPTS, new AtomicInteger());
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        AtomicInteger attempts = executionAttributes.getAttribute(ATTEMPTS);
+        if (attempts != null) {
+            attempts.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        stop(executionAttributes, String.valueOf(context.httpResponse().statusCode()), null);
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        String status = context.httpResponse()
+                .map(response -> String.valueOf(response.statusCode()))
+                .orElse("none");
+        stop(executionAttributes, status, context.exception());
+    }
+
+    // Se cierra una sola vez aunque el SDK notifique éxito y fallo
+    private void stop(ExecutionAttributes executionAttributes, String status, Throwable error) {
+        Observation observation = executionAttributes.getAttribute(OBSERVATION);
+        if (observation == null) {
+            return;
+        }
+        executionAttributes.putAttribute(OBSERVATION, null);
+        AtomicInteger attempts = executionAttributes.getAttribute(ATTEMPTS);
+        observation.lowCardinalityKeyValue("status", status)
+                .highCardinalityKeyValue("attempts", String.valueOf(attempts != null ? attempts.get() : 0));
+        if (error != null) {
+            observation.error(error);
+        }
+        observation.stop();
+    }
+}
@@ -0,0 +1,69 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+// Exporta el estado del pool HTTP del S3Client como gauges de Micrometer (/actuator/metrics).
+// El SDK informa el pool en cada intento de llamada; se guarda el último valor visto.
+public class S3PoolMetrics implements MetricPublisher, MeterBinder {
+
+    private final S3ConcurrencyLimiter limiter;
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicInteger max = new AtomicInteger();
+
+    public S3PoolMetrics(S3ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void publish(MetricCollection metrics) {
+        record(metrics, HttpMetric.LEASED_CONCURRENCY, leased);
+        record(metrics, HttpMetric.PENDING_CONCURRENCY_ACQUIRES, pending);
+        record(metrics, HttpMetric.AVAILABLE_CONCURRENCY, available);
+        record(metrics, HttpMetric.MAX_CONCURRENCY, max);
+        metrics.children().forEach(this::publish);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("s3.http.connections.leased", leased, AtomicInteger::get)
+                .description("Conexiones del pool HTTP de S3 en uso")
+                .register(registry);
+        Gauge.builder("s3.http.connections.pending", pending, AtomicInteger::get)
+                .description("Peticiones esperando una conexión del pool HTTP de S3")
+                .register(registry);
+        Gauge.builder("s3.http.connections.available", available, AtomicInteger::get)
+                .description("Conexiones ociosas disponibles en el pool HTTP de S3")
+                .register(registry);
+        Gauge.builder("s3.http.connections.max", max, AtomicInteger::get)
+                .description("Tamaño máximo del pool HTTP de S3")
+                .register(registry);
+        Gauge.builder("s3.client.calls.in-flight", limiter, S3ConcurrencyLimiter::inFlight)
+                .description("Llamadas a S3 admitidas por el limitador")
+                .register(registry);
+        Gauge.builder("s3.client.calls.waiting", limiter, S3ConcurrencyLimiter::waiting)
+                .description("Llamadas a S3 esperando turno en el limitador")
+                .register(registry);
+    }
+
+    private static void record(MetricCollection metrics, SdkMetric<Integer> metric, AtomicInteger target) {
+        List<Integer> values = metrics.metricValues(metric);
+        if (!values.isEmpty()) {
+            target.set(values.get(values.size() - 1));
+        }
+    }
+}
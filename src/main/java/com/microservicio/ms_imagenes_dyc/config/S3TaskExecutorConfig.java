@@ -0,0 +1,31 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class S3TaskExecutorConfig {
+
+	// Pool compartido para llamadas bloqueantes a S3 en paralelo. Cada uso limita por su
+	// cuenta cuántas tareas deja en vuelo, así la cola no crece sin control.
+	// Con spring.threads.virtual.enabled=true cada tarea corre en su propio hilo virtual: esperar
+	// a S3 no ocupa hilos de plataforma y el límite real lo pone S3ConcurrencyLimiter.
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService s3TaskExecutor(ExecutorProperties properties, Environment environment) {
+		if (Threading.VIRTUAL.isActive(environment)) {
+			return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("s3-task-", 1).factory());
+		}
+		AtomicInteger counter = new AtomicInteger();
+		return Executors.newFixedThreadPool(properties.getThreads(), runnable -> {
+			Thread thread = new Thread(runnable, "s3-task-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,24 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "s3.upload")
+public class UploadProperties {
+
+	// Tamaño de cada parte de la subida multipart (S3 exige al menos 5MB salvo la última)
+	private DataSize partSize = DataSize.ofMegabytes(8);
+
+	// Partes de una misma subida enviándose a la vez
+	private int maxInFlightParts = 4;
+
+	// Buffers de parte reutilizables entre todas las subidas; acota la memoria total
+	private int bufferPoolSize = 8;
+
+	// Prefijo de las referencias por contenido de las subidas con dedupe=true: la key
+	// "<prefijo><sha256 hex>" apunta al objeto que ya tiene ese contenido en el bucket
+	private String dedupePrefix = "_blobs/";
+}
@@ -0,0 +1,111 @@
+package com.microservicio.ms_imagenes_dyc.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.service.AsyncS3Service;
+import com.microservicio.ms_imagenes_dyc.util.ObjectStreams;
+
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+// Variante no bloqueante de los endpoints principales (s3.client.mode=async). Devolver un
+// CompletableFuture libera el hilo de Tomcat mientras S3 responde.
+@RestController
+@RequestMapping("/s3/async")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "s3.client.mode", havingValue = "async")
+public class AsyncS3Controller {
+
+	private final AsyncS3Service asyncS3Service;
+
+	@GetMapping("/{bucket}/objects")
+	public CompletableFuture<ResponseEntity<List<S3ObjectDto>>> listObjects(@PathVariable String bucket,
+			@RequestParam(required = false) String prefix,
+			@RequestParam(required = false) String delimiter,
+			@RequestParam(required = false) Integer maxKeys,
+			@RequestParam(required = false) String continuationToken) {
+
+		return asyncS3Service.listObjects(bucket, prefix, delimiter, maxKeys, continuationToken).thenApply(page -> {
+			List<S3ObjectDto> dtoList = new ArrayList<>(page.getObjects());
+			page.getCommonPrefixes().forEach(commonPrefix -> dtoList.add(new S3ObjectDto(commonPrefix, null, null)));
+			ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+			if (page.isTruncated() && page.getNextContinuationToken() != null) {
+				builder.header(AwsS3Controller.NEXT_CONTINUATION_TOKEN, page.getNextContinuationToken());
+			}
+			return builder.body(dtoList);
+		});
+	}
+
+	@GetMapping("/{bucket}/object")
+	public CompletableFuture<ResponseEntity<byte[]>> downloadObject(@PathVariable String bucket,
+			@RequestParam String key) {
+		return asyncS3Service.download(bucket, key).thenApply(object -> {
+			ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+					.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + key);
+			if (object.response().eTag() != null) {
+				builder.eTag(object.response().eTag());
+			}
+			return builder.contentType(MediaType.APPLICATION_OCTET_STREAM).body(object.asByteArrayUnsafe());
+		});
+	}
+
+	// Las cabeceras se envían al llegar la respuesta de S3; el cuerpo se copia con el buffer
+	// fijo de ObjectStreams en el executor de peticiones asíncronas de Spring MVC
+	@GetMapping("/{bucket}/object/stream")
+	public CompletableFuture<ResponseEntity<StreamingResponseBody>> getObjectAsStream(@PathVariable String bucket,
+			@RequestParam String key) {
+		return asyncS3Service.stream(bucket, key).thenApply(s3Stream -> {
+			GetObjectResponse metadata = s3Stream.response();
+			ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+					.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + key)
+					.contentType(metadata.contentType() != null ? MediaType.parseMediaType(metadata.contentType())
+							: MediaType.APPLICATION_OCTET_STREAM);
+			if (metadata.contentLength() != null) {
+				builder.contentLength(metadata.contentLength());
+			}
+			if (metadata.eTag() != null) {
+				builder.eTag(metadata.eTag());
+			}
+			return builder.body(outputStream -> copy(s3Stream, outputStream));
+		});
+	}
+
+	@PostMapping("/{bucket}/object")
+	public CompletableFuture<ResponseEntity<String>> uploadObject(@PathVariable String bucket,
+			@RequestParam String key, @RequestParam("file") MultipartFile file) {
+		return asyncS3Service.upload(bucket, key, file).thenApply(ResponseEntity::ok);
+	}
+
+	@DeleteMapping("/{bucket}/object")
+	public CompletableFuture<ResponseEntity<Void>> deleteObject(@PathVariable String bucket,
+			@RequestParam String key) {
+		return asyncS3Service.deleteObject(bucket, key).thenApply(ignored -> ResponseEntity.noContent().<Void>build());
+	}
+
+	private static void copy(ResponseInputStream<GetObjectResponse> s3Stream, OutputStream outputStream)
+			throws IOException {
+		try (s3Stream) {
+			ObjectStreams.transfer(s3Stream, outputStream);
+		}
+	}
+}
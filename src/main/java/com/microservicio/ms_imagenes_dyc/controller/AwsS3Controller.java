@@ -1,53 +1,259 @@
 package com.microservicio.ms_imagenes_dyc.controller;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchDeleteRequestDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchMoveRequestDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchResultDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.CacheStatsDto;
 import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
 import com.microservicio.ms_imagenes_dyc.service.AwsS3Service;
+import com.microservicio.ms_imagenes_dyc.service.ContentDeliveryService;
+import com.microservicio.ms_imagenes_dyc.service.DedupeUploadService;
+import com.microservicio.ms_imagenes_dyc.service.DiskObjectCache;
+import com.microservicio.ms_imagenes_dyc.service.EagerVariantService;
+import com.microservicio.ms_imagenes_dyc.service.MetadataIndex;
+import com.microservicio.ms_imagenes_dyc.service.ObjectStream;
+import com.microservicio.ms_imagenes_dyc.service.S3BatchService;
+import com.microservicio.ms_imagenes_dyc.util.ObjectStreams;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 @RestController
 @RequestMapping("/s3")
 @RequiredArgsConstructor
 public class AwsS3Controller {
 
+	// Cabecera con el token para pedir la página siguiente del listado
+	public static final String NEXT_CONTINUATION_TOKEN = "X-Next-Continuation-Token";
+
+	// Cabecera de las subidas con dedupe=true: "true" si se resolvió con una copia en S3
+	public static final String DEDUPLICATED = "X-Deduplicated";
+
+	// Máximo de resultados de /objects/search
+	private static final int MAX_SEARCH_RESULTS = 10_000;
+
+	// Atributos de sendfile del conector NIO de Tomcat
+	private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
 	private final AwsS3Service awsS3Service;
+	private final EagerVariantService eagerVariantService;
+	private final S3BatchService s3BatchService;
+	private final DedupeUploadService dedupeUploadService;
+	private final ContentDeliveryService contentDeliveryService;
+	private final MetadataIndex metadataIndex;
+	private final ObjectMapper objectMapper;
+	private final ImageProperties imageProperties;
 
-	// Listar objetos en un bucket
+	// Listar objetos en un bucket, una página por llamada. Con delimiter, los prefijos
+	// comunes ("carpetas") se devuelven como entradas sin size ni lastModified. Las variantes
+	// generadas no se listan, así que una página puede traer menos de maxKeys entradas.
 	@GetMapping("/{bucket}/objects")
-	public ResponseEntity<List<S3ObjectDto>> listObjects(@PathVariable String bucket) {
+	public ResponseEntity<List<S3ObjectDto>> listObjects(@PathVariable String bucket,
+			@RequestParam(required = false) String prefix,
+			@RequestParam(required = false) String delimiter,
+			@RequestParam(required = false) Integer maxKeys,
+			@RequestParam(required = false) String continuationToken) {
+
+		// Con el bucket indexado la página sale de memoria; el token indica de dónde salió la anterior
+		S3ObjectPageDto page = metadataIndex.handles(bucket, continuationToken)
+				? metadataIndex.list(bucket, prefix, delimiter, maxKeys, continuationToken)
+				: awsS3Service.listObjects(bucket, prefix, delimiter, maxKeys, continuationToken);
+		List<S3ObjectDto> dtoList = new ArrayList<>(page.getObjects().stream()
+				.filter(object -> !isVariant(object.getKey()))
+				.toList());
+		page.getCommonPrefixes().stream()
+				.filter(commonPrefix -> !isVariant(commonPrefix))
+				.forEach(commonPrefix -> dtoList.add(new S3ObjectDto(commonPrefix, null, null)));
 
-		List<S3ObjectDto> dtoList = awsS3Service.listObjects(bucket);
-		return ResponseEntity.ok(dtoList);
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+		if (page.isTruncated() && page.getNextContinuationToken() != null) {
+			builder.header(NEXT_CONTINUATION_TOKEN, page.getNextContinuationToken());
+		}
+		return builder.body(dtoList);
 	}
 
-	// Obtener objeto como stream
+	// Listar todo el bucket como NDJSON (un S3ObjectDto por línea) recorriendo las páginas
+	// a medida que se escriben, con memoria constante sin importar la cantidad de keys
+	@GetMapping("/{bucket}/objects/stream")
+	public void streamObjects(@PathVariable String bucket, @RequestParam(required = false) String prefix,
+			HttpServletResponse response) throws IOException {
+		response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+		try (Stream<S3ObjectDto> objects = metadataIndex.isReady(bucket) ? metadataIndex.stream(bucket, prefix)
+				: awsS3Service.streamObjects(bucket, prefix);
+				SequenceWriter writer = objectMapper.writer()
+						.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+						.withRootValueSeparator("\n")
+						.writeValues(response.getOutputStream())) {
+			for (Iterator<S3ObjectDto> it = objects.filter(object -> !isVariant(object.getKey())).iterator();
+					it.hasNext();) {
+				writer.write(it.next());
+			}
+		}
+	}
+
+	// Buscar por prefijo, tamaño en bytes y fecha de modificación (ISO-8601, modifiedAfter inclusive
+	// y modifiedBefore exclusivo). Con el bucket indexado se resuelve en memoria; si no, recorre S3.
+	@GetMapping("/{bucket}/objects/search")
+	public ResponseEntity<List<S3ObjectDto>> searchObjects(@PathVariable String bucket,
+			@RequestParam(required = false) String prefix,
+			@RequestParam(required = false) Long minSize,
+			@RequestParam(required = false) Long maxSize,
+			@RequestParam(required = false) Instant modifiedAfter,
+			@RequestParam(required = false) Instant modifiedBefore,
+			@RequestParam(defaultValue = "1000") int limit) {
+		if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"limit debe estar entre 1 y " + MAX_SEARCH_RESULTS);
+		}
+		MetadataIndex.Filter filter = new MetadataIndex.Filter(minSize, maxSize, modifiedAfter, modifiedBefore);
+		return ResponseEntity.ok(metadataIndex.search(bucket, prefix, filter, limit));
+	}
+
+	// Obtener objeto como stream (se copia de S3 a la respuesta sin cargarlo en memoria).
+	// Si la cache en disco lo tiene (o otra petición lo está descargando) se envía el archivo
+	// local; si no, se guarda mientras se transmite.
 	@GetMapping("/{bucket}/object/stream")
-	public ResponseEntity<byte[]> getObjectAsStream(@PathVariable String bucket, @RequestParam String key) {
-		byte[] fileBytes = awsS3Service.downloadAsBytes(bucket, key);
-		return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + key)
-				.contentType(MediaType.APPLICATION_OCTET_STREAM).body(fileBytes);
+	public void getObjectAsStream(@PathVariable String bucket, @RequestParam String key,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		try (ObjectStream source = awsS3Service.openObjectStream(bucket, key)) {
+			if (source.file() != null) {
+				writeFile(source.file(), key, request, response);
+				return;
+			}
+			writeObject(source.s3Stream(), key, response);
+		}
 	}
 
-	// Descargar archivo como byte[]
+	// Descargar archivo como byte[] (S3 responde 304 si el cliente ya tiene la versión actual).
+	// Si hay una copia guardada en la codificación o el formato que acepta el cliente se entrega
+	// esa; Vary y Cache-Control permiten que un CDN cachee cada representación por separado.
 	@GetMapping("/{bucket}/object")
-	public ResponseEntity<byte[]> downloadObject(@PathVariable String bucket, @RequestParam String key) {
-		byte[] fileBytes = awsS3Service.downloadAsBytes(bucket, key);
-		return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + key)
-				.contentType(MediaType.APPLICATION_OCTET_STREAM).body(fileBytes);
+	public ResponseEntity<byte[]> downloadObject(@PathVariable String bucket, @RequestParam String key,
+			@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince) {
+		Instant since = parseHttpDate(ifModifiedSince);
+		try {
+			ContentDeliveryService.Delivery delivery = contentDeliveryService.negotiate(bucket, key, accept,
+					acceptEncoding, ifNoneMatch, since);
+			ResponseBytes<GetObjectResponse> object = delivery != null ? delivery.content()
+					: awsS3Service.download(bucket, key, ifNoneMatch, since);
+			GetObjectResponse metadata = object.response();
+			ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+					.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + key);
+			if (delivery != null) {
+				builder.contentType(MediaType.parseMediaType(delivery.contentType()));
+				if (delivery.contentEncoding() != null) {
+					builder.header(HttpHeaders.CONTENT_ENCODING, delivery.contentEncoding());
+				}
+			} else {
+				// Los rangos se piden siempre sobre el original
+				builder.header(HttpHeaders.ACCEPT_RANGES, "bytes")
+						.contentType(metadata.contentType() != null ? MediaType.parseMediaType(metadata.contentType())
+								: MediaType.APPLICATION_OCTET_STREAM);
+			}
+			if (metadata.eTag() != null) {
+				builder.eTag(metadata.eTag());
+			}
+			if (metadata.lastModified() != null) {
+				builder.lastModified(metadata.lastModified());
+			}
+			return cacheHeaders(builder, key).body(object.asByteArrayUnsafe());
+		} catch (S3Exception e) {
+			if (e.statusCode() != HttpStatus.NOT_MODIFIED.value()) {
+				throw e;
+			}
+			ResponseEntity.HeadersBuilder<?> notModified = cacheHeaders(ResponseEntity.status(HttpStatus.NOT_MODIFIED),
+					key);
+			String eTag = responseHeader(e, HttpHeaders.ETAG);
+			if (eTag != null) {
+				notModified.eTag(eTag);
+			}
+			return notModified.build();
+		}
+	}
+
+	// Descargar un rango del archivo (206 Partial Content) con un GET por rango a S3
+	@GetMapping(path = "/{bucket}/object", headers = HttpHeaders.RANGE)
+	public void downloadObjectRange(@PathVariable String bucket, @RequestParam String key,
+			@RequestHeader(HttpHeaders.RANGE) String range,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+			HttpServletResponse response) throws IOException {
+		try (ResponseInputStream<GetObjectResponse> s3Stream = awsS3Service.getObjectInputStream(bucket, key,
+				range, ifNoneMatch, parseHttpDate(ifModifiedSince))) {
+			String contentRange = s3Stream.response().contentRange();
+			// Si S3 ignora un rango mal formado devuelve el objeto completo con 200
+			response.setStatus(contentRange != null ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
+			response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+			if (contentRange != null) {
+				response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+			}
+			if (s3Stream.response().lastModified() != null) {
+				response.setDateHeader(HttpHeaders.LAST_MODIFIED, s3Stream.response().lastModified().toEpochMilli());
+			}
+			writeObject(s3Stream, key, response);
+		} catch (S3Exception e) {
+			// 304 (no modificado) y 416 (rango no satisfacible) se devuelven tal cual, sin cuerpo
+			if (e.statusCode() != HttpStatus.NOT_MODIFIED.value()
+					&& e.statusCode() != HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+				throw e;
+			}
+			response.setStatus(e.statusCode());
+			String eTag = responseHeader(e, HttpHeaders.ETAG);
+			if (eTag != null) {
+				response.setHeader(HttpHeaders.ETAG, eTag);
+			}
+			String contentRange = responseHeader(e, HttpHeaders.CONTENT_RANGE);
+			if (contentRange != null) {
+				response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+			}
+		}
 	}
 
 	// Subir archivo
@@ -59,12 +265,39 @@ public class AwsS3Controller {
 	// 	return ResponseEntity.ok().build();
 	// }
 
+	// Con dedupe=true la subida se verifica con SHA-256 y, si el bucket ya tiene ese contenido,
+	// se copia del lado de S3 sin volver a enviarlo (X-Deduplicated indica cuál de los dos pasó)
 	@PostMapping("/{bucket}/object")
 	public ResponseEntity<String> uploadAndGetPresignedUrl(
 			@PathVariable String bucket,
 			@RequestParam String key,
-			@RequestParam("file") MultipartFile file) {
-		String url = awsS3Service.upload(bucket, key, file);
+			@RequestParam("file") MultipartFile file,
+			@RequestParam(defaultValue = "false") boolean dedupe) throws IOException {
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+		String url;
+		if (dedupe) {
+			DedupeUploadService.Result result = dedupeUploadService.upload(bucket, key, file);
+			builder.header(DEDUPLICATED, String.valueOf(result.deduplicated()));
+			url = result.url();
+		} else {
+			url = awsS3Service.upload(bucket, key, file);
+		}
+		// Copia comprimida para Accept-Encoding (solo texto, SVG, JSON...) en segundo plano; después
+		// de subir, porque la subida borra las variantes del contenido anterior
+		contentDeliveryService.precompress(bucket, key, file.getSize(), file.getContentType());
+		// Las variantes se generan en segundo plano; la respuesta no las espera
+		eagerVariantService.schedule(bucket, key, file.getContentType(), file.getSize());
+		return builder.body(url);
+	}
+
+	// Subir archivos grandes: el cuerpo crudo de la petición se envía a S3 por partes a medida que
+	// llega, sin pasar por el límite de spring.servlet.multipart ni por disco
+	@PutMapping("/{bucket}/object")
+	public ResponseEntity<String> uploadStream(@PathVariable String bucket, @RequestParam String key,
+			HttpServletRequest request) throws IOException {
+		String url = awsS3Service.uploadStream(bucket, key, request.getInputStream(), request.getContentType());
+		// Sin Content-Length (chunked) el tamaño se consulta antes de generar las variantes
+		eagerVariantService.schedule(bucket, key, request.getContentType(), request.getContentLengthLong());
 		return ResponseEntity.ok(url);
 	}
 
@@ -76,10 +309,130 @@ public class AwsS3Controller {
 		return ResponseEntity.ok().build();
 	}
 
+	// Borrar muchas keys (o todo un prefijo) con DeleteObjects; devuelve un resultado por key
+	@PostMapping("/{bucket}/batch/delete")
+	public ResponseEntity<List<BatchResultDto>> deleteObjects(@PathVariable String bucket,
+			@RequestBody BatchDeleteRequestDto request) {
+		return ResponseEntity.ok(s3BatchService.delete(bucket, request));
+	}
+
+	// Mover muchas keys (o renombrar un prefijo) con copias en paralelo; un resultado por key de origen
+	@PostMapping("/{bucket}/batch/move")
+	public ResponseEntity<List<BatchResultDto>> moveObjects(@PathVariable String bucket,
+			@RequestBody BatchMoveRequestDto request) {
+		return ResponseEntity.ok(s3BatchService.move(bucket, request));
+	}
+
+	// Descargar todo un prefijo como un único ZIP que se escribe mientras se leen los objetos de S3
+	// (varios en paralelo); los que fallen se listan en ERRORES.txt dentro del archivo
+	@GetMapping("/{bucket}/objects/zip")
+	public void exportZip(@PathVariable String bucket, @RequestParam String prefix,
+			HttpServletResponse response) throws IOException {
+		response.setContentType("application/zip");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + zipName(bucket, prefix));
+		s3BatchService.exportZip(bucket, prefix, response.getOutputStream());
+	}
+
+	// Contadores de la cache de objetos (aciertos, fallos, evicciones)
+	@GetMapping("/cache/stats")
+	public ResponseEntity<CacheStatsDto> cacheStats() {
+		return ResponseEntity.ok(awsS3Service.getCacheStats());
+	}
+
 	// Borrar objeto por key
 	@DeleteMapping("/{bucket}/object")
 	public ResponseEntity<Void> deleteObject(@PathVariable String bucket, @RequestParam String key) {
 		awsS3Service.deleteObject(bucket, key);
 		return ResponseEntity.noContent().build();
 	}
+
+	// Copia cabeceras y cuerpo del objeto de S3 a la respuesta
+	private static void writeObject(ResponseInputStream<GetObjectResponse> s3Stream, String key,
+			HttpServletResponse response) throws IOException {
+		writeHeaders(s3Stream.response(), key, response);
+		ObjectStreams.transfer(s3Stream, response.getOutputStream());
+	}
+
+	// Variantes y copias generadas por el servicio, que no son objetos del usuario
+	private boolean isVariant(String key) {
+		return key.startsWith(imageProperties.getVariantPrefix());
+	}
+
+	// "fotos/2025/" → "2025.zip"; sin nombre utilizable, el del bucket
+	private static String zipName(String bucket, String prefix) {
+		String trimmed = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+		String name = trimmed.substring(trimmed.lastIndexOf('/') + 1);
+		return (name.isBlank() ? bucket : name) + ".zip";
+	}
+
+	private static void writeHeaders(GetObjectResponse metadata, String key, HttpServletResponse response) {
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + key);
+		response.setContentType(metadata.contentType() != null ? metadata.contentType()
+				: MediaType.APPLICATION_OCTET_STREAM_VALUE);
+		if (metadata.contentLength() != null) {
+			response.setContentLengthLong(metadata.contentLength());
+		}
+		if (metadata.eTag() != null) {
+			response.setHeader(HttpHeaders.ETAG, metadata.eTag());
+		}
+	}
+
+	// Envía un archivo de la cache en disco sin pasar por el heap: con sendfile de Tomcat si el
+	// conector lo soporta y, si no, con FileChannel.transferTo hacia la salida
+	private static void writeFile(DiskObjectCache.Entry cached, String key, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + key);
+		response.setContentType(cached.contentType() != null ? cached.contentType()
+				: MediaType.APPLICATION_OCTET_STREAM_VALUE);
+		response.setContentLengthLong(cached.size());
+		if (cached.eTag() != null) {
+			response.setHeader(HttpHeaders.ETAG, cached.eTag());
+		}
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+			request.setAttribute(SENDFILE_FILENAME, cached.path().toString());
+			request.setAttribute(SENDFILE_START, 0L);
+			request.setAttribute(SENDFILE_END, cached.size());
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(cached.path(), StandardOpenOption.READ)) {
+			WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+			long position = 0;
+			while (position < cached.size()) {
+				position += channel.transferTo(position, cached.size() - position, target);
+			}
+		}
+	}
+
+	// Vary (si la respuesta depende de Accept/Accept-Encoding) y Cache-Control, también en los 304
+	private <B extends ResponseEntity.HeadersBuilder<B>> B cacheHeaders(B builder, String key) {
+		String vary = contentDeliveryService.vary(key);
+		if (vary != null) {
+			builder.varyBy(vary);
+		}
+		String cacheControl = contentDeliveryService.cacheControl();
+		if (cacheControl != null) {
+			builder.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+		}
+		return builder;
+	}
+
+	// Fecha HTTP (RFC 1123); una fecha inválida se ignora como si no se hubiera enviado
+	private static Instant parseHttpDate(String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	// Cabecera de la respuesta HTTP de S3 que originó la excepción (ETag en un 304, por ejemplo)
+	private static String responseHeader(S3Exception e, String name) {
+		if (e.awsErrorDetails() == null || e.awsErrorDetails().sdkHttpResponse() == null) {
+			return null;
+		}
+		return e.awsErrorDetails().sdkHttpResponse().firstMatchingHeader(name).orElse(null);
+	}
 }
\ No newline at end of file
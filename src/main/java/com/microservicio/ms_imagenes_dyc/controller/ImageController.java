@@ -0,0 +1,66 @@
+package com.microservicio.ms_imagenes_dyc.controller;
+
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.microservicio.ms_imagenes_dyc.models.dto.VariantStatusDto;
+import com.microservicio.ms_imagenes_dyc.service.ContentDeliveryService;
+import com.microservicio.ms_imagenes_dyc.service.EagerVariantService;
+import com.microservicio.ms_imagenes_dyc.service.ImageResizeService;
+import com.microservicio.ms_imagenes_dyc.service.ImageVariant;
+
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+@RestController
+@RequestMapping("/s3")
+@RequiredArgsConstructor
+public class ImageController {
+
+	private final ImageResizeService imageResizeService;
+	private final EagerVariantService eagerVariantService;
+	private final ContentDeliveryService contentDeliveryService;
+
+	// Imagen redimensionada/convertida, ej. /s3/bucket/image?key=a.png&w=150&h=150&fit=cover&format=jpg.
+	// La primera petición genera la variante y la guarda en S3; las siguientes la leen directamente.
+	// Sin format se elige AVIF/WebP según Accept (si hay writer de ImageIO) y la respuesta varía por Accept.
+	@GetMapping("/{bucket}/image")
+	public ResponseEntity<byte[]> getImage(@PathVariable String bucket, @RequestParam String key,
+			@RequestParam(required = false) Integer w,
+			@RequestParam(required = false) Integer h,
+			@RequestParam(defaultValue = "contain") String fit,
+			@RequestParam(required = false) String format,
+			@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+		String outputFormat = format != null ? format : contentDeliveryService.preferredImageFormat(accept);
+		ImageVariant variant = imageResizeService.variantFor(key, w, h, fit, outputFormat);
+		ResponseBytes<GetObjectResponse> image = imageResizeService.getVariant(bucket, key, variant);
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+				.header(HttpHeaders.CACHE_CONTROL, contentDeliveryService.cacheControl());
+		if (format == null) {
+			builder.varyBy(HttpHeaders.ACCEPT);
+		}
+		if (image.response().eTag() != null) {
+			builder.eTag(image.response().eTag());
+		}
+		return builder.contentType(MediaType.parseMediaType(variant.contentType()))
+				.body(image.asByteArrayUnsafe());
+	}
+
+	// Estado de las variantes que se generan al subir la imagen (PENDING, READY, FAILED, MISSING, UNSUPPORTED)
+	@GetMapping("/{bucket}/image/variants")
+	public ResponseEntity<List<VariantStatusDto>> variantStatus(@PathVariable String bucket,
+			@RequestParam String key) {
+		return ResponseEntity.ok(eagerVariantService.status(bucket, key));
+	}
+}
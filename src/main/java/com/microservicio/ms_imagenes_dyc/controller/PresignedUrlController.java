@@ -0,0 +1,38 @@
+package com.microservicio.ms_imagenes_dyc.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.microservicio.ms_imagenes_dyc.models.dto.PresignedUrlDto;
+import com.microservicio.ms_imagenes_dyc.service.PresignedUrlService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/s3")
+@RequiredArgsConstructor
+public class PresignedUrlController {
+
+	private final PresignedUrlService presignedUrlService;
+
+	// URLs de descarga firmadas para una o varias keys (?key=a.png&key=b.png)
+	@GetMapping("/{bucket}/presigned")
+	public ResponseEntity<List<PresignedUrlDto>> presignDownloads(@PathVariable String bucket,
+			@RequestParam List<String> key) {
+		return ResponseEntity.ok(presignedUrlService.presignDownloads(bucket, key));
+	}
+
+	// URL firmada para que el cliente haga el PUT directo a S3 con el Content-Type indicado
+	@PostMapping("/{bucket}/presigned/upload")
+	public ResponseEntity<PresignedUrlDto> presignUpload(@PathVariable String bucket, @RequestParam String key,
+			@RequestParam(required = false) String contentType) {
+		return ResponseEntity.ok(presignedUrlService.presignUpload(bucket, key, contentType));
+	}
+}
@@ -0,0 +1,17 @@
+package com.microservicio.ms_imagenes_dyc.models.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchDeleteRequestDto {
+
+	// Keys a borrar, o bien todas las que empiezan por prefix
+	private List<String> keys;
+	private String prefix;
+}
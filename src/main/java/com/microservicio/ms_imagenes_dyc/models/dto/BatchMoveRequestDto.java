@@ -0,0 +1,18 @@
+package com.microservicio.ms_imagenes_dyc.models.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchMoveRequestDto {
+
+	// Pares origen/destino, o bien renombrar todo sourcePrefix a destPrefix
+	private List<MoveDto> moves;
+	private String sourcePrefix;
+	private String destPrefix;
+}
@@ -0,0 +1,18 @@
+package com.microservicio.ms_imagenes_dyc.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatsDto {
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long revalidationCount;
+	private long entryCount;
+	private long sizeBytes;
+}
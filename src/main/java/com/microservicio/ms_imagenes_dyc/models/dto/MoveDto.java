@@ -0,0 +1,14 @@
+package com.microservicio.ms_imagenes_dyc.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoveDto {
+
+	private String sourceKey;
+	private String destKey;
+}
@@ -0,0 +1,16 @@
+package com.microservicio.ms_imagenes_dyc.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresignedUrlDto {
+
+	private String key;
+	private String url;
+	private String method;
+	private String expiresAt;
+}
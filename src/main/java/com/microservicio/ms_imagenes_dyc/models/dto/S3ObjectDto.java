@@ -12,4 +12,10 @@ public class S3ObjectDto {
 	private String key;
 	private Long size;
 	private String lastModified;
+	private String etag;
+
+	// Sin ETag (prefijos comunes del listado con delimiter)
+	public S3ObjectDto(String key, Long size, String lastModified) {
+		this(key, size, lastModified, null);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.microservicio.ms_imagenes_dyc.models.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class S3ObjectPageDto {
+
+	private List<S3ObjectDto> objects;
+	private List<String> commonPrefixes;
+	private String nextContinuationToken;
+	private boolean truncated;
+}
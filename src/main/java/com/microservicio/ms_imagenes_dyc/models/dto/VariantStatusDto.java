@@ -0,0 +1,15 @@
+package com.microservicio.ms_imagenes_dyc.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class VariantStatusDto {
+
+	private String variant;
+	private String key;
+	private String status;
+}
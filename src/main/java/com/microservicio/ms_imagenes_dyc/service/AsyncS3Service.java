@@ -0,0 +1,146 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+// Las mismas operaciones que AwsS3Service sobre S3AsyncClient: ningún hilo queda
+// bloqueado esperando a S3 y cada método devuelve un CompletableFuture. Lo que sigue a una
+// escritura (evict publica ObjectChangedEvent y sus listeners llaman a S3) corre en el
+// executor, no en el hilo de completado del SDK, que atiende las respuestas de todas las llamadas.
+// Se instrumenta con las mismas operaciones y métricas que el camino síncrono.
+@Service
+@ConditionalOnProperty(name = "s3.client.mode", havingValue = "async")
+public class AsyncS3Service {
+
+    private final S3AsyncClient s3AsyncClient;
+    private final AwsS3Service awsS3Service;
+    private final ExecutorService executor;
+    private final S3Metrics metrics;
+
+    public AsyncS3Service(S3AsyncClient s3AsyncClient, AwsS3Service awsS3Service,
+            @Qualifier("s3TaskExecutor") ExecutorService executor, S3Metrics metrics) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.awsS3Service = awsS3Service;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    public CompletableFuture<S3ObjectPageDto> listObjects(String bucket, String prefix, String delimiter,
+            Integer maxKeys, String continuationToken) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .maxKeys(maxKeys)
+                .continuationToken(continuationToken)
+                .build();
+        return metrics.observeAsync("list", bucket, () -> s3AsyncClient.listObjectsV2(request))
+                .thenApply(response -> new S3ObjectPageDto(
+                        response.contents().stream().map(AwsS3Service::toDto).toList(),
+                        response.commonPrefixes().stream().map(CommonPrefix::prefix).toList(),
+                        response.nextContinuationToken(),
+                        Boolean.TRUE.equals(response.isTruncated())));
+    }
+
+    public CompletableFuture<ResponseBytes<GetObjectResponse>> download(String bucket, String key) {
+        return metrics.observeAsync("download", bucket,
+                () -> s3AsyncClient.getObject(getRequest(bucket, key),
+                        AsyncResponseTransformer.toBytes()))
+                .whenComplete((bytes, failure) -> {
+                    if (bytes != null) {
+                        metrics.bytes("download", bucket, S3Metrics.IN, bytes.asByteBuffer().remaining());
+                    }
+                });
+    }
+
+    // El future se completa al llegar las cabeceras; el cuerpo se lee del stream a medida que llega.
+    // Como en el camino síncrono, los bytes son los que anuncia Content-Length.
+    public CompletableFuture<ResponseInputStream<GetObjectResponse>> stream(String bucket, String key) {
+        return metrics.observeAsync("get", bucket,
+                () -> s3AsyncClient.getObject(getRequest(bucket, key),
+                        AsyncResponseTransformer.toBlockingInputStream()))
+                .whenComplete((stream, failure) -> {
+                    if (stream != null && stream.response().contentLength() != null) {
+                        metrics.bytes("get", bucket, S3Metrics.IN, stream.response().contentLength());
+                    }
+                });
+    }
+
+    public CompletableFuture<String> upload(String bucket, String key, MultipartFile file) {
+        InputStream body;
+        try {
+            body = file.getInputStream();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException("Error leyendo el archivo para subir a S3", e));
+        }
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(file.getContentType())
+                .contentLength(file.getSize())
+                .build();
+        return metrics.observeAsync("upload", bucket,
+                () -> s3AsyncClient.putObject(request,
+                        AsyncRequestBody.fromInputStream(body, file.getSize(), executor)))
+                .whenComplete((response, failure) -> {
+                    closeQuietly(body);
+                    if (response != null) {
+                        metrics.bytes("upload", bucket, S3Metrics.OUT, file.getSize());
+                    }
+                })
+                .thenApplyAsync(response -> {
+                    awsS3Service.evict(bucket, key);
+                    return String.format("https://%s.s3.amazonaws.com/%s",
+                            bucket,
+                            URLEncoder.encode(key, StandardCharsets.UTF_8));
+                }, executor);
+    }
+
+    public CompletableFuture<Void> deleteObject(String bucket, String key) {
+        DeleteObjectRequest request = DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+        return metrics.observeAsync("delete", bucket, () -> s3AsyncClient.deleteObject(request))
+                .thenAcceptAsync(response -> awsS3Service.evict(bucket, key), executor);
+    }
+
+    private static GetObjectRequest getRequest(String bucket, String key) {
+        return GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // El archivo temporal del multipart lo limpia Spring al terminar la petición
+        }
+    }
+}
@@ -1,75 +1,400 @@
 package com.microservicio.ms_imagenes_dyc.service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchResultDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.CacheStatsDto;
 import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
+import com.microservicio.ms_imagenes_dyc.util.ObjectStreams;
+import com.microservicio.ms_imagenes_dyc.util.SingleFlight;
 
-import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
 import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
 @Service
-@RequiredArgsConstructor
 public class AwsS3Service {
 
+    private static final Logger log = LoggerFactory.getLogger(AwsS3Service.class);
+
+    // Máximo de keys por llamada a DeleteObjects
+    static final int MAX_DELETE_BATCH = 1000;
+
     private final S3Client s3Client;
+    private final S3ObjectCache objectCache;
+    private final DiskObjectCache diskCache;
+    private final MultipartUploader multipartUploader;
+    private final ApplicationEventPublisher eventPublisher;
+    private final S3Metrics metrics;
+    // Copia hacia la cache en disco de /object/stream, independiente del cliente que la inició
+    private final Executor fillExecutor;
+
+    // GET completos en curso: las descargas simultáneas de la misma key y condiciones comparten uno
+    private final SingleFlight<FetchKey, ResponseBytes<GetObjectResponse>> fetches =
+            new SingleFlight<>(fetch -> this.metrics.coalesced("download", fetch.bucket()));
+
+    // Descargas de /object/stream en curso hacia la cache en disco, por bucket/key. Se completa
+    // en cuanto S3 responde, con la escritura en curso (null si el objeto no entra en la cache).
+    private final ConcurrentHashMap<String, CompletableFuture<DiskObjectCache.PendingWrite>> diskFills =
+            new ConcurrentHashMap<>();
 
-    // Listar objetos del bucket
+    public AwsS3Service(S3Client s3Client, S3ObjectCache objectCache, DiskObjectCache diskCache,
+            MultipartUploader multipartUploader, ApplicationEventPublisher eventPublisher, S3Metrics metrics,
+            @Qualifier("s3TaskExecutor") Executor fillExecutor) {
+        this.s3Client = s3Client;
+        this.objectCache = objectCache;
+        this.diskCache = diskCache;
+        this.multipartUploader = multipartUploader;
+        this.eventPublisher = eventPublisher;
+        this.metrics = metrics;
+        this.fillExecutor = fillExecutor;
+    }
+
+    // Listar objetos del bucket (primera página)
     public List<S3ObjectDto> listObjects(String bucket) {
+        return listObjects(bucket, null, null, null, null).getObjects();
+    }
+
+    // Listar una página de objetos (S3 devuelve como máximo 1000 por llamada).
+    // Si la página está truncada, nextContinuationToken permite pedir la siguiente.
+    public S3ObjectPageDto listObjects(String bucket, String prefix, String delimiter, Integer maxKeys,
+            String continuationToken) {
+        return listPage(bucket, ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .maxKeys(maxKeys)
+                .continuationToken(continuationToken)
+                .build());
+    }
+
+    // Igual que listObjects pero empezando después de una key (para seguir un listado que
+    // no tiene token de S3, ej. uno paginado desde el índice en memoria)
+    public S3ObjectPageDto listObjectsAfter(String bucket, String prefix, String delimiter, Integer maxKeys,
+            String startAfter) {
+        return listPage(bucket, ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .maxKeys(maxKeys)
+                .startAfter(startAfter)
+                .build());
+    }
+
+    private S3ObjectPageDto listPage(String bucket, ListObjectsV2Request request) {
+        ListObjectsV2Response response = metrics.observe("list", bucket, () -> s3Client.listObjectsV2(request));
+
+        List<S3ObjectDto> objects = response.contents().stream()
+                .map(AwsS3Service::toDto)
+                .collect(Collectors.toList());
+        List<String> commonPrefixes = response.commonPrefixes().stream()
+                .map(CommonPrefix::prefix)
+                .collect(Collectors.toList());
+        return new S3ObjectPageDto(objects, commonPrefixes, response.nextContinuationToken(),
+                Boolean.TRUE.equals(response.isTruncated()));
+    }
+
+    // Recorrer todas las páginas de forma perezosa: la siguiente página se pide a S3
+    // solo cuando se consumió la anterior, así la memoria no crece con el tamaño del bucket
+    public Stream<S3ObjectDto> streamObjects(String bucket, String prefix) {
         ListObjectsV2Request request = ListObjectsV2Request.builder()
                 .bucket(bucket)
+                .prefix(prefix)
                 .build();
-        ListObjectsV2Response response = s3Client.listObjectsV2(request);
-
-        return response.contents().stream()
-                .map(obj -> new S3ObjectDto(
-                        obj.key(),
-                        obj.size(),
-                        obj.lastModified() != null ? obj.lastModified().toString() : null
-                ))
-                .collect(Collectors.toList());
+        return Stream.iterate(metrics.observe("list", bucket, () -> s3Client.listObjectsV2(request)),
+                        Objects::nonNull,
+                        page -> Boolean.TRUE.equals(page.isTruncated())
+                                ? metrics.observe("list", bucket, () -> s3Client.listObjectsV2(request.toBuilder()
+                                        .continuationToken(page.nextContinuationToken())
+                                        .build()))
+                                : null)
+                .flatMap(page -> page.contents().stream())
+                .map(AwsS3Service::toDto);
+    }
+
+    // Metadatos actuales de un objeto (S3Exception 404 si no existe)
+    public HeadObjectResponse headObject(String bucket, String key) {
+        return metrics.observe("head", bucket, () -> s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build()));
     }
 
     // Obtener objeto como InputStream (ResponseInputStream)
     public ResponseInputStream<GetObjectResponse> getObjectInputStream(String bucket, String key) {
+        return getObjectInputStream(bucket, key, null, null, null);
+    }
+
+    // Obtener un rango del objeto (ej. "bytes=0-1023") con cabeceras condicionales opcionales.
+    // S3 responde 206 con Content-Range, o lanza S3Exception con 304/412/416 según el caso.
+    public ResponseInputStream<GetObjectResponse> getObjectInputStream(String bucket, String key, String range,
+            String ifNoneMatch, Instant ifModifiedSince) {
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .bucket(bucket)
                 .key(key)
+                .range(range)
+                .ifNoneMatch(ifNoneMatch)
+                .ifModifiedSince(ifModifiedSince)
                 .build();
-        return s3Client.getObject(getObjectRequest);
+        ResponseInputStream<GetObjectResponse> stream = metrics.observe("get", bucket,
+                () -> s3Client.getObject(getObjectRequest));
+        // El cuerpo se lee después; se cuenta lo que S3 anunció que va a enviar
+        metrics.bytes("get", bucket, S3Metrics.IN, nullToZero(stream.response().contentLength()));
+        return stream;
+    }
+
+    // Archivo vigente en la cache en disco, o null si hay que ir a S3. Una entrada vencida
+    // se revalida con un HEAD condicional sobre su ETag antes de servirla.
+    public DiskObjectCache.Entry getCachedFile(String bucket, String key) {
+        if (!diskCache.isEnabled()) {
+            return null;
+        }
+        DiskObjectCache.Entry entry = diskCache.get(bucket, key);
+        if (entry == null || diskCache.isFresh(entry)) {
+            return entry;
+        }
+        try {
+            metrics.observe("head", bucket, () -> s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .ifNoneMatch(entry.eTag())
+                    .build()));
+            // 200: el objeto cambió en S3
+            diskCache.invalidate(bucket, key);
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() != 304) {
+                diskCache.invalidate(bucket, key);
+                return null;
+            }
+            diskCache.revalidated(entry);
+            return entry;
+        }
+    }
+
+    // Origen para /object/stream. Con la cache en disco activa, las peticiones simultáneas por la
+    // misma key no van cada una a S3: la primera abre el GET y lo copia a disco en el pool de
+    // tareas, y todas (ella incluida) leen ese archivo a medida que crece, sin esperar a que
+    // termine. La copia avanza al ritmo de S3 y no al de un cliente: si el que la inició se
+    // desconecta o lee despacio, las demás no se quedan sin cuerpo. Solo esperan (como mucho
+    // coalesce-wait) a que S3 responda a la primera. Sin disco no hay dónde compartir el cuerpo y
+    // cada petición abre su propio stream.
+    public ObjectStream openObjectStream(String bucket, String key) {
+        DiskObjectCache.Entry cached = getCachedFile(bucket, key);
+        if (cached != null) {
+            return ObjectStream.ofFile(cached);
+        }
+        if (!diskCache.isEnabled()) {
+            return ObjectStream.ofS3(getObjectInputStream(bucket, key));
+        }
+
+        String fillKey = bucket + '/' + key;
+        CompletableFuture<DiskObjectCache.PendingWrite> fill = new CompletableFuture<>();
+        CompletableFuture<DiskObjectCache.PendingWrite> running = diskFills.putIfAbsent(fillKey, fill);
+        if (running != null) {
+            ResponseInputStream<GetObjectResponse> shared = tail(awaitFill(running));
+            if (shared != null) {
+                metrics.coalesced("stream", bucket);
+                return ObjectStream.ofS3(shared);
+            }
+            return ObjectStream.ofS3(getObjectInputStream(bucket, key));
+        }
+
+        ResponseInputStream<GetObjectResponse> s3Stream;
+        try {
+            s3Stream = getObjectInputStream(bucket, key);
+        } catch (RuntimeException e) {
+            // Las que esperaban reciben el mismo error (ej. NoSuchKey) sin volver a pedirlo
+            fill.completeExceptionally(e);
+            diskFills.remove(fillKey, fill);
+            throw e;
+        }
+        DiskObjectCache.PendingWrite pending = diskCache.begin(bucket, key, s3Stream.response());
+        if (pending == null) {
+            // No entra en la cache en disco: las que esperaban van a S3 por su cuenta
+            fill.complete(null);
+            diskFills.remove(fillKey, fill);
+            return ObjectStream.ofS3(s3Stream);
+        }
+        try {
+            fillExecutor.execute(() -> fillDisk(fillKey, fill, s3Stream, pending));
+        } catch (RejectedExecutionException e) {
+            // Pool saturado: esta petición transmite directo y las demás van a S3 por su cuenta
+            pending.close();
+            fill.complete(null);
+            diskFills.remove(fillKey, fill);
+            return ObjectStream.ofS3(s3Stream);
+        }
+        fill.complete(pending);
+        ResponseInputStream<GetObjectResponse> own = tail(pending);
+        return ObjectStream.ofS3(own != null ? own : getObjectInputStream(bucket, key));
+    }
+
+    // Copia el objeto entero a disco y lo confirma en la cache; si S3 falla a mitad, quienes leen
+    // el archivo reciben IOException y el temporal se descarta
+    private void fillDisk(String fillKey, CompletableFuture<DiskObjectCache.PendingWrite> fill,
+            ResponseInputStream<GetObjectResponse> s3Stream, DiskObjectCache.PendingWrite pending) {
+        try (pending) {
+            ObjectStreams.transfer(s3Stream, pending);
+            s3Stream.close();
+            pending.commit();
+        } catch (IOException | RuntimeException e) {
+            ObjectStreams.abortAndClose(s3Stream);
+            log.warn("No se pudo copiar {} a la cache en disco", fillKey, e);
+        } finally {
+            diskFills.remove(fillKey, fill);
+        }
     }
 
     // Descargar como byte[]
     public byte[] downloadAsBytes(String bucket, String key) {
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucket)
-                .key(key)
+        return download(bucket, key, null, null).asByteArray();
+    }
+
+    // Descargar con metadatos (ETag, Last-Modified). Si el cliente ya tiene la versión actual
+    // S3 no envía el cuerpo y lanza S3Exception con código 304.
+    // Con la cache activa, una entrada vigente se sirve sin ir a S3 y una vencida se revalida
+    // con un GET condicional sobre su ETag; en ambos casos el 304 al cliente sale de la entrada.
+    public ResponseBytes<GetObjectResponse> download(String bucket, String key, String ifNoneMatch,
+            Instant ifModifiedSince) {
+        return metrics.observe("download", bucket, () -> downloadCached(bucket, key, ifNoneMatch, ifModifiedSince));
+    }
+
+    private ResponseBytes<GetObjectResponse> downloadCached(String bucket, String key, String ifNoneMatch,
+            Instant ifModifiedSince) {
+        // Anotada antes del GET: si la key se modifica mientras tanto, lo leído no se guarda
+        long generation = objectCache.generation(bucket, key);
+        if (!objectCache.isEnabled()) {
+            return fetch(bucket, key, ifNoneMatch, ifModifiedSince, generation);
+        }
+        S3ObjectCache.Entry cached = objectCache.get(bucket, key);
+        if (cached == null) {
+            ResponseBytes<GetObjectResponse> fetched = fetch(bucket, key, ifNoneMatch, ifModifiedSince, generation);
+            objectCache.put(bucket, key, fetched, generation);
+            return fetched;
+        }
+        if (objectCache.isFresh(cached)) {
+            return unlessNotModified(cached.content(), ifNoneMatch, ifModifiedSince);
+        }
+        ResponseBytes<GetObjectResponse> current;
+        try {
+            // La revalidación va con el ETag cacheado, no con los condicionales del cliente
+            current = fetch(bucket, key, cached.content().response().eTag(), null, generation);
+            objectCache.put(bucket, key, current, generation);
+        } catch (S3Exception e) {
+            if (e.statusCode() != 304) {
+                objectCache.invalidate(bucket, key);
+                throw e;
+            }
+            objectCache.revalidated(bucket, key, cached, generation);
+            current = cached.content();
+        }
+        return unlessNotModified(current, ifNoneMatch, ifModifiedSince);
+    }
+
+    // Lo que sale de la cache no pasó por S3 con los condicionales del cliente: se evalúan acá
+    // contra el ETag y el Last-Modified guardados y, si ya tiene esa versión, se lanza el mismo
+    // 304 que habría dado S3. If-None-Match manda sobre If-Modified-Since, como en HTTP.
+    private static ResponseBytes<GetObjectResponse> unlessNotModified(ResponseBytes<GetObjectResponse> content,
+            String ifNoneMatch, Instant ifModifiedSince) {
+        GetObjectResponse metadata = content.response();
+        boolean notModified = ifNoneMatch != null
+                ? matchesETag(ifNoneMatch, metadata.eTag())
+                : ifModifiedSince != null && metadata.lastModified() != null
+                        && !metadata.lastModified().truncatedTo(ChronoUnit.SECONDS).isAfter(ifModifiedSince);
+        if (!notModified) {
+            return content;
+        }
+        SdkHttpResponse.Builder httpResponse = SdkHttpResponse.builder().statusCode(304);
+        if (metadata.eTag() != null) {
+            httpResponse.putHeader("ETag", metadata.eTag());
+        }
+        throw (S3Exception) S3Exception.builder()
+                .statusCode(304)
+                .message("Not Modified")
+                .awsErrorDetails(AwsErrorDetails.builder()
+                        .errorCode("NotModified")
+                        .sdkHttpResponse(httpResponse.build())
+                        .build())
                 .build();
-        ResponseBytes<GetObjectResponse> responseBytes = s3Client.getObjectAsBytes(getObjectRequest);
-        return responseBytes.asByteArray();
+    }
+
+    // If-None-Match admite una lista de ETags, débiles (W/"...") o "*"
+    static boolean matchesETag(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (eTag != null && weakless(tag).equals(weakless(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String weakless(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    // Contadores de la cache de objetos
+    public CacheStatsDto getCacheStats() {
+        return objectCache.stats();
     }
 
     // Subir archivo y devolver la URL pública
     public String upload(String bucket, String key, MultipartFile file) {
+        return metrics.observe("upload", bucket, () -> putFile(bucket, key, file));
+    }
+
+    private String putFile(String bucket, String key, MultipartFile file) {
         try (var is = file.getInputStream()) {
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                     .bucket(bucket)
@@ -78,11 +403,11 @@ public class AwsS3Service {
                     .contentLength(file.getSize())
                     .build();
             s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(is, file.getSize()));
+            metrics.bytes("upload", bucket, S3Metrics.OUT, file.getSize());
+            evict(bucket, key);
 
             // Devuelve la URL pública
-            return String.format("https://%s.s3.amazonaws.com/%s",
-                    bucket,
-                    URLEncoder.encode(key, StandardCharsets.UTF_8));
+            return publicUrl(bucket, key);
         } catch (IOException e) {
             throw new RuntimeException("Error leyendo el archivo para subir a S3", e);
         } catch (Exception e) {
@@ -91,8 +416,39 @@ public class AwsS3Service {
     }
 	
 
+    // Subir desde un stream de tamaño desconocido (cuerpo crudo de la petición) por partes,
+    // sin límite de tamaño y con memoria acotada
+    public String uploadStream(String bucket, String key, InputStream body, String contentType)
+            throws IOException {
+        long size = metrics.observe("upload", bucket, () -> multipartUploader.upload(bucket, key, body, contentType));
+        metrics.bytes("upload", bucket, S3Metrics.OUT, size);
+        evict(bucket, key);
+        return publicUrl(bucket, key);
+    }
+
+    // Subir contenido ya generado en memoria (ej. variantes de imágenes)
+    public void uploadBytes(String bucket, String key, byte[] data, String contentType) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) data.length)
+                .build();
+        metrics.observe("upload", bucket, () -> s3Client.putObject(putObjectRequest, RequestBody.fromBytes(data)));
+        metrics.bytes("upload", bucket, S3Metrics.OUT, data.length);
+        evict(bucket, key);
+    }
+
     // Mover objeto (copiar + borrar)
     public void moveObject(String bucket, String sourceKey, String destKey) {
+        metrics.run("move", bucket, () -> {
+            copyObject(bucket, sourceKey, destKey);
+            deleteObject(bucket, sourceKey);
+        });
+    }
+
+    // Copiar objeto dentro del mismo bucket
+    public void copyObject(String bucket, String sourceKey, String destKey) {
         CopyObjectRequest copyRequest = CopyObjectRequest.builder()
                 .sourceBucket(bucket)
                 .sourceKey(sourceKey)
@@ -100,8 +456,41 @@ public class AwsS3Service {
                 .destinationKey(destKey)
                 .build();
 
-        s3Client.copyObject(copyRequest);
-        deleteObject(bucket, sourceKey);
+        metrics.observe("copy", bucket, () -> s3Client.copyObject(copyRequest));
+        evict(bucket, destKey);
+    }
+
+    // Borrar muchas keys con DeleteObjects, en bloques de hasta 1000 (el máximo de S3).
+    // Devuelve un resultado por key: un error en una key o en un bloque no corta el resto.
+    public List<BatchResultDto> deleteObjects(String bucket, List<String> keys) {
+        List<BatchResultDto> results = new ArrayList<>(keys.size());
+        for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH) {
+            List<String> chunk = keys.subList(from, Math.min(from + MAX_DELETE_BATCH, keys.size()));
+            List<ObjectIdentifier> identifiers = chunk.stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .collect(Collectors.toList());
+            Map<String, String> errors = new HashMap<>();
+            try {
+                // En modo quiet S3 solo informa las keys que fallaron
+                DeleteObjectsResponse response = metrics.observe("delete-batch", bucket,
+                        () -> s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                                .bucket(bucket)
+                                .delete(Delete.builder().objects(identifiers).quiet(true).build())
+                                .build()));
+                response.errors().forEach(error -> errors.put(error.key(), error.code() + ": " + error.message()));
+            } catch (S3Exception e) {
+                String message = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+                chunk.forEach(key -> errors.put(key, message));
+            }
+            for (String key : chunk) {
+                String error = errors.get(key);
+                if (error == null) {
+                    evict(bucket, key);
+                }
+                results.add(new BatchResultDto(key, error == null, error));
+            }
+        }
+        return results;
     }
 
     // Borrar objeto
@@ -110,40 +499,94 @@ public class AwsS3Service {
                 .bucket(bucket)
                 .key(key)
                 .build();
-        s3Client.deleteObject(deleteRequest);
+        metrics.observe("delete", bucket, () -> s3Client.deleteObject(deleteRequest));
+        evict(bucket, key);
     }
 
-    public String uploadAndGetPresignedUrl(String bucket, String key, MultipartFile file) {
-        try (var is = file.getInputStream()) {
-            // 1. Subir el archivo
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(bucket)
-                    .key(key)
-                    .contentType(file.getContentType())
-                    .contentLength(file.getSize())
-                    .build();
+    // Quita la key de ambos niveles de cache tras modificarla en S3 y avisa a los interesados.
+    // Público para que otros caminos de escritura (ej. el cliente asíncrono) lo reutilicen.
+    public void evict(String bucket, String key) {
+        objectCache.invalidate(bucket, key);
+        diskCache.invalidate(bucket, key);
+        eventPublisher.publishEvent(new ObjectChangedEvent(bucket, key));
+    }
 
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(is, file.getSize()));
+    private ResponseBytes<GetObjectResponse> fetch(String bucket, String key, String ifNoneMatch,
+            Instant ifModifiedSince, long generation) {
+        return fetches.execute(new FetchKey(bucket, key, ifNoneMatch, ifModifiedSince, generation),
+                () -> fetchOnce(bucket, key, ifNoneMatch, ifModifiedSince));
+    }
 
-            // 2. Generar la presigned URL (por ejemplo, válida 60 minutos)
-            try (S3Presigner presigner = S3Presigner.create()) {
-                GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                        .bucket(bucket)
-                        .key(key)
-                        .build();
+    private ResponseBytes<GetObjectResponse> fetchOnce(String bucket, String key, String ifNoneMatch,
+            Instant ifModifiedSince) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .ifNoneMatch(ifNoneMatch)
+                .ifModifiedSince(ifModifiedSince)
+                .build();
+        ResponseBytes<GetObjectResponse> fetched = s3Client.getObjectAsBytes(getObjectRequest);
+        metrics.bytes("download", bucket, S3Metrics.IN, fetched.asByteBuffer().remaining());
+        return fetched;
+    }
 
-                GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                        .getObjectRequest(getObjectRequest)
-                        .signatureDuration(Duration.ofMinutes(720)) // Cambia minutos si lo deseas
-                        .build();
+    // Cuerpo leído del archivo de la descarga en curso, con los metadatos que respondió S3;
+    // null si esa escritura ya se descartó
+    private static ResponseInputStream<GetObjectResponse> tail(DiskObjectCache.PendingWrite pending) {
+        if (pending == null) {
+            return null;
+        }
+        try {
+            InputStream body = pending.openTail();
+            return body != null
+                    ? new ResponseInputStream<>(pending.metadata(), AbortableInputStream.create(body))
+                    : null;
+        } catch (IOException e) {
+            log.warn("No se pudo leer la descarga compartida, se va a S3", e);
+            return null;
+        }
+    }
 
-                return presigner.presignGetObject(presignRequest).url().toString();
+    // Escritura de la descarga en curso en cuanto S3 le respondió, o null si no entra en la
+    // cache o S3 tardó demasiado en responder
+    private DiskObjectCache.PendingWrite awaitFill(CompletableFuture<DiskObjectCache.PendingWrite> fill) {
+        try {
+            return fill.get(diskCache.coalesceWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Error leyendo el archivo para subir a S3", e);
-        } catch (Exception e) {
-            throw new RuntimeException("Error subiendo archivo a S3 o generando presigned URL", e);
+            throw new IllegalStateException("Error en la descarga compartida", e.getCause());
         }
     }
-    
+
+    static String publicUrl(String bucket, String key) {
+        return String.format("https://%s.s3.amazonaws.com/%s",
+                bucket,
+                URLEncoder.encode(key, StandardCharsets.UTF_8));
+    }
+
+    private static long nullToZero(Long value) {
+        return value != null ? value : 0;
+    }
+
+    // Un GET solo puede compartirse con otro idéntico: mismas condiciones, misma respuesta. Con la
+    // generación, una petición posterior a una modificación no se suma a un GET anterior a ella.
+    private record FetchKey(String bucket, String key, String ifNoneMatch, Instant ifModifiedSince,
+            long generation) {
+    }
+
+    static S3ObjectDto toDto(S3Object obj) {
+        return new S3ObjectDto(
+                obj.key(),
+                obj.size(),
+                obj.lastModified() != null ? obj.lastModified().toString() : null,
+                obj.eTag()
+        );
+    }
 }
\ No newline at end of file
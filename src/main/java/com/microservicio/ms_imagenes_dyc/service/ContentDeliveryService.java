@@ -0,0 +1,330 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservicio.ms_imagenes_dyc.config.DeliveryProperties;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// Elige la representación de /object según lo que acepta el cliente: una copia comprimida
+// (gzip o brotli) para texto/SVG/JSON, o una versión WebP (o AVIF, con un writer de ImageIO que
+// lo soporte) para imágenes. Las copias se guardan junto a las variantes de la key, así que se
+// borran solas cuando cambia el original.
+@Service
+public class ContentDeliveryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentDeliveryService.class);
+
+    // Codificaciones que se buscan guardadas, en orden de preferencia del servidor
+    private static final List<String> ENCODINGS = List.of("br", "gzip");
+
+    private final AwsS3Service awsS3Service;
+    private final ImageResizeService imageResizeService;
+    private final DeliveryProperties properties;
+    private final Executor precompressExecutor;
+    private final List<MediaType> compressibleTypes;
+    // Formatos de imagen configurados que ImageIO sabe escribir: de los demás nunca habrá variante
+    private final List<String> imageFormats;
+
+    // Keys de variantes que no existen en S3 (bucket/key), para no repetir el GET en cada petición
+    private final Cache<String, Boolean> missing;
+
+    public ContentDeliveryService(AwsS3Service awsS3Service, ImageResizeService imageResizeService,
+            DeliveryProperties properties, @Qualifier("s3TaskExecutor") Executor precompressExecutor) {
+        this.awsS3Service = awsS3Service;
+        this.imageResizeService = imageResizeService;
+        this.properties = properties;
+        this.precompressExecutor = precompressExecutor;
+        this.compressibleTypes = properties.getCompressibleTypes().stream().map(MediaType::parseMediaType).toList();
+        this.imageFormats = properties.getImageFormats().stream()
+                .map(format -> format.toLowerCase(Locale.ROOT))
+                .filter(ContentDeliveryService::canWrite)
+                .toList();
+        properties.getImageFormats().stream()
+                .filter(format -> !canWrite(format))
+                .forEach(format -> log.warn("No hay writer de ImageIO para {}: no se ofrecerá según Accept", format));
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(properties.getMissingVariantTtl())
+                .build();
+    }
+
+    // Representación elegida: contenido, Content-Type y Content-Encoding (null si va sin codificar)
+    public record Delivery(ResponseBytes<GetObjectResponse> content, String contentType, String contentEncoding) {
+    }
+
+    // Busca una representación alternativa guardada; null si hay que servir el original.
+    // Los condicionales se aplican a la representación elegida (cada una tiene su ETag),
+    // así que un 304 de S3 se propaga como S3Exception igual que en AwsS3Service.download.
+    public Delivery negotiate(String bucket, String key, String accept, String acceptEncoding,
+            String ifNoneMatch, Instant ifModifiedSince) {
+        MediaType type = mediaType(key);
+        if (isCompressible(type)) {
+            for (String encoding : acceptedEncodings(acceptEncoding)) {
+                ResponseBytes<GetObjectResponse> encoded = findVariant(bucket, encodedKey(key, encoding),
+                        ifNoneMatch, ifModifiedSince);
+                if (encoded != null) {
+                    return new Delivery(encoded, type.toString(), encoding);
+                }
+            }
+        } else if (isConvertibleImage(type)) {
+            for (String format : acceptedImageFormats(accept)) {
+                if (format.equals(type.getSubtype())) {
+                    return null;
+                }
+                ImageVariant variant = conversion(format);
+                ResponseBytes<GetObjectResponse> converted = findVariant(bucket,
+                        imageResizeService.variantKey(key, variant), ifNoneMatch, ifModifiedSince);
+                if (converted != null) {
+                    return new Delivery(converted, variant.contentType(), null);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Copias de tamaño original en cada formato negociable distinto del de la imagen: las que
+    // negotiate busca. EagerVariantService las genera al subir la imagen, junto a sus variantes.
+    public List<ImageVariant> conversions(String key) {
+        MediaType type = mediaType(key);
+        if (!isConvertibleImage(type)) {
+            return List.of();
+        }
+        return imageFormats.stream()
+                .filter(format -> !format.equals(type.getSubtype()))
+                .map(ContentDeliveryService::conversion)
+                .toList();
+    }
+
+    // Formato que /image genera cuando no se pide uno explícito: el primero de la configuración
+    // que el cliente acepta y ImageIO sabe escribir; null para conservar el del original
+    public String preferredImageFormat(String accept) {
+        return acceptedImageFormats(accept).stream().findFirst().orElse(null);
+    }
+
+    // Cabeceras de las que depende la respuesta de /object para esta key (null si no varía)
+    public String vary(String key) {
+        MediaType type = mediaType(key);
+        if (isCompressible(type)) {
+            return "Accept-Encoding";
+        }
+        if (isConvertibleImage(type) && !imageFormats.isEmpty()) {
+            return "Accept";
+        }
+        return null;
+    }
+
+    public String cacheControl() {
+        return properties.getCacheControl();
+    }
+
+    // Programa la copia gzip de un objeto recién subido si es de un tipo comprimible y de un
+    // tamaño que vale la pena. Se decide con el tipo y el tamaño declarados, sin leer el archivo;
+    // la copia se arma en segundo plano leyendo el objeto de S3, como las variantes anticipadas.
+    // Debe llamarse después de la subida: al subir se borran las variantes previas.
+    public void precompress(String bucket, String key, long size, String contentType) {
+        MediaType type = contentType != null ? parse(contentType) : mediaType(key);
+        if (!isCompressible(type) || size < properties.getCompressionMinSize().toBytes()
+                || size > properties.getCompressionMaxSize().toBytes()) {
+            return;
+        }
+        try {
+            precompressExecutor.execute(() -> storeGzipCopy(bucket, key, size, type));
+        } catch (RejectedExecutionException e) {
+            log.warn("No se pudo programar la copia comprimida de {}/{}", bucket, key, e);
+        }
+    }
+
+    // Una variante subida o borrada deja de estar marcada como inexistente. Si cambia un original
+    // comprimible se purgan sus copias comprimidas (las imágenes las purga ImageResizeService).
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        missing.invalidate(event.bucket() + "/" + event.key());
+        if (!event.key().startsWith(imageResizeService.variantPrefix("")) && isCompressible(mediaType(event.key()))) {
+            imageResizeService.purgeVariants(event.bucket(), event.key());
+        }
+    }
+
+    private void storeGzipCopy(String bucket, String key, long size, MediaType type) {
+        try (ResponseInputStream<GetObjectResponse> source = awsS3Service.getObjectInputStream(bucket, key)) {
+            byte[] compressed = gzip(source, size);
+            // Menos de 10% de ahorro: no compensa guardar ni servir la copia
+            if (compressed.length > size * 0.9) {
+                return;
+            }
+            awsS3Service.uploadBytes(bucket, encodedKey(key, "gzip"), compressed, type.toString());
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se pudo guardar la copia comprimida de {}/{}", bucket, key, e);
+        }
+    }
+
+    // Solo el 304 de un condicional se propaga; cualquier otro fallo al buscar la variante (403,
+    // 5xx, timeout) hace servir el original, que es lo que se entregaría si no existiera
+    private ResponseBytes<GetObjectResponse> findVariant(String bucket, String variantKey, String ifNoneMatch,
+            Instant ifModifiedSince) {
+        String memoKey = bucket + "/" + variantKey;
+        if (missing.getIfPresent(memoKey) != null) {
+            return null;
+        }
+        try {
+            return awsS3Service.download(bucket, variantKey, ifNoneMatch, ifModifiedSince);
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                throw e;
+            }
+            if (e.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                missing.put(memoKey, Boolean.TRUE);
+            } else {
+                log.warn("No se pudo consultar la variante {}/{} ({}), se sirve el original", bucket, variantKey,
+                        e.statusCode(), e);
+            }
+            return null;
+        } catch (RuntimeException e) {
+            log.warn("No se pudo consultar la variante {}/{}, se sirve el original", bucket, variantKey, e);
+            return null;
+        }
+    }
+
+    // Key de la copia codificada, ej. "_variants/data/a.json/compressed.gz"
+    private String encodedKey(String key, String encoding) {
+        return imageResizeService.variantPrefix(key) + "compressed." + ("gzip".equals(encoding) ? "gz" : encoding);
+    }
+
+    // Codificaciones de Accept-Encoding con q > 0 que el servicio puede tener guardadas,
+    // de mayor a menor q y, a igual q, en el orden de ENCODINGS. "*" no cuenta: solo se
+    // comprime para clientes que lo piden explícitamente.
+    static List<String> acceptedEncodings(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return List.of();
+        }
+        List<Weighted> accepted = new ArrayList<>();
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            if ("x-gzip".equals(coding)) {
+                coding = "gzip";
+            }
+            double quality = quality(tokens);
+            if (ENCODINGS.contains(coding) && quality > 0) {
+                accepted.add(new Weighted(coding, quality, ENCODINGS.indexOf(coding)));
+            }
+        }
+        return accepted.stream().sorted(Weighted.ORDER).map(Weighted::value).distinct().toList();
+    }
+
+    // Formatos configurados que el Accept nombra explícitamente con q > 0 (image/* no alcanza:
+    // los navegadores lo mandan siempre aunque no decodifiquen AVIF)
+    private List<String> acceptedImageFormats(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return List.of();
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return List.of();
+        }
+        List<Weighted> accepted = new ArrayList<>();
+        List<String> formats = imageFormats;
+        for (MediaType mediaType : mediaTypes) {
+            String format = mediaType.getSubtype().toLowerCase(Locale.ROOT);
+            if ("image".equalsIgnoreCase(mediaType.getType()) && formats.contains(format)
+                    && mediaType.getQualityValue() > 0) {
+                accepted.add(new Weighted(format, mediaType.getQualityValue(), formats.indexOf(format)));
+            }
+        }
+        return accepted.stream().sorted(Weighted.ORDER).map(Weighted::value).distinct().toList();
+    }
+
+    private static double quality(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String parameter = tokens[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private boolean isCompressible(MediaType type) {
+        return type != null && compressibleTypes.stream().anyMatch(type::equalsTypeAndSubtype);
+    }
+
+    // SVG es texto: se comprime en vez de convertirse
+    private static boolean isConvertibleImage(MediaType type) {
+        return type != null && "image".equals(type.getType()) && !"svg+xml".equals(type.getSubtype());
+    }
+
+    // Misma imagen en otro formato, ej. "autoxauto-contain.webp"
+    private static ImageVariant conversion(String format) {
+        return new ImageVariant(null, null, ImageVariant.Fit.CONTAIN, format);
+    }
+
+    private static boolean canWrite(String format) {
+        return ImageIO.getImageWritersByFormatName(format).hasNext();
+    }
+
+    private static MediaType mediaType(String key) {
+        return MediaTypeFactory.getMediaType(key).orElse(null);
+    }
+
+    private static MediaType parse(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+
+    // gzip con compresión máxima: se comprime una vez al subir y se sirve muchas
+    private static byte[] gzip(InputStream data, long size) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) (size / 2));
+        try (OutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            data.transferTo(gzip);
+        }
+        return out.toByteArray();
+    }
+
+    private record Weighted(String value, double quality, int preference) {
+
+        static final Comparator<Weighted> ORDER = Comparator.comparingDouble(Weighted::quality).reversed()
+                .thenComparingInt(Weighted::preference);
+    }
+}
@@ -0,0 +1,189 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.microservicio.ms_imagenes_dyc.config.UploadProperties;
+import com.microservicio.ms_imagenes_dyc.util.ObjectStreams;
+
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// Subidas direccionadas por contenido. Se calcula el SHA-256 del archivo y se envía a S3, que
+// rechaza la subida si lo recibido no coincide. Por cada contenido se guarda una referencia
+// vacía "<dedupePrefix><sha256>" con la key que lo tiene; si al subir ya existe, la key nueva
+// se crea con una copia del lado de S3 y los bytes no vuelven a viajar.
+@Service
+@RequiredArgsConstructor
+public class DedupeUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(DedupeUploadService.class);
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Metadatos de la referencia: key con el contenido y su ETag al registrarla. Si la key se
+    // sobrescribe o se borra, la copia condicionada al ETag falla y se sube de nuevo.
+    static final String SOURCE_KEY = "source-key";
+    static final String SOURCE_ETAG = "source-etag";
+
+    private final S3Client s3Client;
+    private final AwsS3Service awsS3Service;
+    private final S3Metrics metrics;
+    private final UploadProperties properties;
+
+    // URL pública, SHA-256 del contenido (hex) y si se resolvió con una copia
+    public record Result(String url, String sha256, boolean deduplicated) {
+    }
+
+    public Result upload(String bucket, String key, MultipartFile file) throws IOException {
+        byte[] digest = sha256(file);
+        String sha256 = HEX.formatHex(digest);
+        String checksum = Base64.getEncoder().encodeToString(digest);
+        String referenceKey = properties.getDedupePrefix() + sha256;
+
+        if (copyFromReference(bucket, referenceKey, key, file.getContentType(), checksum)) {
+            metrics.deduplicated(bucket, file.getSize());
+            return new Result(AwsS3Service.publicUrl(bucket, key), sha256, true);
+        }
+        String eTag = put(bucket, key, file, checksum);
+        saveReference(bucket, referenceKey, key, eTag);
+        return new Result(AwsS3Service.publicUrl(bucket, key), sha256, false);
+    }
+
+    // Copia el contenido referenciado a key; false si no hay referencia o ya no es válida
+    private boolean copyFromReference(String bucket, String referenceKey, String key, String contentType,
+            String checksum) {
+        Map<String, String> reference = findReference(bucket, referenceKey);
+        String sourceETag = reference.get(SOURCE_ETAG);
+        if (reference.get(SOURCE_KEY) == null || sourceETag == null) {
+            return false;
+        }
+        String sourceKey = URLDecoder.decode(reference.get(SOURCE_KEY), StandardCharsets.UTF_8);
+        CopyObjectRequest copyRequest = CopyObjectRequest.builder()
+                .sourceBucket(bucket)
+                .sourceKey(sourceKey)
+                .destinationBucket(bucket)
+                .destinationKey(key)
+                .copySourceIfMatch(sourceETag)
+                // El Content-Type es el de esta subida, no el del objeto de origen
+                .metadataDirective(MetadataDirective.REPLACE)
+                .contentType(contentType)
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .build();
+        CopyObjectResponse response;
+        try {
+            response = metrics.observe("copy", bucket, () -> s3Client.copyObject(copyRequest));
+        } catch (S3Exception e) {
+            // 404: el origen se borró; 412: se sobrescribió con otro contenido
+            if (e.statusCode() == HttpStatus.NOT_FOUND.value()
+                    || e.statusCode() == HttpStatus.PRECONDITION_FAILED.value()) {
+                return false;
+            }
+            throw e;
+        }
+        String copied = response.copyObjectResult() != null ? response.copyObjectResult().checksumSHA256() : null;
+        if (copied != null && !copied.equals(checksum)) {
+            // No debería pasar con el If-Match; la subida normal sobrescribe la copia
+            log.warn("La copia de {}/{} a {} no tiene el SHA-256 esperado", bucket, sourceKey, key);
+            return false;
+        }
+        awsS3Service.evict(bucket, key);
+        return true;
+    }
+
+    // Metadatos de la referencia; vacío si no existe o no se pudo consultar
+    private Map<String, String> findReference(String bucket, String referenceKey) {
+        try {
+            HeadObjectResponse head = awsS3Service.headObject(bucket, referenceKey);
+            return head.metadata();
+        } catch (S3Exception e) {
+            if (e.statusCode() != HttpStatus.NOT_FOUND.value()) {
+                // La deduplicación es una optimización: ante la duda se sube el archivo
+                log.warn("No se pudo consultar la referencia {}/{}", bucket, referenceKey, e);
+            }
+            return Map.of();
+        }
+    }
+
+    // PutObject con el SHA-256 precalculado: S3 verifica lo recibido y devuelve 400 si no coincide
+    private String put(String bucket, String key, MultipartFile file, String checksum) throws IOException {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(file.getContentType())
+                .contentLength(file.getSize())
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .checksumSHA256(checksum)
+                .build();
+        try (InputStream is = file.getInputStream()) {
+            String eTag = metrics.observe("upload", bucket,
+                    () -> s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(is, file.getSize())))
+                    .eTag();
+            metrics.bytes("upload", bucket, S3Metrics.OUT, file.getSize());
+            awsS3Service.evict(bucket, key);
+            return eTag;
+        }
+    }
+
+    // Objeto vacío: solo los metadatos que apuntan a la key con el contenido. Los metadatos de S3
+    // viajan como cabeceras ASCII, así que la key se guarda codificada.
+    private void saveReference(String bucket, String referenceKey, String key, String eTag) {
+        if (eTag == null) {
+            return;
+        }
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(referenceKey)
+                .metadata(Map.of(SOURCE_KEY, URLEncoder.encode(key, StandardCharsets.UTF_8), SOURCE_ETAG, eTag))
+                .contentLength(0L)
+                .build();
+        try {
+            metrics.observe("upload", bucket, () -> s3Client.putObject(putObjectRequest, RequestBody.empty()));
+            awsS3Service.evict(bucket, referenceKey);
+        } catch (S3Exception e) {
+            // El archivo ya está subido; solo se pierde la deduplicación de la próxima copia
+            log.warn("No se pudo guardar la referencia {}/{}", bucket, referenceKey, e);
+        }
+    }
+
+    // El MultipartFile ya está en memoria o en disco local: leerlo una vez más es barato
+    // comparado con enviarlo a S3, y el hash hace falta antes de decidir si se envía
+    private static byte[] sha256(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[ObjectStreams.BUFFER_SIZE];
+        try (InputStream is = file.getInputStream()) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,522 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.microservicio.ms_imagenes_dyc.config.ObjectCacheProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+// Segundo nivel de cache: cuerpos en archivos locales, fuera del heap, con un índice LRU
+// acotado por bytes que se persiste en disco para que un pod reiniciado arranque con la cache caliente
+@Component
+public class DiskObjectCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskObjectCache.class);
+
+    private static final String INDEX_FILE = "index.dat";
+    private static final int INDEX_MAGIC = 0x53334443;
+    // 2: cada entrada guarda el nombre de su archivo (uno por versión del objeto)
+    private static final int INDEX_VERSION = 2;
+    private static final String BODY_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Los archivos desalojados se borran con retraso: una respuesta por sendfile puede seguir leyéndolos
+    private static final long DELETE_GRACE_SECONDS = 60;
+
+    private final ObjectCacheProperties.Disk properties;
+
+    // Orden de acceso: el primero es el menos usado recientemente
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(1024, 0.75f, true);
+    private long totalBytes;
+    private boolean dirty;
+
+    private Path directory;
+    private ScheduledExecutorService maintenance;
+
+    public DiskObjectCache(ObjectCacheProperties properties) {
+        this.properties = properties.getDisk();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        directory = Paths.get(properties.getDirectory()).toAbsolutePath();
+        Files.createDirectories(directory);
+        loadIndex();
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "disk-cache-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getIndexSaveInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::saveIndexQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (maintenance == null) {
+            return;
+        }
+        maintenance.shutdown();
+        saveIndexQuietly();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled() && directory != null;
+    }
+
+    public synchronized Entry get(String bucket, String key) {
+        return index.get(cacheKey(bucket, key));
+    }
+
+    public Duration coalesceWait() {
+        return properties.getCoalesceWait();
+    }
+
+    public boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.storedAtMillis() < properties.getTtl().toMillis();
+    }
+
+    // S3 confirmó con 304 que el archivo sigue vigente
+    public synchronized void revalidated(Entry entry) {
+        String cacheKey = cacheKey(entry.bucket(), entry.key());
+        if (index.get(cacheKey) == entry) {
+            index.put(cacheKey, entry.withStoredAt(System.currentTimeMillis()));
+            dirty = true;
+        }
+    }
+
+    public void invalidate(String bucket, String key) {
+        Entry removed;
+        synchronized (this) {
+            removed = index.remove(cacheKey(bucket, key));
+            if (removed != null) {
+                totalBytes -= removed.size();
+                dirty = true;
+            }
+        }
+        if (removed != null) {
+            scheduleDelete(removed);
+        }
+    }
+
+    // Empieza a guardar un objeto a medida que llega de S3; devuelve null si no debe cachearse
+    public PendingWrite begin(String bucket, String key, GetObjectResponse metadata) {
+        Long length = metadata.contentLength();
+        if (!isEnabled() || length == null || length > properties.getMaxObjectSize().toBytes()
+                || length > properties.getMaxSize().toBytes()) {
+            return null;
+        }
+        // Un archivo por versión: una respuesta por sendfile que ya tomó el anterior lo sigue
+        // leyendo entero, sin mezclar cuerpo nuevo con cabeceras (ETag, longitud) viejas
+        String version = fileName(bucket, key) + "." + UUID.randomUUID();
+        Path target = directory.resolve(version + BODY_SUFFIX);
+        Path temp = directory.resolve(version + TEMP_SUFFIX);
+        try {
+            return new PendingWrite(bucket, key, metadata, temp, target, Files.newOutputStream(temp));
+        } catch (IOException e) {
+            log.warn("No se pudo crear el archivo temporal de cache {}", temp, e);
+            return null;
+        }
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private void register(Entry entry, Path temp) throws IOException {
+        Files.move(temp, entry.path(), StandardCopyOption.ATOMIC_MOVE);
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = index.put(cacheKey(entry.bucket(), entry.key()), entry);
+            if (previous != null) {
+                // La versión reemplazada se borra con el mismo retraso que una desalojada
+                totalBytes -= previous.size();
+                evicted.add(previous);
+            }
+            totalBytes += entry.size();
+            Iterator<Map.Entry<String, Entry>> lru = index.entrySet().iterator();
+            while (totalBytes > properties.getMaxSize().toBytes() && lru.hasNext()) {
+                Entry candidate = lru.next().getValue();
+                if (candidate == entry) {
+                    continue;
+                }
+                lru.remove();
+                totalBytes -= candidate.size();
+                evicted.add(candidate);
+            }
+            dirty = true;
+        }
+        evicted.forEach(this::scheduleDelete);
+    }
+
+    private void scheduleDelete(Entry removed) {
+        if (maintenance == null || maintenance.isShutdown()) {
+            deleteQuietly(removed.path());
+            return;
+        }
+        // El archivo es solo de esa versión: aunque la key se haya vuelto a cachear, se puede borrar
+        maintenance.schedule(() -> deleteQuietly(removed.path()), DELETE_GRACE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void loadIndex() throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                    throw new IOException("Formato de índice desconocido");
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Entry entry = readEntry(in);
+                    // Solo se conservan entradas cuyo archivo existe completo
+                    if (Files.isRegularFile(entry.path()) && Files.size(entry.path()) == entry.size()) {
+                        index.put(cacheKey(entry.bucket(), entry.key()), entry);
+                        totalBytes += entry.size();
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Índice de cache en disco ilegible, se arranca vacío", e);
+                index.clear();
+                totalBytes = 0;
+            }
+        }
+        // Archivos huérfanos: temporales de escrituras interrumpidas o cuerpos fuera del índice
+        Set<Path> indexed = new HashSet<>();
+        index.values().forEach(entry -> indexed.add(entry.path()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX) || (name.endsWith(BODY_SUFFIX) && !indexed.contains(file))) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+        log.info("Cache en disco cargada: {} objetos, {} bytes", index.size(), totalBytes);
+    }
+
+    void saveIndex() throws IOException {
+        List<Entry> snapshot;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            snapshot = new ArrayList<>(index.values());
+            dirty = false;
+        }
+        Path temp = directory.resolve(INDEX_FILE + TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                writeEntry(out, entry);
+            }
+        }
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void saveIndexQuietly() {
+        try {
+            saveIndex();
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            log.warn("No se pudo guardar el índice de la cache en disco", e);
+        }
+    }
+
+    private Entry readEntry(DataInputStream in) throws IOException {
+        String bucket = in.readUTF();
+        String key = in.readUTF();
+        Path path = directory.resolve(in.readUTF());
+        long size = in.readLong();
+        String eTag = emptyToNull(in.readUTF());
+        long lastModified = in.readLong();
+        String contentType = emptyToNull(in.readUTF());
+        long storedAt = in.readLong();
+        return new Entry(bucket, key, path, size, eTag, lastModified, contentType, storedAt);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeUTF(entry.bucket());
+        out.writeUTF(entry.key());
+        out.writeUTF(entry.path().getFileName().toString());
+        out.writeLong(entry.size());
+        out.writeUTF(entry.eTag() != null ? entry.eTag() : "");
+        out.writeLong(entry.lastModifiedMillis());
+        out.writeUTF(entry.contentType() != null ? entry.contentType() : "");
+        out.writeLong(entry.storedAtMillis());
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar {}", path, e);
+        }
+    }
+
+    private static String cacheKey(String bucket, String key) {
+        return bucket + '/' + key;
+    }
+
+    // Prefijo de archivo seguro para cualquier key: SHA-256 de bucket/key
+    private static String fileName(String bucket, String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(cacheKey(bucket, key).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Entry(String bucket, String key, Path path, long size, String eTag, long lastModifiedMillis,
+            String contentType, long storedAtMillis) {
+
+        Entry withStoredAt(long storedAt) {
+            return new Entry(bucket, key, path, size, eTag, lastModifiedMillis, contentType, storedAt);
+        }
+    }
+
+    // Copia en curso de un objeto hacia la cache. Los errores de disco no se lanzan a quien
+    // escribe: la entrada no se confirma y los lectores reciben IOException. Las peticiones
+    // leen el archivo mientras crece (openTail) en vez de esperar a que se complete.
+    public final class PendingWrite extends OutputStream {
+
+        private final String bucket;
+        private final String key;
+        private final GetObjectResponse metadata;
+        private final Path temp;
+        private final Path target;
+        private final OutputStream out;
+        private long written;
+        private boolean failed;
+        private boolean closed;
+        private Entry committed;
+        // Protege written/failed/closed/committed para los lectores de openTail y los despierta
+        private final Object progress = new Object();
+
+        private PendingWrite(String bucket, String key, GetObjectResponse metadata, Path temp, Path target,
+                OutputStream out) {
+            this.bucket = bucket;
+            this.key = key;
+            this.metadata = metadata;
+            this.temp = temp;
+            this.target = target;
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            if (failed) {
+                return;
+            }
+            try {
+                out.write(buffer, offset, length);
+                synchronized (progress) {
+                    written += length;
+                    progress.notifyAll();
+                }
+            } catch (IOException e) {
+                markFailed();
+                log.warn("Error escribiendo {} en la cache en disco", temp, e);
+            }
+        }
+
+        public GetObjectResponse metadata() {
+            return metadata;
+        }
+
+        // Lector del archivo desde el principio que espera los bytes que faltan hasta completar
+        // Content-Length; si la escritura falla o se abandona, la lectura termina con IOException.
+        // null si ya no se puede leer (escritura descartada).
+        public InputStream openTail() throws IOException {
+            synchronized (progress) {
+                if (committed != null) {
+                    return Files.newInputStream(committed.path());
+                }
+                if (failed || closed) {
+                    return null;
+                }
+                // Abierto antes de que commit lo mueva o close lo borre: el descriptor sigue valiendo
+                return new TailInputStream(FileChannel.open(temp, StandardOpenOption.READ));
+            }
+        }
+
+        // Confirma la entrada si se recibió el objeto completo
+        public void commit() {
+            closeFile();
+            synchronized (progress) {
+                if (failed || written != metadata.contentLength()) {
+                    return;
+                }
+                Entry entry = new Entry(bucket, key, target, written, metadata.eTag(),
+                        metadata.lastModified() != null ? metadata.lastModified().toEpochMilli() : -1L,
+                        metadata.contentType(), System.currentTimeMillis());
+                try {
+                    register(entry, temp);
+                    committed = entry;
+                    closed = true;
+                } catch (IOException e) {
+                    failed = true;
+                    log.warn("No se pudo confirmar {} en la cache en disco", target, e);
+                }
+                progress.notifyAll();
+            }
+        }
+
+        // Entrada registrada por commit(), o null si no se llegó a confirmar
+        public Entry committed() {
+            return committed;
+        }
+
+        // Descarta el temporal si la escritura no se confirmó (cliente desconectado, error de S3...)
+        @Override
+        public void close() {
+            closeFile();
+            synchronized (progress) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                progress.notifyAll();
+            }
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                log.warn("No se pudo borrar el temporal {}", temp, e);
+            }
+        }
+
+        private void closeFile() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                markFailed();
+            }
+        }
+
+        private void markFailed() {
+            synchronized (progress) {
+                failed = true;
+                progress.notifyAll();
+            }
+        }
+
+        // Lee lo ya escrito y, al alcanzarlo, espera más. Si el archivo no crece durante
+        // tailStallTimeout (la descarga desde S3 está trabada) se corta con IOException.
+        private final class TailInputStream extends InputStream {
+
+            private final FileChannel channel;
+            private final long length;
+            private long position;
+
+            private TailInputStream(FileChannel channel) {
+                this.channel = channel;
+                this.length = metadata.contentLength();
+            }
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                if (count == 0) {
+                    return 0;
+                }
+                if (position >= length) {
+                    return -1;
+                }
+                long readable = awaitBytes();
+                int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(count, readable)), position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+
+            // Bytes escritos más allá de position, esperando si todavía no hay ninguno
+            private long awaitBytes() throws IOException {
+                long stallNanos = properties.getTailStallTimeout().toNanos();
+                synchronized (progress) {
+                    long deadline = System.nanoTime() + stallNanos;
+                    while (written <= position) {
+                        if (failed || (closed && committed == null)) {
+                            throw new IOException("Se interrumpió la descarga compartida de " + bucket + "/" + key);
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new IOException("La descarga compartida de " + bucket + "/" + key
+                                    + " no avanza");
+                        }
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(progress, remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrumpido esperando la descarga compartida");
+                        }
+                    }
+                    return written - position;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.VariantStatusDto;
+
+import jakarta.annotation.PreDestroy;
+
+// Genera en segundo plano las variantes configuradas de cada imagen subida, y las copias en
+// otros formatos que /object negocia según Accept, para que el primer visitante no pague el
+// redimensionado ni la conversión.
+@Service
+public class EagerVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(EagerVariantService.class);
+
+    // "150x150-cover", "600xauto", "600xauto-contain.webp"
+    private static final Pattern SPEC = Pattern.compile("(\\d+|auto)x(\\d+|auto)(?:-(\\w+))?(?:\\.(\\w+))?");
+
+    public enum VariantState {
+        PENDING, READY, FAILED, MISSING, UNSUPPORTED
+    }
+
+    private final ImageResizeService imageResizeService;
+    private final AwsS3Service awsS3Service;
+    private final ContentDeliveryService contentDeliveryService;
+    private final S3Metrics metrics;
+    private final List<VariantSpec> specs;
+    private final long maxSourceSize;
+    private final ThreadPoolExecutor executor;
+
+    // Trabajos en curso por bucket/key, con el estado de cada variante (por key de la variante)
+    private final Map<String, Map<String, VariantState>> inFlight = new ConcurrentHashMap<>();
+
+    public EagerVariantService(ImageResizeService imageResizeService, AwsS3Service awsS3Service,
+            ContentDeliveryService contentDeliveryService, S3Metrics metrics, ImageProperties properties) {
+        this.imageResizeService = imageResizeService;
+        this.awsS3Service = awsS3Service;
+        this.contentDeliveryService = contentDeliveryService;
+        this.metrics = metrics;
+        this.specs = properties.getEagerVariants().stream().map(VariantSpec::parse).toList();
+        this.maxSourceSize = properties.getMaxEagerSourceSize().toBytes();
+        specs.stream()
+                .filter(spec -> spec.format() != null && !ImageIO.getImageWritersByFormatName(spec.format()).hasNext())
+                .forEach(spec -> log.warn("No hay writer de ImageIO para {}: la variante {} no se generará",
+                        spec.format(), spec.text()));
+        AtomicInteger counter = new AtomicInteger();
+        // Cola acotada: si no damos abasto se rechaza (ver schedule) en vez de acumular trabajo
+        this.executor = new ThreadPoolExecutor(properties.getEagerThreads(), properties.getEagerThreads(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(properties.getEagerQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Encola la generación de las variantes configuradas y de las copias para la negociación
+    // si el objeto subido es una imagen. size < 0 si no se conoce (cuerpo en streaming): se
+    // consulta con un HEAD antes de leer el original.
+    public void schedule(String bucket, String key, String contentType, long size) {
+        if (contentType == null || !contentType.startsWith("image/")) {
+            return;
+        }
+        if (size > maxSourceSize) {
+            skipTooLarge(bucket, key, size);
+            return;
+        }
+        Map<String, ImageVariant> variants = resolve(key);
+        if (variants.isEmpty()) {
+            return;
+        }
+        String jobKey = bucket + "/" + key;
+        Map<String, VariantState> states = new ConcurrentHashMap<>();
+        variants.keySet().forEach(variantKey -> states.put(variantKey, VariantState.PENDING));
+        inFlight.put(jobKey, states);
+        try {
+            executor.execute(() -> generate(bucket, key, size, jobKey, variants, states));
+        } catch (RejectedExecutionException e) {
+            // Con la cola llena la subida no espera: las variantes se generan al primer pedido (/image)
+            inFlight.remove(jobKey, states);
+            metrics.eagerVariantsSkipped(bucket, "queue-full");
+            log.debug("Cola de variantes llena, se omiten las de {}/{}", bucket, key);
+        }
+    }
+
+    // Estado de cada variante configurada: el del trabajo en curso o, si no hay, lo que exista en S3
+    public List<VariantStatusDto> status(String bucket, String key) {
+        Map<String, VariantState> states = inFlight.get(bucket + "/" + key);
+        Set<String> stored = null;
+        List<VariantStatusDto> result = new ArrayList<>();
+        for (VariantSpec spec : specs) {
+            ImageVariant variant;
+            try {
+                variant = spec.resolve(imageResizeService, key);
+            } catch (ResponseStatusException e) {
+                result.add(new VariantStatusDto(spec.text(), null, VariantState.UNSUPPORTED.name()));
+                continue;
+            }
+            String variantKey = imageResizeService.variantKey(key, variant);
+            VariantState state = states != null ? states.get(variantKey) : null;
+            if (state == null) {
+                if (stored == null) {
+                    try (Stream<S3ObjectDto> objects = awsS3Service.streamObjects(bucket,
+                            imageResizeService.variantPrefix(key))) {
+                        stored = objects.map(S3ObjectDto::getKey).collect(Collectors.toSet());
+                    }
+                }
+                state = stored.contains(variantKey) ? VariantState.READY : VariantState.MISSING;
+            }
+            result.add(new VariantStatusDto(variant.fileName(), variantKey, state.name()));
+        }
+        return result;
+    }
+
+    private Map<String, ImageVariant> resolve(String key) {
+        Map<String, ImageVariant> variants = new LinkedHashMap<>();
+        for (VariantSpec spec : specs) {
+            try {
+                ImageVariant variant = spec.resolve(imageResizeService, key);
+                variants.put(imageResizeService.variantKey(key, variant), variant);
+            } catch (ResponseStatusException e) {
+                log.debug("Variante {} no aplicable a {}: {}", spec.text(), key, e.getReason());
+            }
+        }
+        contentDeliveryService.conversions(key)
+                .forEach(variant -> variants.putIfAbsent(imageResizeService.variantKey(key, variant), variant));
+        return variants;
+    }
+
+    private void skipTooLarge(String bucket, String key, long size) {
+        metrics.eagerVariantsSkipped(bucket, "too-large");
+        log.debug("{}/{} pesa {} bytes: sus variantes se generan al pedirlas", bucket, key, size);
+    }
+
+    // Descarga el original una sola vez y sube cada variante. Si mientras tanto se volvió a subir
+    // la misma key, este trabajo quedó obsoleto y se corta para no pisar las variantes nuevas.
+    private void generate(String bucket, String key, long size, String jobKey, Map<String, ImageVariant> variants,
+            Map<String, VariantState> states) {
+        try {
+            if (size < 0) {
+                Long actual = awsS3Service.headObject(bucket, key).contentLength();
+                if (actual != null && actual > maxSourceSize) {
+                    skipTooLarge(bucket, key, actual);
+                    return;
+                }
+            }
+            byte[] original = awsS3Service.download(bucket, key, null, null).asByteArrayUnsafe();
+            for (Map.Entry<String, ImageVariant> entry : variants.entrySet()) {
+                if (inFlight.get(jobKey) != states) {
+                    return;
+                }
+                try {
+                    byte[] resized = imageResizeService.resize(original, entry.getValue());
+                    awsS3Service.uploadBytes(bucket, entry.getKey(), resized, entry.getValue().contentType());
+                    states.put(entry.getKey(), VariantState.READY);
+                } catch (RuntimeException e) {
+                    states.put(entry.getKey(), VariantState.FAILED);
+                    log.warn("No se pudo generar la variante {}/{}", bucket, entry.getKey(), e);
+                }
+            }
+        } catch (RuntimeException e) {
+            states.replaceAll((variantKey, state) -> state == VariantState.PENDING ? VariantState.FAILED : state);
+            log.warn("No se pudo leer el original {}/{} para generar variantes", bucket, key, e);
+        } finally {
+            // Terminado el trabajo, el estado se consulta directamente en S3
+            inFlight.remove(jobKey, states);
+        }
+    }
+
+    // Variante configurada; sin formato se usa el del original
+    record VariantSpec(String text, Integer width, Integer height, String fit, String format) {
+
+        static VariantSpec parse(String text) {
+            Matcher matcher = SPEC.matcher(text.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Variante inválida en s3.images.eager-variants: " + text);
+            }
+            return new VariantSpec(text.trim(), dimension(matcher.group(1)), dimension(matcher.group(2)),
+                    matcher.group(3) != null ? matcher.group(3) : "contain", matcher.group(4));
+        }
+
+        ImageVariant resolve(ImageResizeService imageResizeService, String key) {
+            return imageResizeService.variantFor(key, width, height, fit, format);
+        }
+
+        private static Integer dimension(String value) {
+            return "auto".equals(value) ? null : Integer.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.util.SingleFlight;
+
+import jakarta.annotation.PreDestroy;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// Redimensiona y convierte imágenes bajo demanda. Cada variante se calcula una sola vez
+// y se guarda en S3 bajo una key derivada del original.
+@Service
+public class ImageResizeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageResizeService.class);
+
+    private final AwsS3Service awsS3Service;
+    private final ImageProperties properties;
+    private final ThreadPoolExecutor executor;
+    // Borrado de variantes tras un cambio: fuera del hilo de la petición que escribió
+    private final Executor cleanupExecutor;
+    // Varias peticiones por la misma variante faltante comparten una descarga, un redimensionado y una subida
+    private final SingleFlight<VariantRef, ResponseBytes<GetObjectResponse>> generations;
+
+    public ImageResizeService(AwsS3Service awsS3Service, ImageProperties properties, S3Metrics metrics,
+            @Qualifier("s3TaskExecutor") Executor cleanupExecutor) {
+        this.awsS3Service = awsS3Service;
+        this.properties = properties;
+        this.cleanupExecutor = cleanupExecutor;
+        this.generations = new SingleFlight<>(ref -> metrics.coalesced("variant", ref.bucket()));
+        int threads = properties.getThreads() > 0 ? properties.getThreads()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-resize-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Sin cache de ImageIO en disco: todo el trabajo es en memoria
+        ImageIO.setUseCache(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Valida los parámetros de la petición y arma la variante; sin formato se conserva el del original
+    public ImageVariant variantFor(String key, Integer width, Integer height, String fit, String format) {
+        if ((width != null && (width <= 0 || width > properties.getMaxDimension()))
+                || (height != null && (height <= 0 || height > properties.getMaxDimension()))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "w y h deben estar entre 1 y " + properties.getMaxDimension());
+        }
+        ImageVariant.Fit parsedFit;
+        try {
+            parsedFit = ImageVariant.Fit.from(fit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fit inválido: " + fit);
+        }
+        if (parsedFit != ImageVariant.Fit.CONTAIN && (width == null || height == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fit " + fit + " requiere w y h");
+        }
+        String outputFormat = normalizeFormat(format != null ? format : extension(key));
+        if (!ImageIO.getImageWritersByFormatName(outputFormat).hasNext()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato no soportado: " + outputFormat);
+        }
+        return new ImageVariant(width, height, parsedFit, outputFormat);
+    }
+
+    // Key derivada donde se guarda la variante, ej. "_variants/fotos/a.png/150x150-contain.webp"
+    public String variantKey(String key, ImageVariant variant) {
+        return variantPrefix(key) + variant.fileName();
+    }
+
+    // Devuelve la variante desde S3 o la genera a partir del original y la guarda para las siguientes
+    public ResponseBytes<GetObjectResponse> getVariant(String bucket, String key, ImageVariant variant) {
+        String variantKey = variantKey(key, variant);
+        try {
+            return awsS3Service.download(bucket, variantKey, null, null);
+        } catch (S3Exception e) {
+            if (e.statusCode() != HttpStatus.NOT_FOUND.value()) {
+                throw e;
+            }
+        }
+        return generations.execute(new VariantRef(bucket, key, variant),
+                () -> generate(bucket, key, variantKey, variant));
+    }
+
+    private ResponseBytes<GetObjectResponse> generate(String bucket, String key, String variantKey,
+            ImageVariant variant) {
+        byte[] original = awsS3Service.download(bucket, key, null, null).asByteArrayUnsafe();
+        byte[] resized = resize(original, variant);
+        awsS3Service.uploadBytes(bucket, variantKey, resized, variant.contentType());
+        return ResponseBytes.fromByteArrayUnsafe(GetObjectResponse.builder()
+                .contentType(variant.contentType())
+                .contentLength((long) resized.length)
+                .build(), resized);
+    }
+
+    // Excluye las variantes guardadas de los listados de objetos del usuario
+    public boolean isVariantKey(String key) {
+        return key.startsWith(properties.getVariantPrefix());
+    }
+
+    // Redimensiona en el pool de CPU (tamaño = núcleos) esperando como máximo el timeout configurado
+    public byte[] resize(byte[] original, ImageVariant variant) {
+        Future<byte[]> task;
+        try {
+            task = executor.submit(() -> render(original, variant));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Cola de redimensionado llena");
+        }
+        try {
+            return task.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Redimensionado interrumpido", e);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Redimensionado demasiado lento");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException("Error redimensionando imagen", e.getCause());
+        }
+    }
+
+    // Al cambiar o borrar una imagen se descartan sus variantes para que se regeneren. Solo las
+    // imágenes tienen variantes redimensionadas; las copias comprimidas las purga ContentDeliveryService.
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        if (!isVariantKey(event.key()) && isImage(event.key())) {
+            purgeVariants(event.bucket(), event.key());
+        }
+    }
+
+    // Borra en segundo plano, con un LIST y un DeleteObjects, las variantes guardadas antes de
+    // ahora. Las escritas en el mismo segundo o después (ej. las anticipadas de la subida que
+    // provocó la purga) se conservan: el LastModified de S3 tiene resolución de segundos.
+    public void purgeVariants(String bucket, String key) {
+        Instant changedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        try {
+            cleanupExecutor.execute(() -> deleteVariantsBefore(bucket, key, changedAt));
+        } catch (RejectedExecutionException e) {
+            log.warn("No se pudo programar el borrado de variantes de {}/{}", bucket, key, e);
+        }
+    }
+
+    private void deleteVariantsBefore(String bucket, String key, Instant changedAt) {
+        try {
+            List<String> variantKeys;
+            try (Stream<S3ObjectDto> variants = awsS3Service.streamObjects(bucket, variantPrefix(key))) {
+                variantKeys = variants
+                        .filter(variant -> variant.getLastModified() == null
+                                || Instant.parse(variant.getLastModified()).isBefore(changedAt))
+                        .map(S3ObjectDto::getKey)
+                        .toList();
+            }
+            if (variantKeys.isEmpty()) {
+                return;
+            }
+            awsS3Service.deleteObjects(bucket, variantKeys).stream()
+                    .filter(result -> !result.isSuccess())
+                    .forEach(result -> log.warn("No se pudo borrar la variante {}/{}: {}", bucket, result.getKey(),
+                            result.getError()));
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron borrar las variantes de {}/{}", bucket, key, e);
+        }
+    }
+
+    // Prefijo bajo el que están todas las variantes de una key
+    public String variantPrefix(String key) {
+        return properties.getVariantPrefix() + key + "/";
+    }
+
+    private byte[] render(byte[] original, ImageVariant variant) throws IOException {
+        BufferedImage source = decode(original);
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        // JPEG no tiene canal alfa
+        int type = "jpg".equals(variant.format()) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage result;
+        switch (variant.fit()) {
+            case FILL -> result = scale(source, variant.width(), variant.height(), type);
+            case COVER -> {
+                double ratio = Math.max((double) variant.width() / sourceWidth, (double) variant.height() / sourceHeight);
+                int scaledWidth = Math.max(variant.width(), (int) Math.round(sourceWidth * ratio));
+                int scaledHeight = Math.max(variant.height(), (int) Math.round(sourceHeight * ratio));
+                BufferedImage scaled = scale(source, scaledWidth, scaledHeight, type);
+                result = scaled.getSubimage((scaledWidth - variant.width()) / 2, (scaledHeight - variant.height()) / 2,
+                        variant.width(), variant.height());
+            }
+            default -> {
+                double ratio = 1.0;
+                if (variant.width() != null) {
+                    ratio = Math.min(ratio, (double) variant.width() / sourceWidth);
+                }
+                if (variant.height() != null) {
+                    ratio = Math.min(ratio, (double) variant.height() / sourceHeight);
+                }
+                result = scale(source, Math.max(1, (int) Math.round(sourceWidth * ratio)),
+                        Math.max(1, (int) Math.round(sourceHeight * ratio)), type);
+            }
+        }
+        return encode(result, variant.format());
+    }
+
+    // Lee las dimensiones del encabezado antes de decodificar: un PNG o JPEG de pocos KB puede
+    // declarar un lienzo enorme, y ImageIO.read reservaría ancho x alto x 4 bytes sin preguntar
+    private BufferedImage decode(byte[] original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "El objeto no es una imagen legible");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > properties.getMaxSourcePixels()) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                            "La imagen supera " + properties.getMaxSourcePixels() + " píxeles");
+                }
+                return reader.read(0, reader.getDefaultReadParam());
+            } catch (IIOException e) {
+                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "El objeto no es una imagen legible");
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Reducciones grandes se hacen en pasos de a la mitad: con interpolación bilineal
+    // un único paso pierde detalle y genera aliasing
+    private static BufferedImage scale(BufferedImage source, int width, int height, int type) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = currentWidth / 2 > width ? currentWidth / 2 : width;
+            currentHeight = currentHeight / 2 > height ? currentHeight / 2 : height;
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                if (type == BufferedImage.TYPE_INT_RGB) {
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato no soportado: " + format);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(format) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(properties.getJpegQuality());
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private record VariantRef(String bucket, String key, ImageVariant variant) {
+    }
+
+    private static boolean isImage(String key) {
+        return MediaTypeFactory.getMediaType(key).map(type -> "image".equals(type.getType())).orElse(false);
+    }
+
+    private static String extension(String key) {
+        int dot = key.lastIndexOf('.');
+        return dot >= 0 && dot < key.length() - 1 ? key.substring(dot + 1) : "png";
+    }
+
+    private static String normalizeFormat(String format) {
+        String lower = format.trim().toLowerCase(Locale.ROOT);
+        return "jpeg".equals(lower) ? "jpg" : lower;
+    }
+}
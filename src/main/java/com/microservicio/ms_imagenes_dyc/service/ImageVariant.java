@@ -0,0 +1,36 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.util.Locale;
+
+// Variante de una imagen: tamaño objetivo (null = proporcional), ajuste y formato de salida
+public record ImageVariant(Integer width, Integer height, Fit fit, String format) {
+
+    public enum Fit {
+        // Cabe dentro de width x height sin deformar ni agrandar
+        CONTAIN,
+        // Cubre width x height y recorta el sobrante centrado
+        COVER,
+        // Estira a width x height exactos
+        FILL;
+
+        public static Fit from(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    // Nombre de archivo de la variante, ej. "150x150-contain.webp"
+    public String fileName() {
+        return (width != null ? width.toString() : "auto") + "x" + (height != null ? height.toString() : "auto")
+                + "-" + fit.name().toLowerCase(Locale.ROOT) + "." + format;
+    }
+
+    public String contentType() {
+        return switch (format) {
+            case "jpg" -> "image/jpeg";
+            case "png" -> "image/png";
+            case "gif" -> "image/gif";
+            case "bmp" -> "image/bmp";
+            default -> "image/" + format;
+        };
+    }
+}
@@ -0,0 +1,485 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.config.MetadataIndexProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// Índice en memoria de los metadatos de los buckets configurados. Se arma con un escaneo en
+// paralelo por prefijo, se mantiene al día con las escrituras del propio servicio (cada
+// ObjectChangedEvent se confirma con un HEAD) y se reconcilia con S3 periódicamente para
+// incorporar lo que se escribió por fuera. Listados y búsquedas no llaman a S3. Las variantes
+// generadas (s3.images.variant-prefix) no se indexan: no son objetos del usuario.
+@Service
+public class MetadataIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MetadataIndex.class);
+
+    // Los tokens de continuación del índice se distinguen de los opacos de S3 por este prefijo
+    private static final String TOKEN_PREFIX = "idx:";
+    // Máximo de entradas por página, como S3
+    private static final int MAX_PAGE = 1000;
+
+    // Orden por code point: el mismo que el de los bytes UTF-8 con que lista S3
+    static final Comparator<String> KEY_ORDER = (a, b) -> {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int left = a.codePointAt(i);
+            int right = b.codePointAt(j);
+            if (left != right) {
+                return Integer.compare(left, right);
+            }
+            i += Character.charCount(left);
+            j += Character.charCount(right);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    };
+
+    // Filtro de búsqueda; null = sin límite. modifiedAfter incluye el instante, modifiedBefore no.
+    public record Filter(Long minSize, Long maxSize, Instant modifiedAfter, Instant modifiedBefore) {
+
+        public static final Filter NONE = new Filter(null, null, null, null);
+
+        boolean matches(long size, long modifiedMillis) {
+            if ((minSize != null && size < minSize) || (maxSize != null && size > maxSize)) {
+                return false;
+            }
+            if (modifiedAfter == null && modifiedBefore == null) {
+                return true;
+            }
+            return modifiedMillis != ObjectMetadataSnapshot.UNKNOWN
+                    && (modifiedAfter == null || modifiedMillis >= modifiedAfter.toEpochMilli())
+                    && (modifiedBefore == null || modifiedMillis < modifiedBefore.toEpochMilli());
+        }
+
+        boolean matches(S3ObjectDto object) {
+            return matches(object.getSize() != null ? object.getSize() : 0,
+                    ObjectMetadataSnapshot.toMillis(object.getLastModified()));
+        }
+    }
+
+    private final AwsS3Service awsS3Service;
+    private final ExecutorService executor;
+    private final MetadataIndexProperties properties;
+    private final ImageProperties imageProperties;
+    private final Map<String, BucketIndex> buckets = new ConcurrentHashMap<>();
+    // Orden de los cambios: un HEAD que vuelve tarde no pisa el de un cambio posterior
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ScheduledExecutorService maintenance;
+
+    public MetadataIndex(AwsS3Service awsS3Service, @Qualifier("s3TaskExecutor") ExecutorService executor,
+            MetadataIndexProperties properties, ImageProperties imageProperties) {
+        this.awsS3Service = awsS3Service;
+        this.executor = executor;
+        this.properties = properties;
+        this.imageProperties = imageProperties;
+        if (properties.isEnabled()) {
+            properties.getBuckets().forEach(bucket -> buckets.put(bucket, new BucketIndex()));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metadata-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getReconcileInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::reconcileAll, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+    }
+
+    // El bucket terminó su primer escaneo y se puede consultar en memoria
+    public boolean isReady(String bucket) {
+        BucketIndex index = buckets.get(bucket);
+        return index != null && index.ready;
+    }
+
+    // Si el listado con este token lo resuelve list(): índice listo y sin token de S3, o un token
+    // emitido por el índice (aunque en este pod todavía no esté listo)
+    public boolean handles(String bucket, String continuationToken) {
+        if (continuationToken != null) {
+            return continuationToken.startsWith(TOKEN_PREFIX);
+        }
+        return isReady(bucket);
+    }
+
+    // Página de listado con la misma semántica que ListObjectsV2 (prefix, delimiter, maxKeys)
+    public S3ObjectPageDto list(String bucket, String prefix, String delimiter, Integer maxKeys,
+            String continuationToken) {
+        String from = prefix != null ? prefix : "";
+        String grouping = delimiter != null && !delimiter.isEmpty() ? delimiter : null;
+        String last = continuationToken != null ? decodeToken(continuationToken) : null;
+        BucketIndex index = buckets.get(bucket);
+        if (index == null || !index.ready) {
+            return awsS3Service.listObjectsAfter(bucket, prefix, delimiter, maxKeys, startAfter(last, from, grouping));
+        }
+        int limit = maxKeys != null ? Math.min(Math.max(maxKeys, 0), MAX_PAGE) : MAX_PAGE;
+        List<S3ObjectDto> objects = new ArrayList<>();
+        List<String> commonPrefixes = new ArrayList<>();
+        if (limit == 0) {
+            return new S3ObjectPageDto(objects, commonPrefixes, null, false);
+        }
+
+        String start = last != null ? resumeAfter(last, from, grouping) : from;
+        Cursor cursor = new Cursor(index, start, from, Filter.NONE);
+        boolean truncated = false;
+        while (cursor.hasNext()) {
+            if (objects.size() + commonPrefixes.size() == limit) {
+                truncated = true;
+                break;
+            }
+            S3ObjectDto object = cursor.next();
+            int cut = grouping != null ? object.getKey().indexOf(grouping, from.length()) : -1;
+            if (cut < 0) {
+                objects.add(object);
+                last = object.getKey();
+                continue;
+            }
+            // Una "carpeta": se informa una vez y se salta todo lo que está debajo
+            last = object.getKey().substring(0, cut + grouping.length());
+            commonPrefixes.add(last);
+            cursor = new Cursor(index, successor(last), from, Filter.NONE);
+        }
+        return new S3ObjectPageDto(objects, commonPrefixes, truncated ? encodeToken(last) : null, truncated);
+    }
+
+    // Todos los objetos bajo el prefijo, en orden, desde memoria
+    public Stream<S3ObjectDto> stream(String bucket, String prefix) {
+        String from = prefix != null ? prefix : "";
+        Cursor cursor = new Cursor(requireReady(bucket), from, from, Filter.NONE);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // Objetos bajo el prefijo que cumplen el filtro, como mucho limit. Los filtros de tamaño y
+    // fecha se evalúan sobre los arreglos del índice antes de armar cada DTO. Sin índice listo
+    // se recorre el listado de S3.
+    public List<S3ObjectDto> search(String bucket, String prefix, Filter filter, int limit) {
+        String from = prefix != null ? prefix : "";
+        if (!isReady(bucket)) {
+            try (Stream<S3ObjectDto> objects = awsS3Service.streamObjects(bucket, prefix)) {
+                return objects.filter(object -> !isVariant(object.getKey()))
+                        .filter(filter::matches).limit(limit).toList();
+            }
+        }
+        List<S3ObjectDto> result = new ArrayList<>();
+        Cursor cursor = new Cursor(buckets.get(bucket), from, from, filter);
+        while (result.size() < limit && cursor.hasNext()) {
+            result.add(cursor.next());
+        }
+        return result;
+    }
+
+    // Una escritura del servicio: se confirma con un HEAD en segundo plano
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        BucketIndex index = buckets.get(event.bucket());
+        if (index == null || isVariant(event.key())) {
+            return;
+        }
+        long changeSequence = sequence.incrementAndGet();
+        executor.execute(() -> refresh(index, event.bucket(), event.key(), changeSequence));
+    }
+
+    // Vuelve a escanear el bucket y reemplaza el snapshot. Los cambios anteriores al inicio del
+    // escaneo ya están en él; los posteriores se conservan encima.
+    void reconcile(String bucket) {
+        BucketIndex index = buckets.get(bucket);
+        long startSequence = sequence.get();
+        long started = System.nanoTime();
+        ObjectMetadataSnapshot snapshot = scan(bucket);
+        index.snapshot = snapshot;
+        index.changes.values().removeIf(change -> change.sequence() <= startSequence);
+        index.ready = true;
+        log.info("Índice de {}: {} objetos, {} KB en memoria, escaneado en {} ms", bucket, snapshot.size(),
+                snapshot.footprint() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void reconcileAll() {
+        for (String bucket : buckets.keySet()) {
+            try {
+                reconcile(bucket);
+            } catch (RuntimeException e) {
+                log.warn("No se pudo escanear el bucket {} para el índice", bucket, e);
+            }
+        }
+    }
+
+    private void refresh(BucketIndex index, String bucket, String key, long changeSequence) {
+        S3ObjectDto object;
+        try {
+            HeadObjectResponse head = awsS3Service.headObject(bucket, key);
+            object = new S3ObjectDto(key, head.contentLength(),
+                    head.lastModified() != null ? head.lastModified().toString() : null, head.eTag());
+        } catch (S3Exception e) {
+            if (e.statusCode() != HttpStatus.NOT_FOUND.value()) {
+                log.warn("No se pudo actualizar {}/{} en el índice; se corrige al reconciliar", bucket, key, e);
+                return;
+            }
+            object = null;
+        }
+        Change change = new Change(object, changeSequence);
+        index.changes.merge(key, change, (current, candidate) ->
+                candidate.sequence() > current.sequence() ? candidate : current);
+    }
+
+    // Lista el primer nivel (o los primeros scanDepth niveles) con delimiter y luego cada
+    // prefijo completo en paralelo; cada listado queda ordenado y al final se intercalan
+    private ObjectMetadataSnapshot scan(String bucket) {
+        String delimiter = properties.getScanDelimiter();
+        List<ObjectMetadataSnapshot> runs = new ArrayList<>();
+        List<String> prefixes = List.of("");
+        for (int depth = 0; depth < properties.getScanDepth() && !prefixes.isEmpty(); depth++) {
+            List<String> next = new ArrayList<>();
+            for (Level level : parallel(prefixes, prefix -> listLevel(bucket, prefix, delimiter))) {
+                runs.add(level.objects());
+                next.addAll(level.prefixes());
+            }
+            prefixes = next;
+        }
+        runs.addAll(parallel(prefixes, prefix -> listAll(bucket, prefix)));
+        return ObjectMetadataSnapshot.merge(runs);
+    }
+
+    private Level listLevel(String bucket, String prefix, String delimiter) {
+        ObjectMetadataSnapshot.Builder builder = new ObjectMetadataSnapshot.Builder();
+        List<String> prefixes = new ArrayList<>();
+        String token = null;
+        do {
+            S3ObjectPageDto page = awsS3Service.listObjects(bucket, prefix, delimiter, null, token);
+            page.getObjects().stream().filter(object -> !isVariant(object.getKey())).forEach(builder::add);
+            page.getCommonPrefixes().stream().filter(common -> !isVariant(common)).forEach(prefixes::add);
+            token = page.isTruncated() ? page.getNextContinuationToken() : null;
+        } while (token != null);
+        return new Level(builder.build(), prefixes);
+    }
+
+    private ObjectMetadataSnapshot listAll(String bucket, String prefix) {
+        ObjectMetadataSnapshot.Builder builder = new ObjectMetadataSnapshot.Builder();
+        try (Stream<S3ObjectDto> objects = awsS3Service.streamObjects(bucket, prefix)) {
+            objects.filter(object -> !isVariant(object.getKey())).forEach(builder::add);
+        }
+        return builder.build();
+    }
+
+    private boolean isVariant(String key) {
+        return key.startsWith(imageProperties.getVariantPrefix());
+    }
+
+    // Como mucho scanParallelism listados a la vez en el pool compartido
+    private <T> List<T> parallel(List<String> prefixes, Function<String, T> task) {
+        Semaphore permits = new Semaphore(Math.max(1, properties.getScanParallelism()));
+        List<CompletableFuture<T>> results = new ArrayList<>(prefixes.size());
+        try {
+            for (String prefix : prefixes) {
+                permits.acquire();
+                results.add(CompletableFuture.supplyAsync(() -> task.apply(prefix), executor)
+                        .whenComplete((ignored, failure) -> permits.release()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Escaneo del índice interrumpido", e);
+        }
+        return results.stream().map(CompletableFuture::join).toList();
+    }
+
+    private BucketIndex requireReady(String bucket) {
+        BucketIndex index = buckets.get(bucket);
+        if (index == null || !index.ready) {
+            throw new IllegalStateException("El bucket " + bucket + " no está indexado");
+        }
+        return index;
+    }
+
+    // Punto desde el que sigue la página siguiente (inclusive). Con delimiter, una última entrada
+    // que contiene el delimitador fue un prefijo común: se salta todo lo que está debajo.
+    private static String resumeAfter(String last, String from, String grouping) {
+        String start = grouping != null && last.indexOf(grouping, from.length()) >= 0 ? successor(last) : last + '\0';
+        return start != null && KEY_ORDER.compare(start, from) < 0 ? from : start;
+    }
+
+    // Lo mismo expresado como startAfter (exclusivo) de ListObjectsV2
+    private static String startAfter(String last, String from, String grouping) {
+        if (last == null) {
+            return null;
+        }
+        return grouping != null && last.indexOf(grouping, from.length()) >= 0
+                ? last + Character.toString(Character.MAX_CODE_POINT) : last;
+    }
+
+    // Menor key mayor que todas las que empiezan con prefix (null si no hay)
+    static String successor(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int codePoint = prefix.codePointBefore(end);
+            end -= Character.charCount(codePoint);
+            if (codePoint < Character.MAX_CODE_POINT) {
+                int next = codePoint + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : codePoint + 1;
+                return prefix.substring(0, end) + Character.toString(next);
+            }
+        }
+        return null;
+    }
+
+    private static String encodeToken(String last) {
+        return TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(last.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeToken(String token) {
+        try {
+            if (token.startsWith(TOKEN_PREFIX)) {
+                return new String(Base64.getUrlDecoder().decode(token.substring(TOKEN_PREFIX.length())),
+                        StandardCharsets.UTF_8);
+            }
+        } catch (IllegalArgumentException e) {
+            // Base64 inválido: mismo error que un token desconocido
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "continuationToken inválido");
+    }
+
+    private static final class BucketIndex {
+
+        private volatile ObjectMetadataSnapshot snapshot = ObjectMetadataSnapshot.EMPTY;
+        private volatile boolean ready;
+        // Escrituras posteriores al último escaneo, por key; object null = borrado
+        private final ConcurrentSkipListMap<String, Change> changes = new ConcurrentSkipListMap<>(KEY_ORDER);
+    }
+
+    private record Change(S3ObjectDto object, long sequence) {
+    }
+
+    private record Level(ObjectMetadataSnapshot objects, List<String> prefixes) {
+    }
+
+    // Recorre en orden el snapshot y los cambios desde start (inclusive) mientras las keys
+    // empiecen con prefix. Un cambio pisa la entrada del snapshot con la misma key.
+    private static final class Cursor implements Iterator<S3ObjectDto> {
+
+        private final ObjectMetadataSnapshot snapshot;
+        private final Iterator<Map.Entry<String, Change>> changes;
+        private final String prefix;
+        private final byte[] prefixBytes;
+        private final Filter filter;
+        private int position;
+        private Map.Entry<String, Change> change;
+        private byte[] changeKey;
+        private S3ObjectDto next;
+
+        Cursor(BucketIndex index, String start, String prefix, Filter filter) {
+            this.snapshot = index.snapshot;
+            this.prefix = prefix;
+            this.prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+            this.filter = filter;
+            if (start == null) {
+                // Después del final: no queda nada
+                this.position = snapshot.size();
+                this.changes = Collections.emptyIterator();
+            } else {
+                this.position = snapshot.lowerBound(start.getBytes(StandardCharsets.UTF_8));
+                this.changes = index.changes.tailMap(start, true).entrySet().iterator();
+            }
+            advanceChange();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                boolean snapshotLeft = position < snapshot.size() && snapshot.hasPrefix(position, prefixBytes);
+                if (!snapshotLeft && change == null) {
+                    return false;
+                }
+                int order = !snapshotLeft ? 1 : change == null ? -1 : snapshot.compare(position, changeKey);
+                if (order < 0) {
+                    if (filter.matches(snapshot.sizeAt(position), snapshot.modifiedAt(position))) {
+                        next = snapshot.object(position);
+                    }
+                    position++;
+                    continue;
+                }
+                if (order == 0) {
+                    position++;
+                }
+                S3ObjectDto changed = change.getValue().object();
+                if (changed != null && filter.matches(changed)) {
+                    next = changed;
+                }
+                advanceChange();
+            }
+            return true;
+        }
+
+        @Override
+        public S3ObjectDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            S3ObjectDto result = next;
+            next = null;
+            return result;
+        }
+
+        private void advanceChange() {
+            change = null;
+            changeKey = null;
+            if (changes.hasNext()) {
+                Map.Entry<String, Change> candidate = changes.next();
+                if (candidate.getKey().startsWith(prefix)) {
+                    change = candidate;
+                    changeKey = candidate.getKey().getBytes(StandardCharsets.UTF_8);
+                }
+            }
+        }
+    }
+}
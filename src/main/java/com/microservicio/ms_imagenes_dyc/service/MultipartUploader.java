@@ -0,0 +1,241 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.microservicio.ms_imagenes_dyc.config.UploadProperties;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+// Sube un InputStream de tamaño desconocido a S3 por partes, sin pasar por disco.
+// La memoria por subida es como mucho maxInFlightParts + 1 buffers de partSize, tomados
+// de un pool compartido que además acota el total entre subidas concurrentes.
+@Component
+public class MultipartUploader {
+
+    private static final Logger log = LoggerFactory.getLogger(MultipartUploader.class);
+
+    // Mínimo de S3 para todas las partes salvo la última
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3Client;
+    private final ExecutorService executor;
+    private final int partSize;
+    private final int maxInFlightParts;
+    private final BlockingQueue<byte[]> idleBuffers;
+    private final Semaphore availableBuffers;
+
+    public MultipartUploader(S3Client s3Client, UploadProperties properties,
+            @Qualifier("s3TaskExecutor") ExecutorService executor) {
+        long configuredPartSize = properties.getPartSize().toBytes();
+        if (configuredPartSize < MIN_PART_SIZE || configuredPartSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("s3.upload.part-size debe estar entre 5MB y 2GB");
+        }
+        this.s3Client = s3Client;
+        this.executor = executor;
+        this.partSize = (int) configuredPartSize;
+        this.maxInFlightParts = Math.max(1, properties.getMaxInFlightParts());
+        int poolSize = Math.max(1, properties.getBufferPoolSize());
+        this.idleBuffers = new ArrayBlockingQueue<>(poolSize);
+        this.availableBuffers = new Semaphore(poolSize);
+    }
+
+    // Devuelve los bytes subidos. Si el cuerpo cabe en una parte se hace un único PutObject.
+    // Ante cualquier fallo se espera a las partes en vuelo y se aborta la subida multipart.
+    public long upload(String bucket, String key, InputStream body, String contentType) throws IOException {
+        byte[] buffer = acquire();
+        boolean multipart = false;
+        try {
+            int length = body.readNBytes(buffer, 0, partSize);
+            if (length == partSize) {
+                // uploadParts pasa a ser dueño del buffer
+                multipart = true;
+                return uploadParts(bucket, key, body, contentType, buffer, length);
+            }
+            s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentLength((long) length)
+                    .build(), RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+            return length;
+        } finally {
+            if (!multipart) {
+                release(buffer);
+            }
+        }
+    }
+
+    private long uploadParts(String bucket, String key, InputStream body, String contentType, byte[] first,
+            int firstLength) throws IOException {
+        String uploadId;
+        try {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+        } catch (RuntimeException e) {
+            release(first);
+            throw e;
+        }
+
+        Semaphore inFlight = new Semaphore(maxInFlightParts);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        byte[] buffer = first;
+        int length = firstLength;
+        long total = 0;
+        try {
+            int partNumber = 1;
+            while (true) {
+                inFlight.acquire();
+                byte[] partBuffer = buffer;
+                int partLength = length;
+                int number = partNumber;
+                buffer = null;
+                Future<CompletedPart> part;
+                try {
+                    part = executor.submit(() -> {
+                        try {
+                            return uploadPart(bucket, key, uploadId, number, partBuffer, partLength);
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                            throw e;
+                        } finally {
+                            release(partBuffer);
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    release(partBuffer);
+                    inFlight.release();
+                    throw e;
+                }
+                parts.add(part);
+                total += partLength;
+                if (partLength < partSize) {
+                    break;
+                }
+                if (failure.get() != null) {
+                    break;
+                }
+                buffer = acquire();
+                length = body.readNBytes(buffer, 0, partSize);
+                if (length == 0) {
+                    break;
+                }
+                // Solo se excede el límite si hay datos para una parte más: 10.000 partes llenas entran
+                if (++partNumber > MAX_PARTS) {
+                    throw new IOException("El archivo supera " + MAX_PARTS + " partes de " + partSize + " bytes");
+                }
+            }
+
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> part : parts) {
+                completed.add(part.get());
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build());
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, parts);
+            throw new InterruptedIOException("Subida interrumpida");
+        } catch (ExecutionException e) {
+            abort(bucket, key, uploadId, parts);
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Error subiendo parte a S3", e.getCause());
+        } catch (IOException | RuntimeException e) {
+            abort(bucket, key, uploadId, parts);
+            throw e;
+        } finally {
+            if (buffer != null) {
+                release(buffer);
+            }
+        }
+    }
+
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] buffer,
+            int length) {
+        String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build(), RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length)).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    // Espera a que terminen las partes en vuelo (para no recibir ninguna después) y aborta
+    private void abort(String bucket, String key, String uploadId, List<Future<CompletedPart>> parts) {
+        for (Future<CompletedPart> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // Ya se reporta el primer error
+            }
+        }
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (RuntimeException e) {
+            log.warn("No se pudo abortar la subida multipart {} de {}/{}", uploadId, bucket, key, e);
+        }
+    }
+
+    private byte[] acquire() throws InterruptedIOException {
+        try {
+            availableBuffers.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Subida interrumpida esperando un buffer");
+        }
+        byte[] buffer = idleBuffers.poll();
+        return buffer != null ? buffer : new byte[partSize];
+    }
+
+    private void release(byte[] buffer) {
+        idleBuffers.offer(buffer);
+        availableBuffers.release();
+    }
+}
@@ -0,0 +1,5 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+// Se publica cuando un objeto se sube, se mueve o se borra a través de AwsS3Service
+public record ObjectChangedEvent(String bucket, String key) {
+}
@@ -0,0 +1,283 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+
+// Metadatos de un bucket (key, size, lastModified, ETag) en arreglos paralelos, ordenados por
+// los bytes UTF-8 de la key como los lista S3. Sin un objeto por entrada: cada objeto ocupa
+// unos 40 bytes más su key, así millones de keys caben en pocos cientos de MB. Inmutable.
+final class ObjectMetadataSnapshot {
+
+    // lastModified desconocido
+    static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int DIGEST_BYTES = 16;
+    // Valores de parts: 0 = ETag MD5 simple, N > 0 = multipart "<md5>-N", y estos dos
+    private static final int NO_ETAG = -1;
+    private static final int OTHER_ETAG = -2;
+
+    static final ObjectMetadataSnapshot EMPTY = new Builder().build();
+
+    private final int size;
+    // Keys UTF-8 concatenadas; la i-ésima ocupa [offsets[i], offsets[i + 1])
+    private final byte[] keys;
+    private final int[] offsets;
+    private final long[] sizes;
+    private final long[] modified;
+    private final byte[] digests;
+    private final int[] parts;
+    // ETags que no tienen la forma de un MD5 (raros), por posición
+    private final Map<Integer, String> otherETags;
+
+    private ObjectMetadataSnapshot(int size, byte[] keys, int[] offsets, long[] sizes, long[] modified,
+            byte[] digests, int[] parts, Map<Integer, String> otherETags) {
+        this.size = size;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.modified = modified;
+        this.digests = digests;
+        this.parts = parts;
+        this.otherETags = otherETags;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Primera posición cuya key es >= key
+    int lowerBound(byte[] key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    int compare(int position, byte[] key) {
+        return Arrays.compareUnsigned(keys, offsets[position], offsets[position + 1], key, 0, key.length);
+    }
+
+    boolean hasPrefix(int position, byte[] prefix) {
+        int start = offsets[position];
+        return offsets[position + 1] - start >= prefix.length
+                && Arrays.equals(keys, start, start + prefix.length, prefix, 0, prefix.length);
+    }
+
+    long sizeAt(int position) {
+        return sizes[position];
+    }
+
+    long modifiedAt(int position) {
+        return modified[position];
+    }
+
+    String key(int position) {
+        return new String(keys, offsets[position], offsets[position + 1] - offsets[position], StandardCharsets.UTF_8);
+    }
+
+    S3ObjectDto object(int position) {
+        long lastModified = modified[position];
+        return new S3ObjectDto(key(position), sizes[position],
+                lastModified != UNKNOWN ? Instant.ofEpochMilli(lastModified).toString() : null, eTag(position));
+    }
+
+    // Memoria aproximada de los arreglos, en bytes
+    long footprint() {
+        return keys.length + (long) offsets.length * Integer.BYTES
+                + (long) size * (2 * Long.BYTES + DIGEST_BYTES + Integer.BYTES);
+    }
+
+    private String eTag(int position) {
+        int part = parts[position];
+        if (part == NO_ETAG) {
+            return null;
+        }
+        if (part == OTHER_ETAG) {
+            return otherETags.get(position);
+        }
+        String digest = HEX.formatHex(digests, position * DIGEST_BYTES, (position + 1) * DIGEST_BYTES);
+        return "\"" + digest + (part > 0 ? "-" + part : "") + "\"";
+    }
+
+    static long toMillis(String lastModified) {
+        return lastModified != null ? Instant.parse(lastModified).toEpochMilli() : UNKNOWN;
+    }
+
+    // Une snapshots ordenados (ej. uno por prefijo escaneado) en uno solo, sin decodificar keys.
+    // Una key repetida entre snapshots queda una sola vez.
+    static ObjectMetadataSnapshot merge(List<ObjectMetadataSnapshot> runs) {
+        if (runs.size() == 1) {
+            return runs.get(0);
+        }
+        record Head(ObjectMetadataSnapshot run, int position) {
+            int compareTo(Head other) {
+                ObjectMetadataSnapshot a = run;
+                ObjectMetadataSnapshot b = other.run;
+                return Arrays.compareUnsigned(a.keys, a.offsets[position], a.offsets[position + 1],
+                        b.keys, b.offsets[other.position], b.offsets[other.position + 1]);
+            }
+        }
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, runs.size()), Head::compareTo);
+        int total = 0;
+        int keyBytes = 0;
+        for (ObjectMetadataSnapshot run : runs) {
+            if (run.size > 0) {
+                heads.add(new Head(run, 0));
+                total += run.size;
+                keyBytes += run.keys.length;
+            }
+        }
+        Builder builder = new Builder(total, keyBytes);
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            builder.copy(head.run(), head.position());
+            if (head.position() + 1 < head.run().size) {
+                heads.add(new Head(head.run(), head.position() + 1));
+            }
+        }
+        return builder.build();
+    }
+
+    // Acumula entradas en el orden en que llegan (el de S3). No es thread-safe: uno por listado.
+    static final class Builder {
+
+        private int count;
+        private byte[] keys;
+        private int[] offsets;
+        private long[] sizes;
+        private long[] modified;
+        private byte[] digests;
+        private int[] parts;
+        private final Map<Integer, String> otherETags = new HashMap<>();
+        private boolean sorted = true;
+
+        Builder() {
+            this(16, 512);
+        }
+
+        Builder(int capacity, int keyBytes) {
+            int initial = Math.max(16, capacity);
+            keys = new byte[Math.max(16, keyBytes)];
+            offsets = new int[initial + 1];
+            sizes = new long[initial];
+            modified = new long[initial];
+            digests = new byte[initial * DIGEST_BYTES];
+            parts = new int[initial];
+        }
+
+        Builder add(S3ObjectDto object) {
+            byte[] key = object.getKey().getBytes(StandardCharsets.UTF_8);
+            int position = append(key, 0, key.length);
+            sizes[position] = object.getSize() != null ? object.getSize() : 0;
+            modified[position] = toMillis(object.getLastModified());
+            setETag(position, object.getEtag());
+            return this;
+        }
+
+        void copy(ObjectMetadataSnapshot source, int from) {
+            int start = source.offsets[from];
+            int end = source.offsets[from + 1];
+            // Duplicado entre runs: ya está
+            if (count > 0 && Arrays.equals(keys, offsets[count - 1], offsets[count], source.keys, start, end)) {
+                return;
+            }
+            int position = append(source.keys, start, end - start);
+            sizes[position] = source.sizes[from];
+            modified[position] = source.modified[from];
+            System.arraycopy(source.digests, from * DIGEST_BYTES, digests, position * DIGEST_BYTES, DIGEST_BYTES);
+            parts[position] = source.parts[from];
+            if (source.parts[from] == OTHER_ETAG) {
+                otherETags.put(position, source.otherETags.get(from));
+            }
+        }
+
+        ObjectMetadataSnapshot build() {
+            ObjectMetadataSnapshot snapshot = new ObjectMetadataSnapshot(count,
+                    Arrays.copyOf(keys, offsets[count]), Arrays.copyOf(offsets, count + 1),
+                    Arrays.copyOf(sizes, count), Arrays.copyOf(modified, count),
+                    Arrays.copyOf(digests, count * DIGEST_BYTES), Arrays.copyOf(parts, count), Map.copyOf(otherETags));
+            return sorted ? snapshot : sort(snapshot);
+        }
+
+        private int append(byte[] key, int from, int length) {
+            if (count == sizes.length) {
+                grow();
+            }
+            int start = offsets[count];
+            if (start + length > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, start + length));
+            }
+            System.arraycopy(key, from, keys, start, length);
+            offsets[count + 1] = start + length;
+            if (sorted && count > 0
+                    && Arrays.compareUnsigned(keys, offsets[count - 1], start, keys, start, start + length) > 0) {
+                sorted = false;
+            }
+            return count++;
+        }
+
+        private void setETag(int position, String eTag) {
+            if (eTag == null) {
+                parts[position] = NO_ETAG;
+                return;
+            }
+            String value = eTag.startsWith("\"") && eTag.endsWith("\"") && eTag.length() > 1
+                    ? eTag.substring(1, eTag.length() - 1) : eTag;
+            int dash = value.indexOf('-');
+            String digest = dash >= 0 ? value.substring(0, dash) : value;
+            try {
+                int part = dash >= 0 ? Integer.parseInt(value.substring(dash + 1)) : 0;
+                if (digest.length() == DIGEST_BYTES * 2 && part >= 0
+                        && eTag.equals("\"" + digest + (dash >= 0 ? "-" + part : "") + "\"")) {
+                    byte[] bytes = HEX.parseHex(digest);
+                    System.arraycopy(bytes, 0, digests, position * DIGEST_BYTES, DIGEST_BYTES);
+                    parts[position] = part;
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                // No es hex o el sufijo no es un número: se guarda tal cual
+            }
+            parts[position] = OTHER_ETAG;
+            otherETags.put(position, eTag);
+        }
+
+        private void grow() {
+            int capacity = sizes.length * 2;
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+            sizes = Arrays.copyOf(sizes, capacity);
+            modified = Arrays.copyOf(modified, capacity);
+            digests = Arrays.copyOf(digests, capacity * DIGEST_BYTES);
+            parts = Arrays.copyOf(parts, capacity);
+        }
+
+        // Solo si las entradas no llegaron en orden (S3 siempre lista en orden UTF-8 binario)
+        private static ObjectMetadataSnapshot sort(ObjectMetadataSnapshot snapshot) {
+            Integer[] order = new Integer[snapshot.size];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(
+                    snapshot.keys, snapshot.offsets[a], snapshot.offsets[a + 1],
+                    snapshot.keys, snapshot.offsets[b], snapshot.offsets[b + 1]));
+            Builder builder = new Builder(snapshot.size, snapshot.keys.length);
+            for (Integer position : order) {
+                builder.copy(snapshot, position);
+            }
+            return builder.build();
+        }
+    }
+}
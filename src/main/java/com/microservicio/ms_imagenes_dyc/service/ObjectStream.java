@@ -0,0 +1,44 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+// Origen de /object/stream: un archivo de la cache en disco, o un cuerpo con los metadatos de
+// S3 (el stream de S3 o el archivo de una descarga compartida que todavía está creciendo)
+public final class ObjectStream implements Closeable {
+
+    private final DiskObjectCache.Entry file;
+    private final ResponseInputStream<GetObjectResponse> s3Stream;
+
+    private ObjectStream(DiskObjectCache.Entry file, ResponseInputStream<GetObjectResponse> s3Stream) {
+        this.file = file;
+        this.s3Stream = s3Stream;
+    }
+
+    public static ObjectStream ofFile(DiskObjectCache.Entry file) {
+        return new ObjectStream(file, null);
+    }
+
+    public static ObjectStream ofS3(ResponseInputStream<GetObjectResponse> s3Stream) {
+        return new ObjectStream(null, s3Stream);
+    }
+
+    // Archivo local a enviar, o null si el cuerpo viene de S3
+    public DiskObjectCache.Entry file() {
+        return file;
+    }
+
+    public ResponseInputStream<GetObjectResponse> s3Stream() {
+        return s3Stream;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (s3Stream != null) {
+            s3Stream.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.microservicio.ms_imagenes_dyc.config.PresignProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.PresignedUrlDto;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+// URLs firmadas con el S3Presigner de spring-cloud-aws (mismo endpoint, región y credenciales
+// que spring.cloud.aws.*). Las de descarga se cachean hasta poco antes de vencer, así las keys
+// más pedidas no se vuelven a firmar en cada render.
+@Service
+public class PresignedUrlService {
+
+    private final S3Presigner presigner;
+    private final AwsCredentialsProvider credentialsProvider;
+    private final PresignProperties properties;
+    private final Cache<String, SignedDownload> downloads;
+    private final S3Metrics metrics;
+
+    public PresignedUrlService(S3Presigner presigner, AwsCredentialsProvider credentialsProvider,
+            PresignProperties properties, S3Metrics metrics) {
+        if (properties.getRefreshMargin().compareTo(properties.getDownloadTtl()) >= 0) {
+            throw new IllegalArgumentException("s3.presign.refresh-margin debe ser menor que s3.presign.download-ttl");
+        }
+        this.presigner = presigner;
+        this.credentialsProvider = credentialsProvider;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.downloads = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaxEntries())
+                .expireAfter(new Expiry<String, SignedDownload>() {
+                    @Override
+                    public long expireAfterCreate(String key, SignedDownload value, long currentTime) {
+                        return value.remainingNanos(properties.getRefreshMargin());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, SignedDownload value, long currentTime,
+                            long currentDuration) {
+                        return value.remainingNanos(properties.getRefreshMargin());
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, SignedDownload value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public PresignedUrlDto presignDownload(String bucket, String key) {
+        return downloads.get(bucket + "/" + key, ignored -> signDownload(bucket, key)).url();
+    }
+
+    public List<PresignedUrlDto> presignDownloads(String bucket, List<String> keys) {
+        return keys.stream().map(key -> presignDownload(bucket, key)).toList();
+    }
+
+    // URL para que el cliente suba directo a S3 sin pasar los bytes por este servicio.
+    // No se cachea: cada subida pide la suya y el Content-Type queda firmado.
+    public PresignedUrlDto presignUpload(String bucket, String key, String contentType) {
+        PutObjectPresignRequest presignRequest = PutObjectPresignRequest.builder()
+                .putObjectRequest(PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .build())
+                .signatureDuration(properties.getUploadTtl())
+                .build();
+        PresignedPutObjectRequest presigned = metrics.observe("presign", bucket,
+                () -> presigner.presignPutObject(presignRequest));
+        return new PresignedUrlDto(key, presigned.url().toString(), "PUT", presigned.expiration().toString());
+    }
+
+    // Una URL firmada deja de valer cuando vencen las credenciales con que se firmó (ej. las
+    // temporales de un rol), aunque su X-Amz-Expires sea mayor: se informa y se cachea hasta ahí
+    private SignedDownload signDownload(String bucket, String key) {
+        Instant credentialsExpiration = credentialsProvider.resolveCredentials().expirationTime().orElse(null);
+        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+                .getObjectRequest(GetObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .build())
+                .signatureDuration(properties.getDownloadTtl())
+                .build();
+        PresignedGetObjectRequest presigned = metrics.observe("presign", bucket,
+                () -> presigner.presignGetObject(presignRequest));
+        Instant expiration = credentialsExpiration != null && credentialsExpiration.isBefore(presigned.expiration())
+                ? credentialsExpiration
+                : presigned.expiration();
+        return new SignedDownload(new PresignedUrlDto(key, presigned.url().toString(), "GET", expiration.toString()),
+                expiration);
+    }
+
+    private record SignedDownload(PresignedUrlDto url, Instant expiration) {
+
+        // Lo que queda hasta dejar de entregarla; si ya está dentro del margen no se cachea
+        long remainingNanos(Duration refreshMargin) {
+            Duration remaining = Duration.between(Instant.now(), expiration.minus(refreshMargin));
+            return remaining.isNegative() ? 0 : remaining.toNanos();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.microservicio.ms_imagenes_dyc.config.BatchProperties;
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchDeleteRequestDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchMoveRequestDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchResultDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.MoveDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.util.ObjectStreams;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// Operaciones sobre muchas keys a la vez. Cada key tiene su propio resultado: un fallo
+// parcial no aborta el lote.
+@Service
+public class S3BatchService {
+
+    // Entrada del ZIP con los objetos que no se pudieron incluir
+    static final String ZIP_ERRORS_ENTRY = "ERRORES.txt";
+
+    // Tipos (o familias) que ya vienen comprimidos; el resto se deflacta
+    private static final Set<String> COMPRESSED_TYPES = Set.of("image", "video", "audio",
+            "application/zip", "application/gzip", "application/pdf");
+
+    private final AwsS3Service awsS3Service;
+    private final ExecutorService executor;
+    private final BatchProperties properties;
+    private final ImageProperties imageProperties;
+
+    public S3BatchService(AwsS3Service awsS3Service, @Qualifier("s3TaskExecutor") ExecutorService executor,
+            BatchProperties properties, ImageProperties imageProperties) {
+        this.awsS3Service = awsS3Service;
+        this.executor = executor;
+        this.properties = properties;
+        this.imageProperties = imageProperties;
+    }
+
+    // Borra las keys indicadas o todas las del prefijo. El prefijo se recorre por páginas
+    // y se borra a medida, sin cargar el listado completo.
+    public List<BatchResultDto> delete(String bucket, BatchDeleteRequestDto request) {
+        if (request.getKeys() != null && !request.getKeys().isEmpty()) {
+            return awsS3Service.deleteObjects(bucket, request.getKeys());
+        }
+        String prefix = requirePrefix(request.getPrefix(), "keys o prefix");
+        List<BatchResultDto> results = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(AwsS3Service.MAX_DELETE_BATCH);
+        try (Stream<S3ObjectDto> objects = awsS3Service.streamObjects(bucket, prefix)) {
+            Iterator<S3ObjectDto> iterator = objects.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next().getKey());
+                if (chunk.size() == AwsS3Service.MAX_DELETE_BATCH || !iterator.hasNext()) {
+                    results.addAll(awsS3Service.deleteObjects(bucket, chunk));
+                    chunk.clear();
+                }
+            }
+        }
+        return results;
+    }
+
+    // Copia en paralelo (como mucho moveParallelism copias a la vez) y luego borra con
+    // DeleteObjects solo los orígenes que se copiaron bien
+    public List<BatchResultDto> move(String bucket, BatchMoveRequestDto request) {
+        List<MoveDto> moves = request.getMoves() != null && !request.getMoves().isEmpty()
+                ? request.getMoves()
+                : movesForPrefix(bucket, request);
+
+        Map<String, String> errors = new HashMap<>();
+        List<String> copied = copyAll(bucket, moves, errors);
+        Map<String, BatchResultDto> deleted = new HashMap<>();
+        awsS3Service.deleteObjects(bucket, copied).forEach(result -> deleted.put(result.getKey(), result));
+
+        List<BatchResultDto> results = new ArrayList<>(moves.size());
+        for (MoveDto move : moves) {
+            String error = errors.get(move.getSourceKey());
+            BatchResultDto deleteResult = deleted.get(move.getSourceKey());
+            if (error == null && deleteResult != null && !deleteResult.isSuccess()) {
+                error = "Copiado a " + move.getDestKey() + " pero no se pudo borrar el origen: "
+                        + deleteResult.getError();
+            }
+            results.add(new BatchResultDto(move.getSourceKey(), error == null, error));
+        }
+        return results;
+    }
+
+    // Escribe un ZIP con todos los objetos del prefijo, en el orden del listado. Los siguientes
+    // objetos se piden a S3 por adelantado (como mucho zipPrefetchObjects, con hasta
+    // zipPrefetchBytes de cada uno en memoria) mientras se escribe el actual: el tiempo total se
+    // acerca al de transferir los bytes y no a la suma de latencias. Un objeto que no se pudo leer
+    // se omite y se informa en ERRORES.txt al final, porque la respuesta ya empezó con 200.
+    public void exportZip(String bucket, String prefix, OutputStream out) throws IOException {
+        String base = requirePrefix(prefix, "prefix");
+        // Las rutas dentro del ZIP son relativas a la última "carpeta" del prefijo
+        String root = base.substring(0, base.lastIndexOf('/') + 1);
+        int window = Math.max(1, properties.getZipPrefetchObjects());
+        Deque<PendingObject> pending = new ArrayDeque<>(window);
+        List<String> failures = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try (Stream<S3ObjectDto> objects = awsS3Service.streamObjects(bucket, base)) {
+            // Las keys terminadas en "/" son marcadores de carpeta sin contenido; las variantes
+            // generadas no son objetos del usuario
+            Iterator<String> keys = objects.map(S3ObjectDto::getKey)
+                    .filter(key -> !key.endsWith("/") && !key.startsWith(imageProperties.getVariantPrefix()))
+                    .filter(key -> acceptEntry(root, key, names, failures))
+                    .iterator();
+            while (pending.size() < window && keys.hasNext()) {
+                pending.add(prefetch(bucket, keys.next()));
+            }
+            while (!pending.isEmpty()) {
+                PendingObject next = pending.poll();
+                if (keys.hasNext()) {
+                    pending.add(prefetch(bucket, keys.next()));
+                }
+                writeEntry(zip, root, next, failures);
+            }
+            if (!failures.isEmpty()) {
+                zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+                zip.putNextEntry(new ZipEntry(ZIP_ERRORS_ENTRY));
+                zip.write(String.join("\n", failures).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            // Cliente desconectado o listado fallido: se sueltan las conexiones ya abiertas
+            pending.forEach(PendingObject::discard);
+        }
+    }
+
+    private PendingObject prefetch(String bucket, String key) {
+        int headBytes = (int) Math.min(Integer.MAX_VALUE - 8, properties.getZipPrefetchBytes().toBytes());
+        return new PendingObject(key, CompletableFuture.supplyAsync(() -> {
+            ResponseInputStream<GetObjectResponse> stream = awsS3Service.getObjectInputStream(bucket, key);
+            try {
+                byte[] head = stream.readNBytes(headBytes);
+                if (head.length < headBytes) {
+                    // Objeto completo en memoria: la conexión vuelve al pool ya
+                    stream.close();
+                    return new PrefetchedObject(stream.response(), head, null);
+                }
+                return new PrefetchedObject(stream.response(), head, stream);
+            } catch (IOException e) {
+                ObjectStreams.abortAndClose(stream);
+                throw new UncheckedIOException(e);
+            }
+        }, executor));
+    }
+
+    // Un error de S3 se anota y el ZIP sigue; un error escribiendo en out (cliente) se propaga
+    private static void writeEntry(ZipOutputStream zip, String root, PendingObject pending, List<String> failures)
+            throws IOException {
+        PrefetchedObject object;
+        try {
+            object = pending.object().join();
+        } catch (CompletionException e) {
+            failures.add(pending.key() + ": " + message(e.getCause()));
+            return;
+        }
+        try (ResponseInputStream<GetObjectResponse> rest = object.rest()) {
+            ZipEntry entry = new ZipEntry(entryName(root, pending.key()));
+            if (object.metadata().lastModified() != null) {
+                entry.setLastModifiedTime(FileTime.from(object.metadata().lastModified()));
+            }
+            // Imágenes y otros formatos ya comprimidos se guardan sin recomprimir
+            zip.setLevel(isCompressed(pending.key()) ? Deflater.NO_COMPRESSION : Deflater.BEST_SPEED);
+            zip.putNextEntry(entry);
+            zip.write(object.head());
+            if (rest != null) {
+                byte[] buffer = new byte[ObjectStreams.BUFFER_SIZE];
+                int read;
+                while ((read = readQuietly(rest, buffer)) > 0) {
+                    zip.write(buffer, 0, read);
+                }
+                if (read == -2) {
+                    failures.add(pending.key() + ": lectura interrumpida, la entrada quedó incompleta");
+                }
+            }
+            zip.closeEntry();
+        }
+    }
+
+    // Las keys que no dan un nombre seguro (o que repiten uno ya usado tras normalizar) no se piden
+    // a S3: se anotan en ERRORES.txt
+    private static boolean acceptEntry(String root, String key, Set<String> names, List<String> failures) {
+        String name = entryName(root, key);
+        if (name == null) {
+            failures.add(key + ": ruta no válida dentro del ZIP");
+            return false;
+        }
+        if (!names.add(name)) {
+            failures.add(key + ": repite la ruta " + name + " dentro del ZIP");
+            return false;
+        }
+        return true;
+    }
+
+    // Ruta relativa y normalizada dentro del ZIP. Null si al extraerla saldría de la carpeta
+    // destino (segmentos "..", unidad de Windows) o si no queda ningún segmento; las barras
+    // iniciales, dobles y los "." se descartan.
+    static String entryName(String root, String key) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : key.substring(root.length()).replace('\\', '/').split("/")) {
+            if (segment.equals("..") || (segments.isEmpty() && segment.endsWith(":"))) {
+                return null;
+            }
+            if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.add(segment);
+            }
+        }
+        return segments.isEmpty() ? null : String.join("/", segments);
+    }
+
+    // -1 al terminar; -2 si falló la lectura desde S3 (distinto de un fallo al escribir al cliente)
+    private static int readQuietly(ResponseInputStream<GetObjectResponse> source, byte[] buffer) {
+        try {
+            return source.read(buffer);
+        } catch (IOException e) {
+            source.abort();
+            return -2;
+        }
+    }
+
+    private static boolean isCompressed(String key) {
+        return MediaTypeFactory.getMediaType(key)
+                .map(type -> COMPRESSED_TYPES.contains(type.getType()) || COMPRESSED_TYPES.contains(type.toString()))
+                .orElse(false);
+    }
+
+    private List<String> copyAll(String bucket, List<MoveDto> moves, Map<String, String> errors) {
+        Semaphore permits = new Semaphore(Math.max(1, properties.getMoveParallelism()));
+        List<MoveDto> started = new ArrayList<>(moves.size());
+        List<CompletableFuture<Void>> copies = new ArrayList<>(moves.size());
+        try {
+            for (MoveDto move : moves) {
+                if (move.getSourceKey() == null || move.getDestKey() == null
+                        || move.getSourceKey().equals(move.getDestKey())) {
+                    errors.put(String.valueOf(move.getSourceKey()), "Origen y destino deben ser distintos");
+                    continue;
+                }
+                permits.acquire();
+                started.add(move);
+                copies.add(CompletableFuture.runAsync(
+                        () -> awsS3Service.copyObject(bucket, move.getSourceKey(), move.getDestKey()), executor)
+                        .whenComplete((ignored, failure) -> permits.release()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Movimiento en lote interrumpido", e);
+        }
+
+        List<String> copied = new ArrayList<>(copies.size());
+        for (int i = 0; i < copies.size(); i++) {
+            String sourceKey = started.get(i).getSourceKey();
+            try {
+                copies.get(i).join();
+                copied.add(sourceKey);
+            } catch (CompletionException e) {
+                errors.put(sourceKey, message(e.getCause()));
+            }
+        }
+        return copied;
+    }
+
+    // Con prefijos, el listado se materializa antes de copiar: si el destino está dentro del
+    // origen, un listado perezoso vería las copias nuevas
+    private List<MoveDto> movesForPrefix(String bucket, BatchMoveRequestDto request) {
+        String sourcePrefix = requirePrefix(request.getSourcePrefix(), "moves o sourcePrefix");
+        if (request.getDestPrefix() == null || sourcePrefix.equals(request.getDestPrefix())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "destPrefix debe ser distinto de sourcePrefix");
+        }
+        try (Stream<S3ObjectDto> objects = awsS3Service.streamObjects(bucket, sourcePrefix)) {
+            return objects
+                    .map(object -> new MoveDto(object.getKey(),
+                            request.getDestPrefix() + object.getKey().substring(sourcePrefix.length())))
+                    .toList();
+        }
+    }
+
+    // Un prefijo vacío abarcaría el bucket entero
+    private static String requirePrefix(String prefix, String expected) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere " + expected);
+        }
+        return prefix;
+    }
+
+    // Objeto adelantado: los primeros bytes en memoria y, si hay más, el stream abierto en S3
+    private record PrefetchedObject(GetObjectResponse metadata, byte[] head,
+            ResponseInputStream<GetObjectResponse> rest) {
+    }
+
+    private record PendingObject(String key, CompletableFuture<PrefetchedObject> object) {
+
+        // Cierra el stream cuando termine de abrirse, aunque ya nadie vaya a escribirlo
+        void discard() {
+            object.thenAccept(prefetched -> {
+                if (prefetched.rest() != null) {
+                    ObjectStreams.abortAndClose(prefetched.rest());
+                }
+            });
+        }
+    }
+
+    private static String message(Throwable failure) {
+        if (failure instanceof S3Exception s3 && s3.awsErrorDetails() != null) {
+            return s3.awsErrorDetails().errorCode() + ": " + s3.awsErrorDetails().errorMessage();
+        }
+        return failure.getMessage();
+    }
+}
@@ -0,0 +1,191 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// Instrumentación de las operaciones de S3. Cada operación es una Observation: produce el
+// timer s3.operation (latencia, con histograma) y un span hijo del de la petición HTTP.
+// Aparte se cuentan los bytes transferidos (s3.bytes) y los errores por código (s3.errors),
+// todo etiquetado por operación y bucket. La etiqueta bucket tiene un máximo de valores: un
+// bucket obtiene la suya con su primera operación exitosa (un nombre inventado en la URL solo
+// produce errores) y, superado MAX_BUCKET_TAGS, los demás comparten OTHER_BUCKETS.
+@Component
+public class S3Metrics {
+
+    // Bytes recibidos desde S3 (descargas) o enviados a S3 (subidas)
+    public static final String IN = "in";
+    public static final String OUT = "out";
+
+    static final int MAX_BUCKET_TAGS = 100;
+    static final String OTHER_BUCKETS = "_otros";
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> taggedBuckets = ConcurrentHashMap.newKeySet();
+
+    public S3Metrics(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @FunctionalInterface
+    public interface S3Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    public <T, E extends Exception> T observe(String operation, String bucket, S3Call<T, E> call) throws E {
+        Observation observation = Observation.createNotStarted("s3.operation", observationRegistry)
+                .contextualName("s3 " + operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .start();
+        boolean succeeded = false;
+        try (Observation.Scope scope = observation.openScope()) {
+            T result = call.call();
+            succeeded = true;
+            return result;
+        } catch (Exception e) {
+            failed(observation, operation, bucket, e);
+            throw e;
+        } finally {
+            // El timer se registra al detenerla, ya sabiendo si el bucket respondió
+            observation.lowCardinalityKeyValue("bucket", bucketTag(bucket, succeeded));
+            observation.stop();
+        }
+    }
+
+    // Igual que observe para una llamada de S3AsyncClient: la operación dura hasta que el future
+    // se completa, no solo lo que tarda en devolverlo
+    public <T> CompletableFuture<T> observeAsync(String operation, String bucket,
+            Supplier<CompletableFuture<T>> call) {
+        Observation observation = Observation.createNotStarted("s3.operation", observationRegistry)
+                .contextualName("s3 " + operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .start();
+        CompletableFuture<T> future;
+        try (Observation.Scope scope = observation.openScope()) {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                // Los futures dependientes envuelven el error original en CompletionException
+                failed(observation, operation, bucket,
+                        failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause()
+                                : failure);
+            }
+            observation.lowCardinalityKeyValue("bucket", bucketTag(bucket, failure == null));
+            observation.stop();
+        });
+    }
+
+    // Un 304 de un GET condicional es la respuesta esperada, no un error
+    private void failed(Observation observation, String operation, String bucket, Throwable e) {
+        if (e instanceof S3Exception s3 && s3.statusCode() == 304) {
+            return;
+        }
+        observation.error(e);
+        Counter.builder("s3.errors")
+                .description("Operaciones de S3 fallidas")
+                .tag("operation", operation)
+                .tag("bucket", bucketTag(bucket, false))
+                .tag("code", errorCode(e))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void run(String operation, String bucket, Runnable call) {
+        observe(operation, bucket, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public void bytes(String operation, String bucket, String direction, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        Counter.builder("s3.bytes")
+                .description("Bytes transferidos con S3")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .tag("bucket", bucketTag(bucket, true))
+                .tag("direction", direction)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    // Petición servida con el resultado de otra idéntica que ya estaba en curso
+    public void coalesced(String operation, String bucket) {
+        Counter.builder("s3.coalesced")
+                .description("Peticiones que compartieron una descarga de S3 ya en curso")
+                .tag("operation", operation)
+                .tag("bucket", bucketTag(bucket, true))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Bytes que no se enviaron a S3 porque el contenido ya existía y se copió del lado del servidor
+    public void deduplicated(String bucket, long bytes) {
+        Counter.builder("s3.deduplicated")
+                .description("Bytes de subidas resueltas con una copia de contenido ya existente")
+                .baseUnit("bytes")
+                .tag("bucket", bucketTag(bucket, true))
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    // Variantes anticipadas que no se generaron al subir (ej. cola llena); quedan para el primer pedido
+    public void eagerVariantsSkipped(String bucket, String reason) {
+        Counter.builder("s3.images.eager.skipped")
+                .description("Subidas de imágenes cuyas variantes no se generaron por adelantado")
+                .tag("bucket", bucketTag(bucket, true))
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Valor de la etiqueta bucket; con admit, un bucket que respondió ocupa un lugar si queda.
+    // El lugar se asigna bajo lock para que dos buckets nuevos a la vez no superen el máximo.
+    String bucketTag(String bucket, boolean admit) {
+        if (bucket == null) {
+            return OTHER_BUCKETS;
+        }
+        if (taggedBuckets.contains(bucket)) {
+            return bucket;
+        }
+        if (!admit) {
+            return OTHER_BUCKETS;
+        }
+        synchronized (taggedBuckets) {
+            if (taggedBuckets.contains(bucket) || taggedBuckets.size() < MAX_BUCKET_TAGS) {
+                taggedBuckets.add(bucket);
+                return bucket;
+            }
+        }
+        return OTHER_BUCKETS;
+    }
+
+    // Código de AWS si la causa es un error de S3 (también envuelto), si no el tipo de excepción
+    private static String errorCode(Throwable e) {
+        Throwable cause = e instanceof S3Exception || e.getCause() == null ? e : e.getCause();
+        if (cause instanceof S3Exception s3) {
+            return s3.awsErrorDetails() != null && s3.awsErrorDetails().errorCode() != null
+                    ? s3.awsErrorDetails().errorCode()
+                    : String.valueOf(s3.statusCode());
+        }
+        return cause.getClass().getSimpleName();
+    }
+}
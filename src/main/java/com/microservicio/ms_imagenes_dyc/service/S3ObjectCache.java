@@ -0,0 +1,111 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.microservicio.ms_imagenes_dyc.config.ObjectCacheProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.CacheStatsDto;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+// Cache en memoria de objetos de S3 acotada por bytes (eviction W-TinyLFU de Caffeine)
+@Component
+public class S3ObjectCache {
+
+    private final ObjectCacheProperties properties;
+    private final Cache<String, Entry> cache;
+    private final AtomicLong revalidations = new AtomicLong();
+
+    // Generación de cada key: invalidate le asigna un valor nuevo (nunca se repite) y una key sin
+    // registro está en la 0. Quien va a S3 la anota antes del GET y put/revalidated descartan el
+    // resultado si cambió mientras tanto, así un GET lento no vuelve a dejar el contenido viejo.
+    // El registro solo tiene que durar más que un GET.
+    private final AtomicLong generationCounter = new AtomicLong();
+    private final Cache<String, Long> generations = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    public S3ObjectCache(ObjectCacheProperties properties) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxSize().toBytes())
+                .weigher((String key, Entry entry) -> entry.content().asByteArrayUnsafe().length)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public Entry get(String bucket, String key) {
+        return cache.getIfPresent(cacheKey(bucket, key));
+    }
+
+    // Generación actual de la key, a anotar antes de ir a S3
+    public long generation(String bucket, String key) {
+        Long generation = generations.getIfPresent(cacheKey(bucket, key));
+        return generation != null ? generation : 0L;
+    }
+
+    // Guarda lo leído de S3 si la key no se invalidó desde que se anotó generation
+    public void put(String bucket, String key, ResponseBytes<GetObjectResponse> content, long generation) {
+        if (content.asByteArrayUnsafe().length > properties.getMaxObjectSize().toBytes()) {
+            return;
+        }
+        store(cacheKey(bucket, key), new Entry(content, System.nanoTime()), generation);
+    }
+
+    // Entrada vencida que S3 confirmó con 304: se renueva sin volver a transferir el cuerpo
+    public void revalidated(String bucket, String key, Entry entry, long generation) {
+        revalidations.incrementAndGet();
+        store(cacheKey(bucket, key), new Entry(entry.content(), System.nanoTime()), generation);
+    }
+
+    // Con compute, la comparación y el guardado no se intercalan con un invalidate de la misma key
+    public void invalidate(String bucket, String key) {
+        String cacheKey = cacheKey(bucket, key);
+        cache.asMap().compute(cacheKey, (ignored, current) -> {
+            generations.put(cacheKey, generationCounter.incrementAndGet());
+            return null;
+        });
+    }
+
+    public boolean isFresh(Entry entry) {
+        return System.nanoTime() - entry.storedAtNanos() < properties.getTtl().toNanos();
+    }
+
+    public CacheStatsDto stats() {
+        CacheStats stats = cache.stats();
+        long weightedSize = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return new CacheStatsDto(stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                revalidations.get(), cache.estimatedSize(), weightedSize);
+    }
+
+    // Ejecuta el mantenimiento pendiente (eviction) de forma síncrona
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    private void store(String cacheKey, Entry entry, long generation) {
+        cache.asMap().compute(cacheKey, (ignored, current) -> {
+            Long now = generations.getIfPresent(cacheKey);
+            return (now != null ? now : 0L) == generation ? entry : current;
+        });
+    }
+
+    private static String cacheKey(String bucket, String key) {
+        return bucket + '/' + key;
+    }
+
+    public record Entry(ResponseBytes<GetObjectResponse> content, long storedAtNanos) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.microservicio.ms_imagenes_dyc.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+
+public final class ObjectStreams {
+
+    // Tamaño fijo del buffer de copia
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private ObjectStreams() {
+    }
+
+    // Copia el cuerpo de S3 a la salida con un único buffer reutilizado.
+    // Si falla la escritura (cliente desconectado) se aborta la lectura en S3
+    // para no drenar el resto del objeto ni retener la conexión.
+    public static long transfer(ResponseInputStream<?> source, OutputStream target) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long transferred = 0;
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            write(source, target, buffer, read);
+            transferred += read;
+        }
+        try {
+            target.flush();
+        } catch (IOException e) {
+            source.abort();
+            throw e;
+        }
+        return transferred;
+    }
+
+    // Corta la lectura en S3 y además cierra el stream: abort() suelta la conexión sin drenar
+    // el resto, y close() libera lo que se cuelga del cierre (ej. el permiso del limitador)
+    public static void abortAndClose(ResponseInputStream<?> source) {
+        source.abort();
+        try {
+            source.close();
+        } catch (IOException e) {
+            // Ya se abortó: no queda nada que leer ni a quién avisar
+        }
+    }
+
+    private static void write(ResponseInputStream<?> source, OutputStream target, byte[] buffer, int length)
+            throws IOException {
+        try {
+            target.write(buffer, 0, length);
+        } catch (IOException e) {
+            source.abort();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.microservicio.ms_imagenes_dyc.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Deduplica llamadas simultáneas con la misma clave: la primera se ejecuta y las que llegan
+// mientras tanto esperan y reciben el mismo resultado (o la misma excepción). No es una
+// cache: cuando la llamada termina, la siguiente con esa clave vuelve a ejecutarse.
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Consumer<K> onCoalesced;
+
+    // onCoalesced se invoca por cada llamada que se sumó a una ya en curso
+    public SingleFlight(Consumer<K> onCoalesced) {
+        this.onCoalesced = onCoalesced;
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            onCoalesced.accept(key);
+            return join(running);
+        }
+        try {
+            V result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
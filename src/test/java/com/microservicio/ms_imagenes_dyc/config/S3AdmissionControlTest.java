@@ -0,0 +1,155 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.microservicio.ms_imagenes_dyc.config.S3AdmissionControl.Access;
+import com.microservicio.ms_imagenes_dyc.config.S3AdmissionControl.Decision;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class S3AdmissionControlTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    @DisplayName("admit → sin tokens responde 429 con el tiempo hasta el próximo y se recupera")
+    void admit_rateLimitRejectsUntilRefill() {
+        S3AdmissionControl control = control(new AdmissionProperties.Limits(1, 2, 0));
+
+        assertThat(control.admit("bucketdyc", Access.READ, "downloadObject").admitted()).isTrue();
+        assertThat(control.admit("bucketdyc", Access.READ, "downloadObject").admitted()).isTrue();
+        Decision rejected = control.admit("bucketdyc", Access.READ, "downloadObject");
+        assertThat(rejected.admitted()).isFalse();
+        assertThat(rejected.status()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(rejected.retryAfter()).isEqualTo(Duration.ofSeconds(1));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(control.admit("bucketdyc", Access.READ, "downloadObject").admitted()).isTrue();
+    }
+
+    @Test
+    @DisplayName("admit → sin lugar responde 503 y el permiso se libera una sola vez")
+    void admit_concurrencyBudgetShedsAndReleases() {
+        S3AdmissionControl control = control(new AdmissionProperties.Limits(0, 0, 1));
+
+        Decision first = control.admit("bucketdyc", Access.READ, "downloadObject");
+        Decision second = control.admit("bucketdyc", Access.READ, "downloadObject");
+        assertThat(second.status()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(second.retryAfter()).isEqualTo(Duration.ofSeconds(1));
+
+        first.permit().release();
+        first.permit().release();
+        assertThat(control.inFlight("bucketdyc", "read")).isZero();
+        assertThat(control.admit("bucketdyc", Access.READ, "downloadObject").admitted()).isTrue();
+        assertThat(control.inFlight("bucketdyc", "read")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("admit → un bucket saturado no afecta a otros ni a sus escrituras")
+    void admit_isolatesBucketsAndAccessKinds() {
+        S3AdmissionControl control = control(new AdmissionProperties.Limits(0, 0, 1));
+
+        control.admit("ruidoso", Access.READ, "downloadObject");
+        assertThat(control.admit("ruidoso", Access.READ, "downloadObject").admitted()).isFalse();
+
+        assertThat(control.admit("otro", Access.READ, "downloadObject").admitted()).isTrue();
+        assertThat(control.admit("ruidoso", Access.WRITE, "deleteObject").admitted()).isTrue();
+    }
+
+    @Test
+    @DisplayName("admit → el límite de una operación devuelve el lugar general si rechaza")
+    void admit_operationBudgetIsAdditional() {
+        AdmissionProperties properties = properties(new AdmissionProperties.Limits(0, 0, 10));
+        // Como llega del binding de propiedades, en minúsculas
+        properties.setOperations(Map.of("exportzip", new AdmissionProperties.Limits(0, 0, 1)));
+        S3AdmissionControl control = new S3AdmissionControl(properties, clock::get);
+
+        assertThat(control.admit("bucketdyc", Access.READ, "exportZip").admitted()).isTrue();
+        assertThat(control.admit("bucketdyc", Access.READ, "exportZip").status())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(control.inFlight("bucketdyc", "read")).isEqualTo(1);
+        assertThat(control.admit("bucketdyc", Access.READ, "listObjects").admitted()).isTrue();
+    }
+
+    @Test
+    @DisplayName("bindTo → expone en curso, tokens y rechazos por bucket y motivo")
+    void bindTo_exposesLimiterState() {
+        AdmissionProperties properties = properties(new AdmissionProperties.Limits(1, 1, 5));
+        properties.setMaxBuckets(1);
+        S3AdmissionControl control = new S3AdmissionControl(properties, clock::get);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        control.bindTo(registry);
+
+        control.admit("bucketdyc", Access.READ, "downloadObject");
+        control.admit("bucketdyc", Access.READ, "downloadObject");
+        // Superado maxBuckets, los nuevos comparten el presupuesto "_otros"
+        control.admit("nuevo", Access.READ, "downloadObject");
+
+        assertThat(registry.get("s3.admission.in-flight").tags("bucket", "bucketdyc", "scope", "read").gauge()
+                .value()).isEqualTo(1);
+        assertThat(registry.get("s3.admission.tokens").tags("bucket", "bucketdyc").gauge().value()).isZero();
+        assertThat(registry.get("s3.admission.rejected").tags("bucket", "bucketdyc", "reason", "rate")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("s3.admission.in-flight").tags("bucket", S3AdmissionControl.OTHER_BUCKETS)
+                .gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("admit → un bucket con límites propios nunca cae en \"_otros\" y usa sus límites")
+    void admit_configuredBucketAlwaysHasOwnBudget() {
+        AdmissionProperties properties = properties(new AdmissionProperties.Limits(0, 0, 1));
+        properties.setMaxBuckets(1);
+        AdmissionProperties.Budgets own = new AdmissionProperties.Budgets();
+        own.setRead(new AdmissionProperties.Limits(0, 0, 2));
+        properties.setBuckets(Map.of("bucketdyc", own));
+        S3AdmissionControl control = new S3AdmissionControl(properties, clock::get);
+
+        // Un nombre cualquiera ocupa el único lugar; el bucket configurado no lo necesita
+        control.admit("inventado", Access.READ, "downloadObject");
+        assertThat(control.admit("bucketdyc", Access.READ, "downloadObject").admitted()).isTrue();
+        assertThat(control.admit("bucketdyc", Access.READ, "downloadObject").admitted()).isTrue();
+        assertThat(control.inFlight("bucketdyc", "read")).isEqualTo(2);
+        assertThat(control.inFlight(S3AdmissionControl.OTHER_BUCKETS, "read")).isZero();
+    }
+
+    @Test
+    @DisplayName("admit → lleno maxBuckets, un bucket sin uso cede su lugar y sus métricas")
+    void admit_idleBucketYieldsItsSlot() {
+        AdmissionProperties properties = properties(new AdmissionProperties.Limits(0, 0, 5));
+        properties.setMaxBuckets(1);
+        S3AdmissionControl control = new S3AdmissionControl(properties, clock::get);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        control.bindTo(registry);
+
+        control.admit("viejo", Access.READ, "downloadObject").permit().release();
+        Decision early = control.admit("nuevo", Access.READ, "downloadObject");
+        assertThat(control.inFlight(S3AdmissionControl.OTHER_BUCKETS, "read")).isEqualTo(1);
+        early.permit().release();
+
+        clock.addAndGet(properties.getIdleBucketTimeout().toNanos());
+        control.admit("nuevo", Access.READ, "downloadObject");
+
+        assertThat(control.inFlight("nuevo", "read")).isEqualTo(1);
+        assertThat(registry.find("s3.admission.in-flight").tag("bucket", "viejo").gauges()).isEmpty();
+    }
+
+    private S3AdmissionControl control(AdmissionProperties.Limits limits) {
+        return new S3AdmissionControl(properties(limits), clock::get);
+    }
+
+    private static AdmissionProperties properties(AdmissionProperties.Limits limits) {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setRead(limits);
+        properties.setWrite(limits);
+        return properties;
+    }
+}
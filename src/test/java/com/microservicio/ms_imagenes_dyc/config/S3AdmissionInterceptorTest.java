@@ -0,0 +1,69 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+class S3AdmissionInterceptorTest {
+
+    private final HandlerMethod handler = handler();
+
+    @Test
+    @DisplayName("preHandle → rechaza con 503 y Retry-After; afterCompletion libera el lugar")
+    void preHandle_shedsOverloadAndReleasesOnCompletion() throws Exception {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setRead(new AdmissionProperties.Limits(0, 0, 1));
+        S3AdmissionControl control = new S3AdmissionControl(properties);
+        S3AdmissionInterceptor interceptor = new S3AdmissionInterceptor(control);
+
+        MockHttpServletRequest first = request("GET");
+        assertThat(interceptor.preHandle(first, new MockHttpServletResponse(), handler)).isTrue();
+        // Redespacho asíncrono de la misma petición: no pide otro lugar
+        assertThat(interceptor.preHandle(first, new MockHttpServletResponse(), handler)).isTrue();
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request("GET"), rejected, handler)).isFalse();
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), handler, null);
+        assertThat(control.inFlight("bucketdyc", "read")).isZero();
+    }
+
+    @Test
+    @DisplayName("preHandle → las escrituras usan su propio presupuesto y sin bucket no se limita")
+    void preHandle_separatesWritesAndSkipsBucketlessPaths() throws Exception {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setRead(new AdmissionProperties.Limits(0, 0, 1));
+        S3AdmissionControl control = new S3AdmissionControl(properties);
+        S3AdmissionInterceptor interceptor = new S3AdmissionInterceptor(control);
+
+        assertThat(interceptor.preHandle(request("GET"), new MockHttpServletResponse(), handler)).isTrue();
+        assertThat(interceptor.preHandle(request("DELETE"), new MockHttpServletResponse(), handler)).isTrue();
+        assertThat(control.inFlight("bucketdyc", "write")).isEqualTo(1);
+
+        MockHttpServletRequest stats = new MockHttpServletRequest("GET", "/s3/cache/stats");
+        assertThat(interceptor.preHandle(stats, new MockHttpServletResponse(), handler)).isTrue();
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/s3/bucketdyc/object");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("bucket", "bucketdyc"));
+        return request;
+    }
+
+    private static HandlerMethod handler() {
+        try {
+            return new HandlerMethod(new Object(), Object.class.getMethod("toString"));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
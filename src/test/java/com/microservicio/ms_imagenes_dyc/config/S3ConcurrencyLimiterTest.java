@@ -0,0 +1,120 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.microservicio.ms_imagenes_dyc.util.ObjectStreams;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.http.Abortable;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class S3ConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("limiter → rechaza al superar el máximo y libera el permiso una sola vez")
+    void limiter_boundsConcurrentCalls() {
+        S3ConcurrencyLimiter limiter = new S3ConcurrencyLimiter(1, 10, TimeUnit.MILLISECONDS);
+        ExecutionAttributes first = new ExecutionAttributes();
+
+        limiter.beforeExecution(null, first);
+        assertThat(limiter.inFlight()).isEqualTo(1);
+        assertThatThrownBy(() -> limiter.beforeExecution(null, new ExecutionAttributes()))
+                .isInstanceOf(SdkClientException.class);
+
+        limiter.afterExecution(null, first);
+        limiter.onExecutionFailure(null, first);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("limiter → un fallo sin permiso adquirido no libera de más")
+    void limiter_ignoresFailureWithoutPermit() {
+        S3ConcurrencyLimiter limiter = new S3ConcurrencyLimiter(2, 10, TimeUnit.MILLISECONDS);
+
+        limiter.onExecutionFailure(null, new ExecutionAttributes());
+
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.maxConcurrency()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("limiter → el cuerpo de getObject conserva el permiso hasta cerrarse")
+    void limiter_holdsPermitWhileGetObjectStreamIsOpen() throws Exception {
+        S3ConcurrencyLimiter limiter = new S3ConcurrencyLimiter(1, 10, TimeUnit.MILLISECONDS);
+        ExecutionAttributes attributes = new ExecutionAttributes();
+        Context.ModifyHttpResponse context = mock(Context.ModifyHttpResponse.class);
+        when(context.request()).thenReturn(GetObjectRequest.builder().bucket("bucketdyc").key("a.png").build());
+        when(context.httpResponse()).thenReturn(SdkHttpResponse.builder().statusCode(200).build());
+        when(context.responseBody()).thenReturn(Optional.of(new ByteArrayInputStream(new byte[] { 1, 2 })));
+
+        limiter.beforeExecution(null, attributes);
+        InputStream body = limiter.modifyHttpResponseContent(context, attributes).orElseThrow();
+        limiter.afterExecution(null, attributes);
+        assertThat(limiter.inFlight()).isEqualTo(1);
+        assertThatThrownBy(() -> limiter.beforeExecution(null, new ExecutionAttributes()))
+                .isInstanceOf(SdkClientException.class);
+
+        assertThat(body.readAllBytes()).containsExactly(1, 2);
+        body.close();
+        body.close();
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("limiter → abortar el cuerpo de getObject sin cerrarlo también devuelve el permiso")
+    void limiter_releasesPermitWhenGetObjectStreamIsAborted() throws Exception {
+        S3ConcurrencyLimiter limiter = new S3ConcurrencyLimiter(1, 10, TimeUnit.MILLISECONDS);
+        AtomicBoolean connectionAborted = new AtomicBoolean();
+        InputStream connection = AbortableInputStream.create(new ByteArrayInputStream(new byte[] { 1, 2 }),
+                () -> connectionAborted.set(true));
+        ExecutionAttributes attributes = new ExecutionAttributes();
+
+        limiter.beforeExecution(null, attributes);
+        InputStream body = limiter.modifyHttpResponseContent(getObjectContext(connection), attributes)
+                .orElseThrow();
+        limiter.afterExecution(null, attributes);
+        ResponseInputStream<GetObjectResponse> response = new ResponseInputStream<>(
+                GetObjectResponse.builder().build(), AbortableInputStream.create(body, (Abortable) body));
+        assertThat(limiter.inFlight()).isEqualTo(1);
+
+        response.abort();
+        assertThat(connectionAborted).isTrue();
+        assertThat(limiter.inFlight()).isZero();
+
+        // abort + close, como hace S3BatchService, libera una sola vez
+        ExecutionAttributes second = new ExecutionAttributes();
+        limiter.beforeExecution(null, second);
+        InputStream secondBody = limiter.modifyHttpResponseContent(
+                getObjectContext(new ByteArrayInputStream(new byte[] { 3 })), second).orElseThrow();
+        ObjectStreams.abortAndClose(new ResponseInputStream<>(GetObjectResponse.builder().build(),
+                AbortableInputStream.create(secondBody, (Abortable) secondBody)));
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    private static Context.ModifyHttpResponse getObjectContext(InputStream body) {
+        Context.ModifyHttpResponse context = mock(Context.ModifyHttpResponse.class);
+        when(context.request()).thenReturn(GetObjectRequest.builder().bucket("bucketdyc").key("a.png").build());
+        when(context.httpResponse()).thenReturn(SdkHttpResponse.builder().statusCode(200).build());
+        when(context.responseBody()).thenReturn(Optional.of(body));
+        return context;
+    }
+}
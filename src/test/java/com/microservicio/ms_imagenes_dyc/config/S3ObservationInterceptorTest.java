@@ -0,0 +1,99 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class S3ObservationInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("llamada exitosa → timer s3.sdk.call con la operación del SDK y el status")
+    void success_recordsSdkCall() {
+        try (S3Client s3Client = client(200)) {
+            s3Client.headObject(HeadObjectRequest.builder().bucket("bucketdyc").key("a.png").build());
+        }
+
+        assertThat(meterRegistry.get("s3.sdk.call")
+                .tag("operation", "HeadObject")
+                .tag("status", "200")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("error de S3 → timer s3.sdk.call con el status de la respuesta")
+    void failure_recordsStatusAndError() {
+        try (S3Client s3Client = client(404)) {
+            assertThatThrownBy(() -> s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket("bucketdyc")
+                    .key("falta.png")
+                    .build())).isInstanceOf(S3Exception.class);
+        }
+
+        assertThat(meterRegistry.get("s3.sdk.call")
+                .tag("operation", "HeadObject")
+                .tag("status", "404")
+                .timer().count()).isEqualTo(1);
+    }
+
+    private S3Client client(int status) {
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        return S3Client.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKID", "SECRET")))
+                .httpClient(new FixedStatusHttpClient(status))
+                .overrideConfiguration(override -> override
+                        .addExecutionInterceptor(new S3ObservationInterceptor(observationRegistry)))
+                .build();
+    }
+
+    // Responde siempre el mismo status sin cuerpo
+    private record FixedStatusHttpClient(int status) implements SdkHttpClient {
+
+        @Override
+        public ExecutableHttpRequest prepareRequest(HttpExecuteRequest request) {
+            return new ExecutableHttpRequest() {
+                @Override
+                public HttpExecuteResponse call() {
+                    return HttpExecuteResponse.builder()
+                            .response(SdkHttpResponse.builder()
+                                    .statusCode(status)
+                                    .putHeader("Content-Length", "0")
+                                    .build())
+                            .responseBody(AbortableInputStream.create(new ByteArrayInputStream(new byte[0])))
+                            .build();
+                }
+
+                @Override
+                public void abort() {
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
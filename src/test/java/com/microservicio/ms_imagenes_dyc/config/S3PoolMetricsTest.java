@@ -0,0 +1,38 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollector;
+
+class S3PoolMetricsTest {
+
+    @Test
+    @DisplayName("publish → expone como gauges el último estado del pool informado por el SDK")
+    void publish_updatesPoolGauges() {
+        S3PoolMetrics metrics = new S3PoolMetrics(new S3ConcurrencyLimiter(10, 1, TimeUnit.SECONDS));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+
+        // Igual que el SDK: ApiCall → ApiCallAttempt → HttpClient
+        MetricCollector apiCall = MetricCollector.create("ApiCall");
+        MetricCollector httpClient = apiCall.createChild("ApiCallAttempt").createChild("HttpClient");
+        httpClient.reportMetric(HttpMetric.MAX_CONCURRENCY, 50);
+        httpClient.reportMetric(HttpMetric.LEASED_CONCURRENCY, 12);
+        httpClient.reportMetric(HttpMetric.AVAILABLE_CONCURRENCY, 3);
+        httpClient.reportMetric(HttpMetric.PENDING_CONCURRENCY_ACQUIRES, 4);
+        metrics.publish(apiCall.collect());
+
+        assertThat(registry.get("s3.http.connections.leased").gauge().value()).isEqualTo(12);
+        assertThat(registry.get("s3.http.connections.pending").gauge().value()).isEqualTo(4);
+        assertThat(registry.get("s3.http.connections.available").gauge().value()).isEqualTo(3);
+        assertThat(registry.get("s3.http.connections.max").gauge().value()).isEqualTo(50);
+        assertThat(registry.get("s3.client.calls.in-flight").gauge().value()).isZero();
+    }
+}
@@ -0,0 +1,193 @@
+package com.microservicio.ms_imagenes_dyc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+
+// Prueba de carga: compara hilo-por-petición (pool de plataforma del tamaño del de Tomcat) contra
+// hilos virtuales, con la misma carga y el mismo S3ConcurrencyLimiter, usando el S3Client real
+// sobre un HTTP simulado con latencia fija. Cada petición hace un headObject, lee un getObject
+// con pausa y después sigue escribiendo al cliente sin conexión a S3, como /object/stream
+// hacia un cliente lento. Con hilos de plataforma ese tramo retiene el hilo y las conexiones en
+// uso quedan por debajo del límite; con hilos virtuales el único tope es el límite.
+// Se ejecuta aparte con: mvn test -Pload-test
+@Tag("load")
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 4000;
+    private static final long S3_LATENCY_MILLIS = 20;
+    private static final long READ_MILLIS = 5;
+    // Escritura al cliente una vez cerrado el cuerpo de S3
+    private static final long CLIENT_MILLIS = 20;
+    // server.tomcat.threads.max por defecto
+    private static final int TOMCAT_THREADS = 200;
+    // s3.client.http.max-connections del modo virtual; el mismo límite para las dos corridas
+    private static final int MAX_CONNECTIONS = 400;
+    // Esperado: (400 / 200) * (65 ms por petición / 45 ms con conexión) ≈ 2.9; margen para el
+    // costo de CPU del SDK, que pesa igual en las dos corridas
+    private static final double MIN_SPEEDUP = 1.5;
+    private static final byte[] BODY = "contenido".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    @DisplayName("hilos virtuales → más throughput que hilo-por-petición con el mismo límite de conexiones")
+    void virtualThreads_outperformPlatformPoolUnderSameLimit() throws Exception {
+        S3ConcurrencyLimiter limiter = new S3ConcurrencyLimiter(MAX_CONNECTIONS, 30, TimeUnit.SECONDS);
+
+        // Calentamiento: carga de clases y JIT del pipeline del SDK
+        run(limiter, Executors.newFixedThreadPool(TOMCAT_THREADS), REQUESTS / 10);
+        Run platform = run(limiter, Executors.newFixedThreadPool(TOMCAT_THREADS), REQUESTS);
+        Run virtual = run(limiter, Executors.newVirtualThreadPerTaskExecutor(), REQUESTS);
+
+        assertThat(virtual.requestsPerSecond())
+                .as("hilos virtuales %.0f req/s (pico %d conexiones) vs hilo-por-petición %.0f req/s (pico %d)",
+                        virtual.requestsPerSecond(), virtual.peakConnections(), platform.requestsPerSecond(),
+                        platform.peakConnections())
+                .isGreaterThan(platform.requestsPerSecond() * MIN_SPEEDUP);
+        // El pool de plataforma no llega a usar el límite; los hilos virtuales lo usan sin pasarlo
+        assertThat(platform.peakConnections()).isLessThanOrEqualTo(TOMCAT_THREADS);
+        assertThat(virtual.peakConnections()).isGreaterThan(TOMCAT_THREADS).isLessThanOrEqualTo(MAX_CONNECTIONS);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    private record Run(double requestsPerSecond, int peakConnections) {
+    }
+
+    private static Run run(S3ConcurrencyLimiter limiter, ExecutorService executor, int requests) throws Exception {
+        SimulatedS3 s3 = new SimulatedS3();
+        long elapsed;
+        try (S3Client s3Client = client(s3, limiter); executor) {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                String key = "foto-" + i + ".png";
+                futures.add(executor.submit(() -> request(s3Client, key)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        assertThat(s3.inUse()).isZero();
+        return new Run(requests / (elapsed / 1_000_000_000.0), s3.peakInUse());
+    }
+
+    private static Void request(S3Client s3Client, String key) throws Exception {
+        s3Client.headObject(HeadObjectRequest.builder().bucket("bucketdyc").key(key).build());
+        try (ResponseInputStream<GetObjectResponse> body = s3Client.getObject(
+                GetObjectRequest.builder().bucket("bucketdyc").key(key).build())) {
+            Thread.sleep(READ_MILLIS);
+            assertThat(body.readAllBytes()).isEqualTo(BODY);
+        }
+        Thread.sleep(CLIENT_MILLIS);
+        return null;
+    }
+
+    private static S3Client client(SimulatedS3 s3, S3ConcurrencyLimiter limiter) {
+        return S3Client.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKID", "SECRET")))
+                .httpClient(s3)
+                .overrideConfiguration(override -> override.addExecutionInterceptor(limiter))
+                .build();
+    }
+
+    // HTTP simulado con latencia fija. Cuenta una conexión ocupada desde que empieza la llamada
+    // hasta que termina (HEAD) o hasta que se cierra el cuerpo (GET), y guarda el máximo visto.
+    private static final class SimulatedS3 implements SdkHttpClient {
+
+        private final AtomicInteger inUse = new AtomicInteger();
+        private final AtomicInteger peakInUse = new AtomicInteger();
+
+        int inUse() {
+            return inUse.get();
+        }
+
+        int peakInUse() {
+            return peakInUse.get();
+        }
+
+        @Override
+        public ExecutableHttpRequest prepareRequest(HttpExecuteRequest request) {
+            return new ExecutableHttpRequest() {
+                @Override
+                public HttpExecuteResponse call() {
+                    peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(S3_LATENCY_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    boolean get = request.httpRequest().method() == SdkHttpMethod.GET;
+                    if (!get) {
+                        inUse.decrementAndGet();
+                    }
+                    return HttpExecuteResponse.builder()
+                            .response(SdkHttpResponse.builder()
+                                    .statusCode(200)
+                                    .putHeader("ETag", "\"v1\"")
+                                    .putHeader("Content-Length", String.valueOf(get ? BODY.length : 0))
+                                    .build())
+                            .responseBody(AbortableInputStream.create(
+                                    get ? new ConnectionBody() : new ByteArrayInputStream(new byte[0])))
+                            .build();
+                }
+
+                @Override
+                public void abort() {
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+
+        // La conexión vuelve al pool al cerrar el cuerpo, una sola vez
+        private final class ConnectionBody extends FilterInputStream {
+
+            private final AtomicBoolean closed = new AtomicBoolean();
+
+            ConnectionBody() {
+                super(new ByteArrayInputStream(BODY));
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed.compareAndSet(false, true)) {
+                    inUse.decrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -1,24 +1,53 @@
 package com.microservicio.ms_imagenes_dyc.controller;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
 
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchDeleteRequestDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchResultDto;
 import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
 import com.microservicio.ms_imagenes_dyc.service.AwsS3Service;
+import com.microservicio.ms_imagenes_dyc.service.ContentDeliveryService;
+import com.microservicio.ms_imagenes_dyc.service.DedupeUploadService;
+import com.microservicio.ms_imagenes_dyc.service.DiskObjectCache;
+import com.microservicio.ms_imagenes_dyc.service.EagerVariantService;
+import com.microservicio.ms_imagenes_dyc.service.MetadataIndex;
+import com.microservicio.ms_imagenes_dyc.service.ObjectStream;
+import com.microservicio.ms_imagenes_dyc.service.S3BatchService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
 @WebMvcTest(AwsS3Controller.class)
+@EnableConfigurationProperties(ImageProperties.class)
 class AwsS3ControllerTest {
 
     @Autowired
@@ -27,6 +56,21 @@ class AwsS3ControllerTest {
     @MockBean
     private AwsS3Service awsS3Service;
 
+    @MockBean
+    private EagerVariantService eagerVariantService;
+
+    @MockBean
+    private S3BatchService s3BatchService;
+
+    @MockBean
+    private DedupeUploadService dedupeUploadService;
+
+    @MockBean
+    private ContentDeliveryService contentDeliveryService;
+
+    @MockBean
+    private MetadataIndex metadataIndex;
+
     @Test
     @DisplayName("GET /s3/{bucket}/objects → lista DTOs")
     void listObjects_returnsDtoList() throws Exception {
@@ -34,8 +78,8 @@ class AwsS3ControllerTest {
         var dto1 = new S3ObjectDto("file1.png", 100L, "2025-07-19T12:00:00");
         var dto2 = new S3ObjectDto("file2.jpg", 200L, "2025-07-20T15:30:00");
 
-        when(awsS3Service.listObjects("bucketdyc"))
-            .thenReturn(List.of(dto1, dto2));
+        when(awsS3Service.listObjects("bucketdyc", null, null, null, null))
+            .thenReturn(new S3ObjectPageDto(List.of(dto1, dto2), List.of(), null, false));
 
         mockMvc.perform(get("/s3/bucketdyc/objects"))
             .andExpect(status().isOk())
@@ -44,26 +88,281 @@ class AwsS3ControllerTest {
             .andExpect(jsonPath("$[0].lastModified").value("2025-07-19T12:00:00"))
             .andExpect(jsonPath("$[1].key").value("file2.jpg"))
             .andExpect(jsonPath("$[1].size").value(200))
-            .andExpect(jsonPath("$[1].lastModified").value("2025-07-20T15:30:00"));
+            .andExpect(jsonPath("$[1].lastModified").value("2025-07-20T15:30:00"))
+            .andExpect(header().doesNotExist(AwsS3Controller.NEXT_CONTINUATION_TOKEN));
+
+        verify(awsS3Service).listObjects("bucketdyc", null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/objects paginado → token siguiente en cabecera y prefijos comunes")
+    void listObjects_paginated_returnsTokenAndPrefixes() throws Exception {
+        var dto = new S3ObjectDto("fotos/a.png", 100L, "2025-07-19T12:00:00");
+        when(awsS3Service.listObjects("bucketdyc", "fotos/", "/", 1, "tok-1"))
+            .thenReturn(new S3ObjectPageDto(List.of(dto), List.of("fotos/2025/"), "tok-2", true));
+
+        mockMvc.perform(get("/s3/bucketdyc/objects")
+                .param("prefix", "fotos/")
+                .param("delimiter", "/")
+                .param("maxKeys", "1")
+                .param("continuationToken", "tok-1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(AwsS3Controller.NEXT_CONTINUATION_TOKEN, "tok-2"))
+            .andExpect(jsonPath("$[0].key").value("fotos/a.png"))
+            .andExpect(jsonPath("$[1].key").value("fotos/2025/"))
+            .andExpect(jsonPath("$[1].size").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/objects/stream → lista completa en NDJSON")
+    void streamObjects_writesNdjson() throws Exception {
+        when(awsS3Service.streamObjects("bucketdyc", null))
+            .thenReturn(Stream.of(
+                new S3ObjectDto("a.png", 1L, "2025-07-19T12:00:00"),
+                new S3ObjectDto("b.png", 2L, "2025-07-20T12:00:00")));
+
+        mockMvc.perform(get("/s3/bucketdyc/objects/stream"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(startsWith("{\"key\":\"a.png\"")))
+            .andExpect(content().string(containsString("}\n{\"key\":\"b.png\"")));
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/objects y /objects/stream → no incluyen las variantes generadas")
+    void listings_excludeVariants() throws Exception {
+        var dto = new S3ObjectDto("a.png", 1L, "2025-07-19T12:00:00");
+        var variant = new S3ObjectDto("_variants/a.png/10x10-contain.png", 1L, "2025-07-19T12:00:00");
+        when(awsS3Service.listObjects("bucketdyc", null, "/", null, null))
+            .thenReturn(new S3ObjectPageDto(List.of(dto), List.of("_variants/", "fotos/"), null, false));
+        when(awsS3Service.streamObjects("bucketdyc", null)).thenReturn(Stream.of(variant, dto));
+
+        mockMvc.perform(get("/s3/bucketdyc/objects").param("delimiter", "/"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].key").value("a.png"))
+            .andExpect(jsonPath("$[1].key").value("fotos/"));
+        mockMvc.perform(get("/s3/bucketdyc/objects/stream"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(startsWith("{\"key\":\"a.png\"")))
+            .andExpect(content().string(not(containsString("_variants/"))));
+    }
 
-        verify(awsS3Service).listObjects("bucketdyc");
+    @Test
+    @DisplayName("GET /s3/{bucket}/objects con el bucket indexado → página desde memoria, sin S3")
+    void listObjects_fromIndex() throws Exception {
+        var dto = new S3ObjectDto("a.png", 1L, "2025-07-19T12:00:00Z", "\"v1\"");
+        when(metadataIndex.handles("bucketdyc", null)).thenReturn(true);
+        when(metadataIndex.list("bucketdyc", null, null, 1, null))
+            .thenReturn(new S3ObjectPageDto(List.of(dto), List.of(), "idx:YS5wbmc", true));
+
+        mockMvc.perform(get("/s3/bucketdyc/objects")
+                .param("maxKeys", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(AwsS3Controller.NEXT_CONTINUATION_TOKEN, "idx:YS5wbmc"))
+            .andExpect(jsonPath("$[0].key").value("a.png"))
+            .andExpect(jsonPath("$[0].etag").value("\"v1\""));
+
+        verify(awsS3Service, never()).listObjects(any(), any(), any(), any(), any());
     }
 
     @Test
-    @DisplayName("GET /s3/{bucket}/object?key=... → descarga bytes por stream")
+    @DisplayName("GET /s3/{bucket}/objects/search → filtros de tamaño y fecha hacia el índice")
+    void searchObjects_passesFilter() throws Exception {
+        var filter = new MetadataIndex.Filter(1024L, null, Instant.parse("2025-07-01T00:00:00Z"), null);
+        when(metadataIndex.search("bucketdyc", "fotos/", filter, 50))
+            .thenReturn(List.of(new S3ObjectDto("fotos/a.png", 2048L, "2025-07-19T12:00:00Z")));
+
+        mockMvc.perform(get("/s3/bucketdyc/objects/search")
+                .param("prefix", "fotos/")
+                .param("minSize", "1024")
+                .param("modifiedAfter", "2025-07-01T00:00:00Z")
+                .param("limit", "50"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].key").value("fotos/a.png"));
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/objects/search con limit fuera de rango → 400")
+    void searchObjects_invalidLimit() throws Exception {
+        mockMvc.perform(get("/s3/bucketdyc/objects/search")
+                .param("limit", "0"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object/stream?key=... → descarga bytes por stream")
     void getObjectAsStream_returnsBytesAndHeaders() throws Exception {
         byte[] data = "hola mundo".getBytes(StandardCharsets.UTF_8);
-        when(awsS3Service.downloadAsBytes("bucketdyc", "foo.txt"))
-            .thenReturn(data);
+        GetObjectResponse metadata = GetObjectResponse.builder()
+            .contentLength((long) data.length)
+            .eTag("\"abc123\"")
+            .build();
+        when(awsS3Service.openObjectStream("bucketdyc", "foo.txt"))
+            .thenReturn(ObjectStream.ofS3(new ResponseInputStream<>(metadata,
+                AbortableInputStream.create(new ByteArrayInputStream(data)))));
 
         mockMvc.perform(get("/s3/bucketdyc/object/stream")
                 .param("key", "foo.txt"))
             .andExpect(status().isOk())
             .andExpect(header().string("Content-Disposition", "attachment; filename=foo.txt"))
+            .andExpect(header().string("ETag", "\"abc123\""))
+            .andExpect(header().longValue("Content-Length", data.length))
             .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
             .andExpect(content().bytes(data));
 
-        verify(awsS3Service).downloadAsBytes("bucketdyc", "foo.txt");
+        verify(awsS3Service).openObjectStream("bucketdyc", "foo.txt");
+        verify(awsS3Service, never()).downloadAsBytes(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object/stream?key=... → respeta el Content-Type de S3")
+    void getObjectAsStream_passesThroughContentType() throws Exception {
+        byte[] data = "png".getBytes(StandardCharsets.UTF_8);
+        GetObjectResponse metadata = GetObjectResponse.builder()
+            .contentType(MediaType.IMAGE_PNG_VALUE)
+            .contentLength((long) data.length)
+            .build();
+        when(awsS3Service.openObjectStream("bucketdyc", "foto.png"))
+            .thenReturn(ObjectStream.ofS3(new ResponseInputStream<>(metadata,
+                AbortableInputStream.create(new ByteArrayInputStream(data)))));
+
+        mockMvc.perform(get("/s3/bucketdyc/object/stream")
+                .param("key", "foto.png"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.IMAGE_PNG))
+            .andExpect(content().bytes(data));
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object/stream con acierto en disco → envía el archivo local")
+    void getObjectAsStream_servesDiskCacheHit(@TempDir Path dir) throws Exception {
+        byte[] data = "desde disco".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(dir.resolve("obj.bin"), data);
+        when(awsS3Service.openObjectStream("bucketdyc", "foto.png"))
+            .thenReturn(ObjectStream.ofFile(new DiskObjectCache.Entry("bucketdyc", "foto.png", file, data.length,
+                "\"v1\"", -1L, MediaType.IMAGE_PNG_VALUE, System.currentTimeMillis())));
+
+        mockMvc.perform(get("/s3/bucketdyc/object/stream")
+                .param("key", "foto.png"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"v1\""))
+            .andExpect(content().contentType(MediaType.IMAGE_PNG))
+            .andExpect(content().bytes(data));
+
+        verify(awsS3Service, never()).getObjectInputStream(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object?key=... → devuelve bytes con ETag y Last-Modified")
+    void downloadObject_returnsBytesWithValidators() throws Exception {
+        byte[] data = "imagen".getBytes(StandardCharsets.UTF_8);
+        GetObjectResponse metadata = GetObjectResponse.builder()
+            .eTag("\"v1\"")
+            .lastModified(Instant.parse("2025-07-19T10:15:30Z"))
+            .build();
+        when(awsS3Service.download("bucketdyc", "foto.png", null, null))
+            .thenReturn(ResponseBytes.fromByteArray(metadata, data));
+
+        mockMvc.perform(get("/s3/bucketdyc/object")
+                .param("key", "foto.png"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"v1\""))
+            .andExpect(header().string("Last-Modified", "Sat, 19 Jul 2025 10:15:30 GMT"))
+            .andExpect(header().string("Accept-Ranges", "bytes"))
+            .andExpect(content().bytes(data));
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object con If-None-Match vigente → 304 sin cuerpo")
+    void downloadObject_notModified() throws Exception {
+        when(awsS3Service.download("bucketdyc", "foto.png", "\"v1\"",
+                Instant.parse("2025-07-19T10:15:30Z")))
+            .thenThrow((S3Exception) S3Exception.builder().statusCode(304).build());
+
+        mockMvc.perform(get("/s3/bucketdyc/object")
+                .param("key", "foto.png")
+                .header("If-None-Match", "\"v1\"")
+                .header("If-Modified-Since", "Sat, 19 Jul 2025 10:15:30 GMT"))
+            .andExpect(status().isNotModified())
+            .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object con Accept-Encoding gzip → copia comprimida con Vary y Cache-Control")
+    void downloadObject_negotiatedEncoding() throws Exception {
+        byte[] compressed = {31, -117, 8};
+        GetObjectResponse metadata = GetObjectResponse.builder().eTag("\"gz1\"").build();
+        when(contentDeliveryService.negotiate("bucketdyc", "data.json", null, "gzip, br", null, null))
+            .thenReturn(new ContentDeliveryService.Delivery(ResponseBytes.fromByteArray(metadata, compressed),
+                "application/json", "gzip"));
+        when(contentDeliveryService.vary("data.json")).thenReturn("Accept-Encoding");
+        when(contentDeliveryService.cacheControl()).thenReturn("public, max-age=3600");
+
+        mockMvc.perform(get("/s3/bucketdyc/object")
+                .param("key", "data.json")
+                .header("Accept-Encoding", "gzip, br"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andExpect(header().string("Content-Type", "application/json"))
+            .andExpect(header().string("Vary", "Accept-Encoding"))
+            .andExpect(header().string("Cache-Control", "public, max-age=3600"))
+            .andExpect(header().string("ETag", "\"gz1\""))
+            .andExpect(header().doesNotExist("Accept-Ranges"))
+            .andExpect(content().bytes(compressed));
+
+        verify(awsS3Service, never()).download(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object con 304 → mantiene Vary y Cache-Control")
+    void downloadObject_notModifiedKeepsCacheHeaders() throws Exception {
+        when(awsS3Service.download("bucketdyc", "foto.png", "\"v1\"", null))
+            .thenThrow((S3Exception) S3Exception.builder().statusCode(304).build());
+        when(contentDeliveryService.vary("foto.png")).thenReturn("Accept");
+        when(contentDeliveryService.cacheControl()).thenReturn("public, max-age=3600");
+
+        mockMvc.perform(get("/s3/bucketdyc/object")
+                .param("key", "foto.png")
+                .header("If-None-Match", "\"v1\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("Vary", "Accept"))
+            .andExpect(header().string("Cache-Control", "public, max-age=3600"));
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object con Range → 206 con Content-Range")
+    void downloadObjectRange_returnsPartialContent() throws Exception {
+        byte[] part = "hola".getBytes(StandardCharsets.UTF_8);
+        GetObjectResponse metadata = GetObjectResponse.builder()
+            .contentLength((long) part.length)
+            .contentRange("bytes 0-3/10")
+            .build();
+        when(awsS3Service.getObjectInputStream("bucketdyc", "foo.txt", "bytes=0-3", null, null))
+            .thenReturn(new ResponseInputStream<>(metadata,
+                AbortableInputStream.create(new ByteArrayInputStream(part))));
+
+        mockMvc.perform(get("/s3/bucketdyc/object")
+                .param("key", "foo.txt")
+                .header("Range", "bytes=0-3"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string("Content-Range", "bytes 0-3/10"))
+            .andExpect(header().string("Accept-Ranges", "bytes"))
+            .andExpect(content().bytes(part));
+
+        verify(awsS3Service, never()).download(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/object con Range fuera del objeto → 416")
+    void downloadObjectRange_notSatisfiable() throws Exception {
+        when(awsS3Service.getObjectInputStream("bucketdyc", "foo.txt", "bytes=100-200", null, null))
+            .thenThrow((S3Exception) S3Exception.builder().statusCode(416).build());
+
+        mockMvc.perform(get("/s3/bucketdyc/object")
+                .param("key", "foo.txt")
+                .header("Range", "bytes=100-200"))
+            .andExpect(status().isRequestedRangeNotSatisfiable());
     }
 
     @Test
@@ -83,6 +382,76 @@ class AwsS3ControllerTest {
             .andExpect(content().string("https://bucketdyc.s3.amazonaws.com/foto.png?X"));
 
         verify(awsS3Service).upload("bucketdyc", "foto.png", file);
+        verify(eagerVariantService).schedule("bucketdyc", "foto.png", MediaType.IMAGE_PNG_VALUE, file.getSize());
+    }
+
+    @Test
+    @DisplayName("POST /s3/{bucket}/object?dedupe=true → sube por contenido e informa si se copió")
+    void uploadDeduplicated_reportsCopy() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+            "file", "foto.png", MediaType.IMAGE_PNG_VALUE,
+            "contenido".getBytes(StandardCharsets.UTF_8)
+        );
+        when(dedupeUploadService.upload("bucketdyc", "foto.png", file))
+            .thenReturn(new DedupeUploadService.Result("https://bucketdyc.s3.amazonaws.com/foto.png", "ab", true));
+
+        mockMvc.perform(multipart("/s3/bucketdyc/object")
+                .file(file)
+                .param("key", "foto.png")
+                .param("dedupe", "true"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(AwsS3Controller.DEDUPLICATED, "true"))
+            .andExpect(content().string("https://bucketdyc.s3.amazonaws.com/foto.png"));
+
+        verify(awsS3Service, never()).upload(any(), any(), any());
+        verify(eagerVariantService).schedule("bucketdyc", "foto.png", MediaType.IMAGE_PNG_VALUE, file.getSize());
+    }
+
+    @Test
+    @DisplayName("PUT /s3/{bucket}/object → sube el cuerpo crudo en streaming")
+    void uploadStream_passesRequestBody() throws Exception {
+        when(awsS3Service.uploadStream(eq("bucketdyc"), eq("video.mp4"), any(), eq("video/mp4")))
+            .thenReturn("https://bucketdyc.s3.amazonaws.com/video.mp4");
+
+        mockMvc.perform(put("/s3/bucketdyc/object")
+                .param("key", "video.mp4")
+                .contentType("video/mp4")
+                .content(new byte[] {1, 2, 3}))
+            .andExpect(status().isOk())
+            .andExpect(content().string("https://bucketdyc.s3.amazonaws.com/video.mp4"));
+
+        verify(eagerVariantService).schedule("bucketdyc", "video.mp4", "video/mp4", 3L);
+    }
+
+    @Test
+    @DisplayName("POST /s3/{bucket}/batch/delete → un resultado por key")
+    void batchDelete_returnsResultPerKey() throws Exception {
+        when(s3BatchService.delete("bucketdyc", new BatchDeleteRequestDto(List.of("a.png", "b.png"), null)))
+            .thenReturn(List.of(new BatchResultDto("a.png", true, null),
+                new BatchResultDto("b.png", false, "AccessDenied: Access Denied")));
+
+        mockMvc.perform(post("/s3/bucketdyc/batch/delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"keys\":[\"a.png\",\"b.png\"]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].success").value(true))
+            .andExpect(jsonPath("$[1].success").value(false))
+            .andExpect(jsonPath("$[1].error").value("AccessDenied: Access Denied"));
+    }
+
+    @Test
+    @DisplayName("GET /s3/{bucket}/objects/zip → ZIP adjunto con el nombre de la carpeta")
+    void exportZip_streamsArchiveFromService() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(2).write(new byte[] {'P', 'K'});
+            return null;
+        }).when(s3BatchService).exportZip(eq("bucketdyc"), eq("fotos/2025/"), any());
+
+        mockMvc.perform(get("/s3/bucketdyc/objects/zip").param("prefix", "fotos/2025/"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/zip"))
+            .andExpect(header().string("Content-Disposition", "attachment; filename=2025.zip"))
+            .andExpect(content().bytes(new byte[] {'P', 'K'}));
     }
 
     @Test
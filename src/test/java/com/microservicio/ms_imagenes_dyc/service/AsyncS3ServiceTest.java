@@ -0,0 +1,132 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncS3ServiceTest {
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AsyncS3Service service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AsyncS3Service(s3AsyncClient, awsS3Service, executor,
+                new S3Metrics(ObservationRegistry.NOOP, meterRegistry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("listObjects → convierte la página asíncrona a S3ObjectPageDto")
+    void listObjects_mapsPage() {
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class)))
+                .thenReturn(CompletableFuture.completedFuture(ListObjectsV2Response.builder()
+                        .contents(S3Object.builder().key("a.png").size(3L).build())
+                        .commonPrefixes(CommonPrefix.builder().prefix("fotos/").build())
+                        .nextContinuationToken("t2")
+                        .isTruncated(true)
+                        .build()));
+
+        S3ObjectPageDto page = service.listObjects("bucketdyc", null, "/", null, null).join();
+
+        assertThat(page.getObjects()).extracting("key").containsExactly("a.png");
+        assertThat(page.getCommonPrefixes()).containsExactly("fotos/");
+        assertThat(page.getNextContinuationToken()).isEqualTo("t2");
+        assertThat(page.isTruncated()).isTrue();
+    }
+
+    @Test
+    @DisplayName("deleteObject → invalida la cache en el executor y solo si S3 confirma el borrado")
+    void deleteObject_evictsAfterCompletion() {
+        AtomicReference<Thread> evictThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            evictThread.set(Thread.currentThread());
+            return null;
+        }).when(awsS3Service).evict("bucketdyc", "a.png");
+        when(s3AsyncClient.deleteObject(any(DeleteObjectRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectResponse.builder().build()))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().statusCode(403).build()));
+
+        service.deleteObject("bucketdyc", "a.png").join();
+        verify(awsS3Service).evict("bucketdyc", "a.png");
+        // El future del SDK ya estaba completo: sin el executor, evict correría en este hilo
+        assertThat(evictThread.get()).isNotNull().isNotSameAs(Thread.currentThread());
+
+        assertThatThrownBy(() -> service.deleteObject("bucketdyc", "b.png").join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(S3Exception.class);
+        verify(awsS3Service, never()).evict("bucketdyc", "b.png");
+    }
+
+    @Test
+    @DisplayName("download → cuenta los bytes y los errores como el camino síncrono")
+    @SuppressWarnings("unchecked")
+    void download_recordsMetrics() {
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.completedFuture(
+                        ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), new byte[] {1, 2, 3})))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().statusCode(404).build()));
+
+        assertThat(service.download("bucketdyc", "a.png").join().asByteArray()).hasSize(3);
+        assertThatThrownBy(() -> service.download("bucketdyc", "b.png").join())
+                .hasCauseInstanceOf(S3Exception.class);
+
+        assertThat(meterRegistry.get("s3.bytes")
+                .tag("operation", "download")
+                .tag("direction", S3Metrics.IN)
+                .counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("s3.errors")
+                .tag("operation", "download")
+                .tag("bucket", "bucketdyc")
+                .tag("code", "404")
+                .counter().count()).isEqualTo(1);
+    }
+}
@@ -1,34 +1,67 @@
 package com.microservicio.ms_imagenes_dyc.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Collectors;
 
+import com.microservicio.ms_imagenes_dyc.config.ObjectCacheProperties;
+import com.microservicio.ms_imagenes_dyc.config.UploadProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchResultDto;
 import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mock.web.MockMultipartFile;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
 import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,9 +70,30 @@ class AwsS3ServiceTest {
     @Mock
     private S3Client s3Client;
 
-    @InjectMocks
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ObjectCacheProperties cacheProperties = new ObjectCacheProperties();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private AwsS3Service service;
 
+    @BeforeEach
+    void setUp() {
+        service = new AwsS3Service(s3Client, new S3ObjectCache(cacheProperties),
+                new DiskObjectCache(cacheProperties),
+                new MultipartUploader(s3Client, new UploadProperties(), executor), eventPublisher,
+                new S3Metrics(ObservationRegistry.NOOP, meterRegistry), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
     @Test
     @DisplayName("listObjects → convierte S3Object a S3ObjectDto")
     void listObjects_returnsDtoList() {
@@ -82,6 +136,59 @@ class AwsS3ServiceTest {
         assertThat(listCaptor.getValue().bucket()).isEqualTo("bucketdyc");
     }
 
+    @Test
+    @DisplayName("listObjects paginado → pasa prefix/delimiter/token y devuelve el siguiente token")
+    void listObjects_paginated_returnsPage() {
+        ListObjectsV2Response resp = ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("fotos/a.png").size(1L).build())
+                .commonPrefixes(CommonPrefix.builder().prefix("fotos/2025/").build())
+                .isTruncated(true)
+                .nextContinuationToken("tok-2")
+                .build();
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(resp);
+
+        S3ObjectPageDto page = service.listObjects("bucketdyc", "fotos/", "/", 10, "tok-1");
+
+        assertThat(page.getObjects()).extracting(S3ObjectDto::getKey).containsExactly("fotos/a.png");
+        assertThat(page.getCommonPrefixes()).containsExactly("fotos/2025/");
+        assertThat(page.isTruncated()).isTrue();
+        assertThat(page.getNextContinuationToken()).isEqualTo("tok-2");
+
+        ArgumentCaptor<ListObjectsV2Request> listCaptor =
+                ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(s3Client).listObjectsV2(listCaptor.capture());
+        assertThat(listCaptor.getValue().prefix()).isEqualTo("fotos/");
+        assertThat(listCaptor.getValue().delimiter()).isEqualTo("/");
+        assertThat(listCaptor.getValue().maxKeys()).isEqualTo(10);
+        assertThat(listCaptor.getValue().continuationToken()).isEqualTo("tok-1");
+    }
+
+    @Test
+    @DisplayName("streamObjects → recorre todas las páginas usando el continuation token")
+    void streamObjects_walksAllPages() {
+        ListObjectsV2Response page1 = ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("a.png").build())
+                .isTruncated(true)
+                .nextContinuationToken("tok-2")
+                .build();
+        ListObjectsV2Response page2 = ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("b.png").build())
+                .isTruncated(false)
+                .build();
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(page1, page2);
+
+        List<String> keys = service.streamObjects("bucketdyc", null)
+                .map(S3ObjectDto::getKey)
+                .collect(Collectors.toList());
+
+        assertThat(keys).containsExactly("a.png", "b.png");
+        ArgumentCaptor<ListObjectsV2Request> listCaptor =
+                ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(s3Client, times(2)).listObjectsV2(listCaptor.capture());
+        assertThat(listCaptor.getAllValues().get(0).continuationToken()).isNull();
+        assertThat(listCaptor.getAllValues().get(1).continuationToken()).isEqualTo("tok-2");
+    }
+
     @Test
     @DisplayName("downloadAsBytes → retorna el array de bytes del objeto")
     void downloadAsBytes_returnsBytes() {
@@ -103,6 +210,127 @@ class AwsS3ServiceTest {
         assertThat(getCaptor.getValue().key()).isEqualTo("clave.txt");
     }
 
+    @Test
+    @DisplayName("getObjectInputStream con rango → envía Range y condiciones a S3")
+    void getObjectInputStream_withRange_buildsRangedRequest() {
+        Instant since = Instant.parse("2025-07-19T10:15:30Z");
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength(1024L).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(new byte[1024]))));
+
+        service.getObjectInputStream("bucketdyc", "video.mp4", "bytes=0-1023", "\"v1\"", since);
+
+        ArgumentCaptor<GetObjectRequest> getCaptor =
+                ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client).getObject(getCaptor.capture());
+        assertThat(getCaptor.getValue().range()).isEqualTo("bytes=0-1023");
+        assertThat(getCaptor.getValue().ifNoneMatch()).isEqualTo("\"v1\"");
+        assertThat(getCaptor.getValue().ifModifiedSince()).isEqualTo(since);
+    }
+
+    @Test
+    @DisplayName("download con If-None-Match → pide a S3 un GET condicional")
+    void download_withConditions_buildsConditionalRequest() {
+        ResponseBytes<GetObjectResponse> mockBytes = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"v2\"").build(), new byte[] {1, 2});
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(mockBytes);
+
+        ResponseBytes<GetObjectResponse> result = service.download("bucketdyc", "a.png", "\"v1\"", null);
+
+        assertThat(result.response().eTag()).isEqualTo("\"v2\"");
+        ArgumentCaptor<GetObjectRequest> getCaptor =
+                ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client).getObjectAsBytes(getCaptor.capture());
+        assertThat(getCaptor.getValue().ifNoneMatch()).isEqualTo("\"v1\"");
+        assertThat(getCaptor.getValue().range()).isNull();
+    }
+
+    @Test
+    @DisplayName("downloadAsBytes con cache → la segunda descarga no va a S3")
+    void downloadAsBytes_cacheHit_skipsS3() {
+        ResponseBytes<GetObjectResponse> mockBytes = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"v1\"").build(), new byte[] {1, 2, 3});
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(mockBytes);
+
+        service.downloadAsBytes("bucketdyc", "a.png");
+        byte[] second = service.downloadAsBytes("bucketdyc", "a.png");
+
+        assertThat(second).containsExactly(1, 2, 3);
+        verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+        assertThat(service.getCacheStats().getHitCount()).isEqualTo(1);
+        assertThat(service.getCacheStats().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("download con entrada vencida → GET condicional con el ETag cacheado; 304 la renueva")
+    void download_staleEntry_revalidatesWithETag() {
+        cacheProperties.setTtl(Duration.ZERO);
+        ResponseBytes<GetObjectResponse> mockBytes = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"v1\"").build(), new byte[] {7});
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class)))
+                .thenReturn(mockBytes)
+                .thenThrow((S3Exception) S3Exception.builder().statusCode(304).build());
+
+        service.download("bucketdyc", "a.png", null, null);
+        ResponseBytes<GetObjectResponse> revalidated = service.download("bucketdyc", "a.png", null, null);
+
+        assertThat(revalidated.asByteArray()).containsExactly(7);
+        ArgumentCaptor<GetObjectRequest> getCaptor =
+                ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client, times(2)).getObjectAsBytes(getCaptor.capture());
+        assertThat(getCaptor.getAllValues().get(1).ifNoneMatch()).isEqualTo("\"v1\"");
+        assertThat(service.getCacheStats().getRevalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("download con cache caliente e If-None-Match vigente → 304 con el ETag, sin ir a S3")
+    void download_cacheHit_matchingETag_throwsNotModified() {
+        ResponseBytes<GetObjectResponse> mockBytes = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"v1\"").build(), new byte[] {1, 2, 3});
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(mockBytes);
+        service.download("bucketdyc", "a.png", null, null);
+
+        assertThatThrownBy(() -> service.download("bucketdyc", "a.png", "W/\"v0\", \"v1\"", null))
+                .isInstanceOfSatisfying(S3Exception.class, e -> {
+                    assertThat(e.statusCode()).isEqualTo(304);
+                    assertThat(e.awsErrorDetails().sdkHttpResponse().firstMatchingHeader("ETag"))
+                            .contains("\"v1\"");
+                });
+        assertThat(service.download("bucketdyc", "a.png", "\"v0\"", null).asByteArray()).containsExactly(1, 2, 3);
+        verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+    }
+
+    @Test
+    @DisplayName("download con cache caliente e If-Modified-Since → 304 si no cambió desde esa fecha")
+    void download_cacheHit_ifModifiedSince_comparesLastModified() {
+        Instant lastModified = Instant.parse("2025-07-19T10:15:30.500Z");
+        ResponseBytes<GetObjectResponse> mockBytes = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"v1\"").lastModified(lastModified).build(), new byte[] {1});
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(mockBytes);
+        service.download("bucketdyc", "a.png", null, null);
+
+        assertThatThrownBy(() -> service.download("bucketdyc", "a.png", null,
+                Instant.parse("2025-07-19T10:15:30Z")))
+                .isInstanceOfSatisfying(S3Exception.class, e -> assertThat(e.statusCode()).isEqualTo(304));
+        assertThat(service.download("bucketdyc", "a.png", null, Instant.parse("2025-07-19T10:15:29Z"))
+                .asByteArray()).containsExactly(1);
+        verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+    }
+
+    @Test
+    @DisplayName("deleteObject → invalida la entrada cacheada")
+    void deleteObject_invalidatesCache() {
+        ResponseBytes<GetObjectResponse> mockBytes = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().build(), new byte[] {1});
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(mockBytes);
+
+        service.downloadAsBytes("bucketdyc", "a.png");
+        service.deleteObject("bucketdyc", "a.png");
+        service.downloadAsBytes("bucketdyc", "a.png");
+
+        verify(s3Client, times(2)).getObjectAsBytes(any(GetObjectRequest.class));
+    }
+
     @Test
     @DisplayName("upload → invoca putObject y devuelve URL pública")
     void upload_callsPutAndReturnsUrl() throws Exception {
@@ -150,5 +378,144 @@ class AwsS3ServiceTest {
         verify(s3Client).deleteObject(deleteCaptor.capture());
         assertThat(deleteCaptor.getValue().bucket()).isEqualTo("bucketdyc");
         assertThat(deleteCaptor.getValue().key()).isEqualTo("archivo.dat");
+        verify(eventPublisher).publishEvent(new ObjectChangedEvent("bucketdyc", "archivo.dat"));
+    }
+
+    @Test
+    @DisplayName("deleteObjects → bloques de 1000 keys y un resultado por key")
+    void deleteObjects_chunksAndReportsErrors() {
+        List<String> keys = IntStream.range(0, 2500).mapToObj(i -> "k" + i).toList();
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(DeleteObjectsResponse.builder()
+                        .errors(S3Error.builder().key("k7").code("AccessDenied").message("Access Denied").build())
+                        .build())
+                .thenReturn(DeleteObjectsResponse.builder().build());
+
+        List<BatchResultDto> results = service.deleteObjects("bucketdyc", keys);
+
+        ArgumentCaptor<DeleteObjectsRequest> captor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3Client, times(3)).deleteObjects(captor.capture());
+        assertThat(captor.getAllValues()).extracting(request -> request.delete().objects().size())
+                .containsExactly(1000, 1000, 500);
+        assertThat(results).hasSize(2500);
+        assertThat(results.get(7).isSuccess()).isFalse();
+        assertThat(results.get(7).getError()).isEqualTo("AccessDenied: Access Denied");
+        assertThat(results).filteredOn(BatchResultDto::isSuccess).hasSize(2499);
+    }
+
+    @Test
+    @DisplayName("download → cuenta los bytes recibidos de S3 por operación y bucket")
+    void download_recordsBytesIn() {
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().build(), "hola".getBytes(StandardCharsets.UTF_8)));
+
+        service.downloadAsBytes("bucketdyc", "a.txt");
+
+        assertThat(meterRegistry.get("s3.bytes")
+                .tag("operation", "download")
+                .tag("bucket", "bucketdyc")
+                .tag("direction", S3Metrics.IN)
+                .counter().count()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("deleteObject con error de S3 → cuenta el error con su código")
+    void deleteObject_failure_recordsErrorCode() {
+        when(s3Client.deleteObject(any(DeleteObjectRequest.class))).thenThrow(S3Exception.builder()
+                .statusCode(403)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("AccessDenied").build())
+                .build());
+
+        assertThatThrownBy(() -> service.deleteObject("bucketdyc", "a.txt")).isInstanceOf(S3Exception.class);
+
+        assertThat(meterRegistry.get("s3.errors")
+                .tag("operation", "delete")
+                .tag("code", "AccessDenied")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("download simultáneo de la misma key → un solo GET a S3 compartido")
+    void download_concurrentRequests_shareOneFetch() throws Exception {
+        cacheProperties.setEnabled(false);
+        byte[] data = "campania".getBytes(StandardCharsets.UTF_8);
+        CountDownLatch release = new CountDownLatch(1);
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), data);
+        });
+
+        Future<byte[]> first = executor.submit(() -> service.downloadAsBytes("bucketdyc", "campania.png"));
+        Future<byte[]> second = executor.submit(() -> service.downloadAsBytes("bucketdyc", "campania.png"));
+        // El GET se libera cuando la segunda petición ya se sumó a la primera
+        awaitCoalesced("download");
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(data);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(data);
+        verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+    }
+
+    @Test
+    @DisplayName("openObjectStream simultáneo con cache en disco → un solo GET que llega entero aunque el primero se desconecte")
+    void openObjectStream_concurrentRequests_shareDiskFill(@TempDir Path dir) throws Exception {
+        cacheProperties.getDisk().setEnabled(true);
+        cacheProperties.getDisk().setDirectory(dir.toString());
+        DiskObjectCache diskCache = new DiskObjectCache(cacheProperties);
+        diskCache.init();
+        AwsS3Service diskService = new AwsS3Service(s3Client, new S3ObjectCache(cacheProperties), diskCache,
+                new MultipartUploader(s3Client, new UploadProperties(), executor), eventPublisher,
+                new S3Metrics(ObservationRegistry.NOOP, meterRegistry), executor);
+        byte[] data = "video de campaña".getBytes(StandardCharsets.UTF_8);
+        // S3 no entrega bytes hasta que la segunda petición ya se sumó a la descarga
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream body = new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return super.read(buffer, offset, length);
+            }
+        };
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) data.length).eTag("\"v1\"").build(),
+                AbortableInputStream.create(body)));
+
+        try {
+            ObjectStream leader = diskService.openObjectStream("bucketdyc", "campania.mp4");
+            // El cliente que inició la descarga se va sin leer nada
+            leader.close();
+            try (ObjectStream follower = diskService.openObjectStream("bucketdyc", "campania.mp4")) {
+                release.countDown();
+
+                assertThat(follower.file()).isNull();
+                assertThat(follower.s3Stream().response().eTag()).isEqualTo("\"v1\"");
+                assertThat(follower.s3Stream().readAllBytes()).isEqualTo(data);
+            }
+            verify(s3Client, times(1)).getObject(any(GetObjectRequest.class));
+            assertThat(meterRegistry.get("s3.coalesced").tag("operation", "stream").counter().count()).isEqualTo(1);
+
+            // La copia siguió en el pool y quedó en la cache para las próximas
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (diskCache.get("bucketdyc", "campania.mp4") == null && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(diskCache.get("bucketdyc", "campania.mp4")).isNotNull();
+        } finally {
+            diskCache.shutdown();
+        }
+    }
+
+    private void awaitCoalesced(String operation) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.find("s3.coalesced").tag("operation", operation).counter() == null) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Ninguna petición se sumó a la descarga en curso");
+            }
+            Thread.sleep(5);
+        }
     }
 }
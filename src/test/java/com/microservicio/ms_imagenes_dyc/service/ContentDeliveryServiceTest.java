@@ -0,0 +1,221 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import com.microservicio.ms_imagenes_dyc.config.DeliveryProperties;
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class ContentDeliveryServiceTest {
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    private ImageResizeService imageResizeService;
+    private ContentDeliveryService service;
+
+    @BeforeEach
+    void setUp() {
+        imageResizeService = new ImageResizeService(awsS3Service, new ImageProperties(),
+                new S3Metrics(ObservationRegistry.NOOP, new SimpleMeterRegistry()), Runnable::run);
+        service = new ContentDeliveryService(awsS3Service, imageResizeService, new DeliveryProperties(),
+                Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageResizeService.shutdown();
+    }
+
+    @Test
+    @DisplayName("negotiate → JSON con Accept-Encoding gzip entrega la copia comprimida guardada")
+    void negotiate_servesStoredGzipCopy() {
+        ResponseBytes<GetObjectResponse> gzip = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"gz1\"").build(), new byte[] {1, 2});
+        when(awsS3Service.download("bucketdyc", "_variants/data/a.json/compressed.br", null, null))
+                .thenThrow(S3Exception.builder().statusCode(404).build());
+        when(awsS3Service.download("bucketdyc", "_variants/data/a.json/compressed.gz", null, null))
+                .thenReturn(gzip);
+
+        ContentDeliveryService.Delivery delivery = service.negotiate("bucketdyc", "data/a.json", null,
+                "gzip, deflate, br", null, null);
+
+        assertThat(delivery.content()).isSameAs(gzip);
+        assertThat(delivery.contentEncoding()).isEqualTo("gzip");
+        assertThat(delivery.contentType()).isEqualTo("application/json");
+        assertThat(service.vary("data/a.json")).isEqualTo("Accept-Encoding");
+    }
+
+    @Test
+    @DisplayName("negotiate → una variante inexistente se recuerda hasta que se sube")
+    void negotiate_remembersMissingVariantUntilChanged() {
+        when(awsS3Service.download("bucketdyc", "_variants/a.svg/compressed.gz", null, null))
+                .thenThrow(S3Exception.builder().statusCode(404).build());
+
+        assertThat(service.negotiate("bucketdyc", "a.svg", null, "gzip", null, null)).isNull();
+        assertThat(service.negotiate("bucketdyc", "a.svg", null, "gzip", null, null)).isNull();
+        verify(awsS3Service, times(1)).download("bucketdyc", "_variants/a.svg/compressed.gz", null, null);
+
+        service.onObjectChanged(new ObjectChangedEvent("bucketdyc", "_variants/a.svg/compressed.gz"));
+        service.negotiate("bucketdyc", "a.svg", null, "gzip", null, null);
+        verify(awsS3Service, times(2)).download("bucketdyc", "_variants/a.svg/compressed.gz", null, null);
+    }
+
+    @Test
+    @DisplayName("onObjectChanged → un original comprimible purga sus copias; un binario no consulta S3")
+    void onObjectChanged_purgesCompressedCopiesOfCompressibleKeys() {
+        when(awsS3Service.streamObjects("bucketdyc", "_variants/data/a.json/")).thenReturn(Stream.empty());
+
+        service.onObjectChanged(new ObjectChangedEvent("bucketdyc", "data/a.json"));
+        service.onObjectChanged(new ObjectChangedEvent("bucketdyc", "data/a.bin"));
+
+        verify(awsS3Service).streamObjects("bucketdyc", "_variants/data/a.json/");
+        verify(awsS3Service, never()).streamObjects("bucketdyc", "_variants/data/a.bin/");
+    }
+
+    @Test
+    @DisplayName("negotiate → sin Accept-Encoding, o con q=0, se sirve el original sin ir a S3")
+    void negotiate_withoutAcceptedEncoding_servesOriginal() {
+        assertThat(service.negotiate("bucketdyc", "a.json", null, null, null, null)).isNull();
+        assertThat(service.negotiate("bucketdyc", "a.json", null, "gzip;q=0, identity", null, null)).isNull();
+        assertThat(service.negotiate("bucketdyc", "a.bin", "*/*", "gzip", null, null)).isNull();
+
+        verify(awsS3Service, never()).download(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("negotiate → imagen con Accept de un formato configurado entrega su variante de tamaño original")
+    void negotiate_servesStoredConvertedImage() {
+        DeliveryProperties properties = new DeliveryProperties();
+        properties.setImageFormats(List.of("png"));
+        ContentDeliveryService pngDelivery = new ContentDeliveryService(awsS3Service, imageResizeService, properties,
+                Runnable::run);
+        ResponseBytes<GetObjectResponse> png = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().build(), new byte[] {3});
+        when(awsS3Service.download("bucketdyc", "_variants/fotos/a.jpg/autoxauto-contain.png", null, null))
+                .thenReturn(png);
+
+        ContentDeliveryService.Delivery delivery = pngDelivery.negotiate("bucketdyc", "fotos/a.jpg",
+                "image/png,image/*,*/*;q=0.8", "gzip", null, null);
+
+        assertThat(delivery.content()).isSameAs(png);
+        assertThat(delivery.contentType()).isEqualTo("image/png");
+        assertThat(delivery.contentEncoding()).isNull();
+        assertThat(pngDelivery.vary("fotos/a.jpg")).isEqualTo("Accept");
+    }
+
+    @Test
+    @DisplayName("negotiate → con la configuración por defecto, Accept: image/webp entrega la copia WebP")
+    void negotiate_acceptWebp_servesWebpCopy() {
+        ResponseBytes<GetObjectResponse> webp = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"w1\"").build(), new byte[] {'R', 'I', 'F', 'F'});
+        when(awsS3Service.download("bucketdyc", "_variants/fotos/a.jpg/autoxauto-contain.webp", null, null))
+                .thenReturn(webp);
+
+        ContentDeliveryService.Delivery delivery = service.negotiate("bucketdyc", "fotos/a.jpg",
+                "image/avif,image/webp,image/*,*/*;q=0.8", null, null, null);
+
+        assertThat(delivery.content()).isSameAs(webp);
+        assertThat(delivery.contentType()).isEqualTo("image/webp");
+        assertThat(service.conversions("fotos/a.jpg")).extracting(ImageVariant::fileName)
+                .containsExactly("autoxauto-contain.webp");
+        assertThat(service.conversions("fotos/a.webp")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("negotiate → formatos que ImageIO no sabe escribir no se buscan en S3")
+    void negotiate_skipsFormatsWithoutWriter() {
+        DeliveryProperties properties = new DeliveryProperties();
+        properties.setImageFormats(List.of("formato-inexistente"));
+        ContentDeliveryService unsupported = new ContentDeliveryService(awsS3Service, imageResizeService,
+                properties, Runnable::run);
+
+        assertThat(unsupported.negotiate("bucketdyc", "fotos/a.jpg", "image/formato-inexistente", null, null, null))
+                .isNull();
+        assertThat(unsupported.vary("fotos/a.jpg")).isNull();
+        verify(awsS3Service, never()).download(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("negotiate → un error de S3 distinto de 304 al buscar la copia sirve el original; el 304 se propaga")
+    void negotiate_probeFailure_servesOriginal() {
+        when(awsS3Service.download("bucketdyc", "_variants/a.svg/compressed.gz", null, null))
+                .thenThrow(S3Exception.builder().statusCode(403).build());
+        when(awsS3Service.download("bucketdyc", "_variants/a.svg/compressed.gz", "\"gz1\"", null))
+                .thenThrow(S3Exception.builder().statusCode(304).build());
+
+        assertThat(service.negotiate("bucketdyc", "a.svg", null, "gzip", null, null)).isNull();
+        assertThatThrownBy(() -> service.negotiate("bucketdyc", "a.svg", null, "gzip", "\"gz1\"", null))
+                .isInstanceOf(S3Exception.class);
+        // El 403 no se recuerda como inexistente: la próxima petición vuelve a intentar
+        service.negotiate("bucketdyc", "a.svg", null, "gzip", null, null);
+        verify(awsS3Service, times(2)).download("bucketdyc", "_variants/a.svg/compressed.gz", null, null);
+    }
+
+    @Test
+    @DisplayName("acceptedEncodings → ordena por q y, a igual q, prefiere brotli")
+    void acceptedEncodings_ordersByQualityThenPreference() {
+        assertThat(ContentDeliveryService.acceptedEncodings("gzip, br")).containsExactly("br", "gzip");
+        assertThat(ContentDeliveryService.acceptedEncodings("br;q=0.5, x-gzip")).containsExactly("gzip", "br");
+        assertThat(ContentDeliveryService.acceptedEncodings("*, deflate")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("precompress → guarda la copia gzip de un JSON compresible bajo sus variantes")
+    void precompress_storesGzipCopy() throws Exception {
+        byte[] json = "{\"clave\":\"valor\"},".repeat(200).getBytes(StandardCharsets.UTF_8);
+        when(awsS3Service.getObjectInputStream("bucketdyc", "data/a.json")).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(json))));
+
+        service.precompress("bucketdyc", "data/a.json", json.length, "application/json");
+
+        ArgumentCaptor<byte[]> stored = ArgumentCaptor.forClass(byte[].class);
+        verify(awsS3Service).uploadBytes(eq("bucketdyc"), eq("_variants/data/a.json/compressed.gz"),
+                stored.capture(), eq("application/json"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(stored.getValue()))) {
+            assertThat(in.readAllBytes()).isEqualTo(json);
+        }
+    }
+
+    @Test
+    @DisplayName("precompress → imágenes y archivos chicos o grandes no se comprimen ni se leen")
+    void precompress_skipsImagesAndSmallFiles() {
+        service.precompress("bucketdyc", "a.png", 4096, "image/png");
+        service.precompress("bucketdyc", "a.json", 2, "application/json");
+        service.precompress("bucketdyc", "b.json", DataSize.ofMegabytes(21).toBytes(), "application/json");
+
+        verify(awsS3Service, never()).getObjectInputStream(anyString(), anyString());
+        verify(awsS3Service, never()).uploadBytes(anyString(), anyString(), any(), anyString());
+    }
+}
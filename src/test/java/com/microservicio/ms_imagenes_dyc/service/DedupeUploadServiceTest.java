@@ -0,0 +1,144 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import com.microservicio.ms_imagenes_dyc.config.UploadProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectResult;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class DedupeUploadServiceTest {
+
+    private static final byte[] DATA = "misma imagen".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DedupeUploadService service;
+    private String sha256;
+    private String checksum;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new DedupeUploadService(s3Client, awsS3Service,
+                new S3Metrics(ObservationRegistry.NOOP, meterRegistry), new UploadProperties());
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(DATA);
+        sha256 = HexFormat.of().formatHex(digest);
+        checksum = Base64.getEncoder().encodeToString(digest);
+    }
+
+    @Test
+    @DisplayName("upload → contenido nuevo: PutObject con SHA-256 y referencia a la key")
+    void upload_newContent_putsWithChecksumAndSavesReference() throws Exception {
+        when(awsS3Service.headObject("bucketdyc", "_blobs/" + sha256))
+                .thenThrow(S3Exception.builder().statusCode(404).build());
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"e1\"").build());
+
+        DedupeUploadService.Result result = service.upload("bucketdyc", "fotos/año.png", file());
+
+        assertThat(result.deduplicated()).isFalse();
+        assertThat(result.sha256()).isEqualTo(sha256);
+        assertThat(result.url()).isEqualTo("https://bucketdyc.s3.amazonaws.com/fotos%2Fa%C3%B1o.png");
+
+        ArgumentCaptor<PutObjectRequest> puts = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3Client, times(2)).putObject(puts.capture(), any(RequestBody.class));
+        List<PutObjectRequest> requests = puts.getAllValues();
+        assertThat(requests.get(0).key()).isEqualTo("fotos/año.png");
+        assertThat(requests.get(0).checksumAlgorithm()).isEqualTo(ChecksumAlgorithm.SHA256);
+        assertThat(requests.get(0).checksumSHA256()).isEqualTo(checksum);
+        assertThat(requests.get(1).key()).isEqualTo("_blobs/" + sha256);
+        assertThat(requests.get(1).metadata()).containsExactlyInAnyOrderEntriesOf(Map.of(
+                DedupeUploadService.SOURCE_KEY, "fotos%2Fa%C3%B1o.png",
+                DedupeUploadService.SOURCE_ETAG, "\"e1\""));
+        verify(awsS3Service).evict("bucketdyc", "fotos/año.png");
+    }
+
+    @Test
+    @DisplayName("upload → contenido ya subido: copia del lado de S3 sin enviar los bytes")
+    void upload_existingContent_copiesServerSide() throws Exception {
+        when(awsS3Service.headObject("bucketdyc", "_blobs/" + sha256)).thenReturn(reference());
+        when(s3Client.copyObject(any(CopyObjectRequest.class))).thenReturn(CopyObjectResponse.builder()
+                .copyObjectResult(CopyObjectResult.builder().checksumSHA256(checksum).build())
+                .build());
+
+        DedupeUploadService.Result result = service.upload("bucketdyc", "copia.png", file());
+
+        assertThat(result.deduplicated()).isTrue();
+        ArgumentCaptor<CopyObjectRequest> copy = ArgumentCaptor.forClass(CopyObjectRequest.class);
+        verify(s3Client).copyObject(copy.capture());
+        assertThat(copy.getValue().sourceKey()).isEqualTo("fotos/año.png");
+        assertThat(copy.getValue().destinationKey()).isEqualTo("copia.png");
+        assertThat(copy.getValue().copySourceIfMatch()).isEqualTo("\"e1\"");
+        assertThat(copy.getValue().contentType()).isEqualTo("image/png");
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(awsS3Service).evict("bucketdyc", "copia.png");
+        assertThat(meterRegistry.get("s3.deduplicated").counter().count()).isEqualTo(DATA.length);
+    }
+
+    @Test
+    @DisplayName("upload → el origen cambió (412): se sube el archivo y se renueva la referencia")
+    void upload_staleReference_fallsBackToPut() throws Exception {
+        when(awsS3Service.headObject("bucketdyc", "_blobs/" + sha256)).thenReturn(reference());
+        when(s3Client.copyObject(any(CopyObjectRequest.class)))
+                .thenThrow(S3Exception.builder().statusCode(412).build());
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"e2\"").build());
+
+        DedupeUploadService.Result result = service.upload("bucketdyc", "copia.png", file());
+
+        assertThat(result.deduplicated()).isFalse();
+        ArgumentCaptor<PutObjectRequest> puts = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3Client, times(2)).putObject(puts.capture(), any(RequestBody.class));
+        assertThat(puts.getAllValues().get(1).metadata())
+                .containsEntry(DedupeUploadService.SOURCE_KEY, "copia.png")
+                .containsEntry(DedupeUploadService.SOURCE_ETAG, "\"e2\"");
+    }
+
+    private static MockMultipartFile file() {
+        return new MockMultipartFile("file", "a.png", "image/png", DATA);
+    }
+
+    private static HeadObjectResponse reference() {
+        return HeadObjectResponse.builder()
+                .metadata(Map.of(DedupeUploadService.SOURCE_KEY, "fotos%2Fa%C3%B1o.png",
+                        DedupeUploadService.SOURCE_ETAG, "\"e1\""))
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.microservicio.ms_imagenes_dyc.config.ObjectCacheProperties;
+
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class DiskObjectCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("commit → la entrada queda en disco y el índice sobrevive a un reinicio")
+    void commit_persistsAcrossRestarts() throws Exception {
+        ObjectCacheProperties properties = properties(DataSize.ofMegabytes(1));
+        DiskObjectCache cache = new DiskObjectCache(properties);
+        cache.init();
+
+        store(cache, "a.png", new byte[] {1, 2, 3});
+        cache.shutdown();
+
+        DiskObjectCache restarted = new DiskObjectCache(properties);
+        restarted.init();
+        DiskObjectCache.Entry entry = restarted.get("bucketdyc", "a.png");
+
+        assertThat(entry).isNotNull();
+        assertThat(entry.eTag()).isEqualTo("\"v1\"");
+        assertThat(Files.readAllBytes(entry.path())).containsExactly(1, 2, 3);
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("commit → desaloja las entradas menos usadas al superar el presupuesto")
+    void commit_evictsLeastRecentlyUsed() throws Exception {
+        DiskObjectCache cache = new DiskObjectCache(properties(DataSize.ofBytes(20)));
+        cache.init();
+
+        store(cache, "a.png", new byte[10]);
+        store(cache, "b.png", new byte[10]);
+        cache.get("bucketdyc", "a.png");
+        store(cache, "c.png", new byte[10]);
+
+        assertThat(cache.get("bucketdyc", "a.png")).isNotNull();
+        assertThat(cache.get("bucketdyc", "b.png")).isNull();
+        assertThat(cache.get("bucketdyc", "c.png")).isNotNull();
+        assertThat(cache.totalBytes()).isEqualTo(20);
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("commit de una versión nueva → archivo propio; el anterior sigue legible hasta su borrado diferido")
+    void commit_newVersion_usesSeparateFile() throws Exception {
+        DiskObjectCache cache = new DiskObjectCache(properties(DataSize.ofMegabytes(1)));
+        cache.init();
+
+        store(cache, "a.png", new byte[] {1, 2, 3});
+        DiskObjectCache.Entry previous = cache.get("bucketdyc", "a.png");
+        store(cache, "a.png", new byte[] {4, 5});
+        DiskObjectCache.Entry current = cache.get("bucketdyc", "a.png");
+
+        assertThat(current.path()).isNotEqualTo(previous.path());
+        assertThat(Files.readAllBytes(current.path())).containsExactly(4, 5);
+        assertThat(Files.readAllBytes(previous.path())).containsExactly(1, 2, 3);
+        assertThat(cache.totalBytes()).isEqualTo(2);
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("close sin commit → descarta una escritura incompleta")
+    void close_withoutCommit_discardsPartialWrite() throws Exception {
+        DiskObjectCache cache = new DiskObjectCache(properties(DataSize.ofMegabytes(1)));
+        cache.init();
+
+        DiskObjectCache.PendingWrite pending = cache.begin("bucketdyc", "a.png", metadata(10));
+        pending.write(new byte[4], 0, 4);
+        pending.close();
+
+        assertThat(cache.get("bucketdyc", "a.png")).isNull();
+        try (var files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.toString().endsWith(".tmp"))).isEmpty();
+        }
+        cache.shutdown();
+    }
+
+    private ObjectCacheProperties properties(DataSize maxSize) {
+        ObjectCacheProperties properties = new ObjectCacheProperties();
+        properties.getDisk().setEnabled(true);
+        properties.getDisk().setDirectory(directory.toString());
+        properties.getDisk().setMaxSize(maxSize);
+        return properties;
+    }
+
+    private static void store(DiskObjectCache cache, String key, byte[] data) {
+        try (DiskObjectCache.PendingWrite pending = cache.begin("bucketdyc", key, metadata(data.length))) {
+            pending.write(data, 0, data.length);
+            pending.commit();
+        }
+    }
+
+    private static GetObjectResponse metadata(long length) {
+        return GetObjectResponse.builder().contentLength(length).eTag("\"v1\"").build();
+    }
+}
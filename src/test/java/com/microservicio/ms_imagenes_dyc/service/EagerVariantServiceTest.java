@@ -0,0 +1,192 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import com.microservicio.ms_imagenes_dyc.config.DeliveryProperties;
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.VariantStatusDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+@ExtendWith(MockitoExtension.class)
+class EagerVariantServiceTest {
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    private ImageResizeService imageResizeService;
+    private ContentDeliveryService contentDeliveryService;
+    private EagerVariantService service;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final S3Metrics metrics = new S3Metrics(ObservationRegistry.NOOP, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ImageProperties properties = new ImageProperties();
+        properties.setEagerVariants(List.of("150x150-cover", "600xauto", "600xauto-contain.nope"));
+        imageResizeService = new ImageResizeService(awsS3Service, properties, metrics, Runnable::run);
+        contentDeliveryService = new ContentDeliveryService(awsS3Service, imageResizeService,
+                new DeliveryProperties(), Runnable::run);
+        service = new EagerVariantService(imageResizeService, awsS3Service, contentDeliveryService, metrics,
+                properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        imageResizeService.shutdown();
+    }
+
+    @Test
+    @DisplayName("schedule → genera en segundo plano las variantes soportadas de una imagen")
+    void schedule_generatesConfiguredVariants() throws Exception {
+        when(awsS3Service.download("bucketdyc", "a.png", null, null))
+                .thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), png(800, 400)));
+
+        service.schedule("bucketdyc", "a.png", "image/png", 1024);
+
+        verify(awsS3Service, timeout(5000)).uploadBytes(eq("bucketdyc"), eq("_variants/a.png/150x150-cover.png"),
+                any(), eq("image/png"));
+        verify(awsS3Service, timeout(5000)).uploadBytes(eq("bucketdyc"), eq("_variants/a.png/600xauto-contain.png"),
+                any(), eq("image/png"));
+    }
+
+    @Test
+    @DisplayName("schedule → genera la copia WebP de tamaño original que /object negocia según Accept")
+    void schedule_generatesWebpConversionForNegotiation() throws Exception {
+        when(awsS3Service.download("bucketdyc", "a.png", null, null))
+                .thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), png(80, 40)));
+
+        service.schedule("bucketdyc", "a.png", "image/png", 1024);
+
+        ArgumentCaptor<byte[]> webp = ArgumentCaptor.forClass(byte[].class);
+        verify(awsS3Service, timeout(5000)).uploadBytes(eq("bucketdyc"), eq("_variants/a.png/autoxauto-contain.webp"),
+                webp.capture(), eq("image/webp"));
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(webp.getValue()));
+        assertThat(decoded.getWidth()).isEqualTo(80);
+        assertThat(decoded.getHeight()).isEqualTo(40);
+    }
+
+    @Test
+    @DisplayName("schedule con la cola llena → la subida no espera: se omite y se cuenta")
+    void schedule_queueFull_skipsWithoutBlockingCaller() throws Exception {
+        ImageProperties properties = new ImageProperties();
+        properties.setEagerVariants(List.of("150x150-cover"));
+        properties.setEagerThreads(1);
+        properties.setEagerQueueCapacity(1);
+        EagerVariantService busy = new EagerVariantService(imageResizeService, awsS3Service, contentDeliveryService,
+                metrics, properties);
+        CountDownLatch release = new CountDownLatch(1);
+        byte[] original = png(300, 300);
+        when(awsS3Service.download(eq("bucketdyc"), anyString(), isNull(), isNull())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), original);
+        });
+        try {
+            busy.schedule("bucketdyc", "a.png", "image/png", 1024);
+            busy.schedule("bucketdyc", "b.png", "image/png", 1024);
+            busy.schedule("bucketdyc", "c.png", "image/png", 1024);
+
+            assertThat(skipped("queue-full")).isEqualTo(1);
+            verify(awsS3Service, never()).download("bucketdyc", "c.png", null, null);
+        } finally {
+            release.countDown();
+            busy.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("schedule → un original más pesado que el máximo no se lee; sin tamaño se consulta con HEAD")
+    void schedule_skipsOriginalsAboveSizeCap() throws Exception {
+        long tooLarge = DataSize.ofMegabytes(33).toBytes();
+        when(awsS3Service.headObject("bucketdyc", "panorama.png"))
+                .thenReturn(HeadObjectResponse.builder().contentLength(tooLarge).build());
+
+        service.schedule("bucketdyc", "gigante.png", "image/png", tooLarge);
+        service.schedule("bucketdyc", "panorama.png", "image/png", -1);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (skipped("too-large") < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(skipped("too-large")).isEqualTo(2);
+        verify(awsS3Service, never()).download(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("schedule → ignora objetos que no son imágenes")
+    void schedule_ignoresNonImages() {
+        service.schedule("bucketdyc", "doc.pdf", "application/pdf", 1024);
+
+        verify(awsS3Service, never()).download(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("status → sin trabajo en curso consulta las variantes guardadas en S3")
+    void status_fallsBackToStoredVariants() {
+        when(awsS3Service.streamObjects("bucketdyc", "_variants/a.png/"))
+                .thenReturn(Stream.of(new S3ObjectDto("_variants/a.png/150x150-cover.png", 10L, null)));
+
+        List<VariantStatusDto> status = service.status("bucketdyc", "a.png");
+
+        assertThat(status).extracting(VariantStatusDto::getStatus)
+                .containsExactly("READY", "MISSING", "UNSUPPORTED");
+    }
+
+    @Test
+    @DisplayName("constructor → rechaza especificaciones de variante mal formadas")
+    void constructor_rejectsMalformedSpec() {
+        ImageProperties properties = new ImageProperties();
+        properties.setEagerVariants(List.of("grande"));
+
+        assertThatThrownBy(() -> new EagerVariantService(imageResizeService, awsS3Service, contentDeliveryService,
+                metrics, properties))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private double skipped(String reason) {
+        Counter counter = meterRegistry.find("s3.images.eager.skipped").tag("reason", reason).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+}
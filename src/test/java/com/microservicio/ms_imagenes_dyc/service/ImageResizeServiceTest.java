@@ -0,0 +1,201 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchResultDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class ImageResizeServiceTest {
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final S3Metrics metrics = new S3Metrics(ObservationRegistry.NOOP, meterRegistry);
+    private ImageResizeService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ImageResizeService(awsS3Service, new ImageProperties(), metrics, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("getVariant → si no existe, redimensiona el original y guarda la variante en S3")
+    void getVariant_generatesAndStoresMissingVariant() throws Exception {
+        ImageVariant variant = service.variantFor("fotos/a.png", 100, 50, "contain", null);
+        when(awsS3Service.download("bucketdyc", "_variants/fotos/a.png/100x50-contain.png", null, null))
+                .thenThrow(S3Exception.builder().statusCode(404).build());
+        when(awsS3Service.download("bucketdyc", "fotos/a.png", null, null))
+                .thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), png(400, 400)));
+
+        ResponseBytes<GetObjectResponse> result = service.getVariant("bucketdyc", "fotos/a.png", variant);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.asByteArray()));
+        assertThat(image.getWidth()).isEqualTo(50);
+        assertThat(image.getHeight()).isEqualTo(50);
+        ArgumentCaptor<byte[]> stored = ArgumentCaptor.forClass(byte[].class);
+        verify(awsS3Service).uploadBytes(eq("bucketdyc"), eq("_variants/fotos/a.png/100x50-contain.png"),
+                stored.capture(), eq("image/png"));
+        assertThat(stored.getValue()).isEqualTo(result.asByteArray());
+    }
+
+    @Test
+    @DisplayName("getVariant → peticiones simultáneas por la misma variante faltante la generan una sola vez")
+    void getVariant_coalescesConcurrentMisses() throws Exception {
+        int callers = 8;
+        ImageVariant variant = service.variantFor("a.png", 100, 50, "contain", null);
+        byte[] original = png(400, 400);
+        when(awsS3Service.download("bucketdyc", "_variants/a.png/100x50-contain.png", null, null))
+                .thenThrow(S3Exception.builder().statusCode(404).build());
+        // El original no llega hasta que las demás peticiones se sumaron a la generación en curso
+        when(awsS3Service.download("bucketdyc", "a.png", null, null)).thenAnswer(invocation -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalesced() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), original);
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<ResponseBytes<GetObjectResponse>>> results = IntStream.range(0, callers)
+                    .mapToObj(i -> pool.submit(() -> service.getVariant("bucketdyc", "a.png", variant)))
+                    .toList();
+            for (Future<ResponseBytes<GetObjectResponse>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS).asByteArray()).isNotEmpty();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(coalesced()).isEqualTo(callers - 1);
+        verify(awsS3Service, times(1)).download("bucketdyc", "a.png", null, null);
+        verify(awsS3Service, times(1)).uploadBytes(eq("bucketdyc"), eq("_variants/a.png/100x50-contain.png"),
+                any(), eq("image/png"));
+    }
+
+    @Test
+    @DisplayName("getVariant → si la variante ya existe no vuelve a redimensionar")
+    void getVariant_returnsStoredVariant() {
+        ImageVariant variant = service.variantFor("a.png", 100, null, "contain", "jpg");
+        ResponseBytes<GetObjectResponse> stored = ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"v1\"").build(), new byte[] {1, 2});
+        when(awsS3Service.download("bucketdyc", "_variants/a.png/100xauto-contain.jpg", null, null))
+                .thenReturn(stored);
+
+        assertThat(service.getVariant("bucketdyc", "a.png", variant)).isSameAs(stored);
+        verify(awsS3Service, never()).uploadBytes(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("resize → cover recorta al tamaño exacto")
+    void resize_coverCropsToExactSize() throws Exception {
+        ImageVariant variant = service.variantFor("a.png", 120, 80, "cover", "jpg");
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(service.resize(png(300, 600), variant)));
+
+        assertThat(image.getWidth()).isEqualTo(120);
+        assertThat(image.getHeight()).isEqualTo(80);
+    }
+
+    @Test
+    @DisplayName("variantFor → rechaza dimensiones fuera de rango y formatos desconocidos")
+    void variantFor_rejectsInvalidParameters() {
+        assertThatThrownBy(() -> service.variantFor("a.png", 0, 10, "contain", null))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> service.variantFor("a.png", 10, null, "cover", null))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> service.variantFor("a.png", 10, 10, "contain", "tiff2"))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    @DisplayName("onObjectChanged → borra con un DeleteObjects las variantes anteriores al cambio")
+    void onObjectChanged_deletesVariants() {
+        String recent = Instant.now().plusSeconds(5).toString();
+        when(awsS3Service.streamObjects("bucketdyc", "_variants/a.png/")).thenReturn(Stream.of(
+                new S3ObjectDto("_variants/a.png/10x10-contain.png", 1L, "2025-07-19T10:15:30Z"),
+                new S3ObjectDto("_variants/a.png/150x150-cover.png", 1L, recent)));
+        when(awsS3Service.deleteObjects("bucketdyc", List.of("_variants/a.png/10x10-contain.png")))
+                .thenReturn(List.of(new BatchResultDto("_variants/a.png/10x10-contain.png", true, null)));
+
+        service.onObjectChanged(new ObjectChangedEvent("bucketdyc", "a.png"));
+        service.onObjectChanged(new ObjectChangedEvent("bucketdyc", "_variants/a.png/10x10-contain.png"));
+        service.onObjectChanged(new ObjectChangedEvent("bucketdyc", "datos.csv"));
+
+        verify(awsS3Service).deleteObjects("bucketdyc", List.of("_variants/a.png/10x10-contain.png"));
+        verify(awsS3Service, never()).streamObjects("bucketdyc", "_variants/datos.csv/");
+        verify(awsS3Service, never()).deleteObject(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("resize → un original con más píxeles que el máximo se rechaza sin decodificarlo")
+    void resize_rejectsOversizedSource() throws Exception {
+        ImageProperties properties = new ImageProperties();
+        properties.setMaxSourcePixels(100 * 100);
+        ImageResizeService limited = new ImageResizeService(awsS3Service, properties, metrics, Runnable::run);
+        try {
+            ImageVariant variant = limited.variantFor("a.png", 10, 10, "contain", null);
+            assertThatThrownBy(() -> limited.resize(png(200, 100), variant))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode().value()).isEqualTo(413));
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    private double coalesced() {
+        var counter = meterRegistry.find("s3.coalesced").tag("operation", "variant").counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,215 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.config.MetadataIndexProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectPageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class MetadataIndexTest {
+
+    private static final String BUCKET = "bucketdyc";
+    private static final String MD5 = "\"0123456789abcdef0123456789abcdef\"";
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private MetadataIndex index;
+
+    @BeforeEach
+    void setUp() {
+        MetadataIndexProperties properties = new MetadataIndexProperties();
+        properties.setEnabled(true);
+        properties.setBuckets(List.of(BUCKET));
+        index = new MetadataIndex(awsS3Service, executor, properties, new ImageProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("reconcile → escanea cada prefijo del primer nivel y lista desde memoria con paginado")
+    void reconcile_scansPrefixesAndListsFromMemory() {
+        scanFixture();
+
+        index.reconcile(BUCKET);
+
+        assertThat(index.isReady(BUCKET)).isTrue();
+        S3ObjectPageDto first = index.list(BUCKET, null, null, 2, null);
+        assertThat(first.getObjects()).extracting(S3ObjectDto::getKey).containsExactly("a/1.png", "a/2.png");
+        assertThat(first.isTruncated()).isTrue();
+        assertThat(index.handles(BUCKET, first.getNextContinuationToken())).isTrue();
+
+        S3ObjectPageDto second = index.list(BUCKET, null, null, 2, first.getNextContinuationToken());
+        assertThat(second.getObjects()).extracting(S3ObjectDto::getKey).containsExactly("b/x/1.png", "b/y.png");
+        S3ObjectPageDto third = index.list(BUCKET, null, null, 2, second.getNextContinuationToken());
+        assertThat(third.getObjects()).extracting(S3ObjectDto::getKey).containsExactly("raiz.txt");
+        assertThat(third.isTruncated()).isFalse();
+
+        // Los ETag (simple, multipart y uno sin forma de MD5) y las fechas se conservan
+        assertThat(first.getObjects().get(0)).isEqualTo(object("a/1.png", 100, MD5));
+        assertThat(first.getObjects().get(1).getEtag()).isEqualTo("\"0123456789abcdef0123456789abcdef-3\"");
+        assertThat(third.getObjects().get(0).getEtag()).isEqualTo("otro-etag");
+
+        verify(awsS3Service, times(1)).listObjects(BUCKET, "", "/", null, null);
+    }
+
+    @Test
+    @DisplayName("list con delimiter → agrupa las carpetas y pagina sin repetirlas")
+    void list_withDelimiter_groupsCommonPrefixes() {
+        scanFixture();
+        index.reconcile(BUCKET);
+
+        S3ObjectPageDto first = index.list(BUCKET, null, "/", 2, null);
+        assertThat(first.getObjects()).isEmpty();
+        assertThat(first.getCommonPrefixes()).containsExactly("a/", "b/");
+        assertThat(first.isTruncated()).isTrue();
+
+        S3ObjectPageDto second = index.list(BUCKET, null, "/", 2, first.getNextContinuationToken());
+        assertThat(second.getObjects()).extracting(S3ObjectDto::getKey).containsExactly("raiz.txt");
+        assertThat(second.getCommonPrefixes()).isEmpty();
+
+        S3ObjectPageDto nested = index.list(BUCKET, "b/", "/", null, null);
+        assertThat(nested.getObjects()).extracting(S3ObjectDto::getKey).containsExactly("b/y.png");
+        assertThat(nested.getCommonPrefixes()).containsExactly("b/x/");
+    }
+
+    @Test
+    @DisplayName("onObjectChanged → subidas y borrados del servicio se reflejan sin volver a escanear")
+    void onObjectChanged_appliesWritesFromHead() throws Exception {
+        scanFixture();
+        index.reconcile(BUCKET);
+        when(awsS3Service.headObject(BUCKET, "a/3.png")).thenReturn(HeadObjectResponse.builder()
+                .contentLength(7L)
+                .lastModified(Instant.parse("2025-08-01T00:00:00Z"))
+                .eTag(MD5)
+                .build());
+        when(awsS3Service.headObject(BUCKET, "a/1.png"))
+                .thenThrow(S3Exception.builder().statusCode(404).build());
+
+        index.onObjectChanged(new ObjectChangedEvent(BUCKET, "a/3.png"));
+        index.onObjectChanged(new ObjectChangedEvent(BUCKET, "a/1.png"));
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        try (Stream<S3ObjectDto> objects = index.stream(BUCKET, "a/")) {
+            assertThat(objects).extracting(S3ObjectDto::getKey).containsExactly("a/2.png", "a/3.png");
+        }
+        verify(awsS3Service, times(1)).listObjects(BUCKET, "", "/", null, null);
+    }
+
+    @Test
+    @DisplayName("search → filtra por tamaño y fecha de modificación dentro del prefijo")
+    void search_filtersBySizeAndDate() {
+        scanFixture();
+        index.reconcile(BUCKET);
+
+        List<S3ObjectDto> large = index.search(BUCKET, null, new MetadataIndex.Filter(150L, null, null, null), 10);
+        assertThat(large).extracting(S3ObjectDto::getKey).containsExactly("a/2.png", "b/x/1.png");
+
+        List<S3ObjectDto> recent = index.search(BUCKET, "b/",
+                new MetadataIndex.Filter(null, null, Instant.parse("2025-07-20T00:00:00Z"), null), 10);
+        assertThat(recent).extracting(S3ObjectDto::getKey).containsExactly("b/y.png");
+
+        assertThat(index.search(BUCKET, null, MetadataIndex.Filter.NONE, 1)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("list con token del índice antes del escaneo → sigue en S3 con startAfter")
+    void list_withIndexTokenBeforeReady_continuesInS3() {
+        scanFixture();
+        index.reconcile(BUCKET);
+        String token = index.list(BUCKET, null, null, 1, null).getNextContinuationToken();
+
+        MetadataIndexProperties properties = new MetadataIndexProperties();
+        properties.setEnabled(true);
+        properties.setBuckets(List.of(BUCKET));
+        MetadataIndex otherPod = new MetadataIndex(awsS3Service, executor, properties, new ImageProperties());
+        S3ObjectPageDto page = new S3ObjectPageDto(List.of(), List.of(), null, false);
+        when(awsS3Service.listObjectsAfter(BUCKET, null, null, 1, "a/1.png")).thenReturn(page);
+
+        assertThat(otherPod.handles(BUCKET, token)).isTrue();
+        assertThat(otherPod.handles(BUCKET, null)).isFalse();
+        assertThat(otherPod.list(BUCKET, null, null, 1, token)).isSameAs(page);
+    }
+
+    @Test
+    @DisplayName("reconcile → las variantes generadas no se escanean, no se listan ni se consultan con HEAD")
+    void variants_areNotIndexed() {
+        when(awsS3Service.listObjects(BUCKET, "", "/", null, null)).thenReturn(new S3ObjectPageDto(
+                List.of(object("raiz.txt", 5, MD5)), List.of("_variants/", "a/"), null, false));
+        when(awsS3Service.streamObjects(BUCKET, "a/")).thenReturn(Stream.of(object("a/1.png", 100, MD5)));
+
+        index.reconcile(BUCKET);
+        index.onObjectChanged(new ObjectChangedEvent(BUCKET, "_variants/a/1.png/10x10-contain.png"));
+
+        try (Stream<S3ObjectDto> objects = index.stream(BUCKET, null)) {
+            assertThat(objects).extracting(S3ObjectDto::getKey).containsExactly("a/1.png", "raiz.txt");
+        }
+        assertThat(index.list(BUCKET, null, "/", null, null).getCommonPrefixes()).containsExactly("a/");
+        verify(awsS3Service, never()).streamObjects(BUCKET, "_variants/");
+        verify(awsS3Service, never()).headObject(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("bucket no configurado → no se indexa ni reacciona a eventos")
+    void unconfiguredBucket_isIgnored() {
+        index.onObjectChanged(new ObjectChangedEvent("otro", "a.png"));
+
+        assertThat(index.isReady("otro")).isFalse();
+        assertThat(index.handles("otro", null)).isFalse();
+        verify(awsS3Service, never()).headObject(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("successor → primera key posterior a todas las del prefijo")
+    void successor_incrementsLastCodePoint() {
+        assertThat(MetadataIndex.successor("fotos/")).isEqualTo("fotos0");
+        assertThat(MetadataIndex.successor("a" + Character.toString(Character.MAX_CODE_POINT))).isEqualTo("b");
+        assertThat(MetadataIndex.successor("")).isNull();
+    }
+
+    // raiz.txt en la raíz y las carpetas a/ y b/, cada una listada completa por separado
+    private void scanFixture() {
+        when(awsS3Service.listObjects(BUCKET, "", "/", null, null)).thenReturn(new S3ObjectPageDto(
+                List.of(object("raiz.txt", 5, "otro-etag")), List.of("a/", "b/"), null, false));
+        when(awsS3Service.streamObjects(BUCKET, "a/")).thenReturn(Stream.of(
+                object("a/1.png", 100, MD5),
+                object("a/2.png", 200, "\"0123456789abcdef0123456789abcdef-3\"")));
+        when(awsS3Service.streamObjects(BUCKET, "b/")).thenReturn(Stream.of(
+                object("b/x/1.png", 300, MD5),
+                new S3ObjectDto("b/y.png", 50L, "2025-07-21T08:00:00Z", MD5)));
+    }
+
+    private static S3ObjectDto object(String key, long size, String eTag) {
+        return new S3ObjectDto(key, size, "2025-07-19T10:15:30Z", eTag);
+    }
+}
@@ -0,0 +1,113 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.microservicio.ms_imagenes_dyc.config.UploadProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+@ExtendWith(MockitoExtension.class)
+class MultipartUploaderTest {
+
+    private static final int PART_SIZE = MultipartUploader.MIN_PART_SIZE;
+
+    @Mock
+    private S3Client s3Client;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private MultipartUploader uploader;
+
+    @BeforeEach
+    void setUp() {
+        UploadProperties properties = new UploadProperties();
+        properties.setPartSize(DataSize.ofBytes(PART_SIZE));
+        properties.setMaxInFlightParts(2);
+        properties.setBufferPoolSize(3);
+        uploader = new MultipartUploader(s3Client, properties, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("upload → un cuerpo menor que una parte se sube con un único PutObject")
+    void upload_smallBodyUsesPutObject() throws Exception {
+        long uploaded = uploader.upload("bucketdyc", "a.txt", new ByteArrayInputStream(new byte[10]), "text/plain");
+
+        assertThat(uploaded).isEqualTo(10);
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("upload → un cuerpo grande se sube por partes y se completa en orden")
+    void upload_largeBodyUsesMultipart() throws Exception {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("\"p" + invocation.<UploadPartRequest>getArgument(0).partNumber() + "\"").build());
+
+        long size = PART_SIZE * 3L + 123;
+        long uploaded = uploader.upload("bucketdyc", "video.mp4", new ByteArrayInputStream(new byte[(int) size]),
+                "video/mp4");
+
+        assertThat(uploaded).isEqualTo(size);
+        verify(s3Client, times(4)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().multipartUpload().parts())
+                .extracting(part -> part.partNumber() + part.eTag())
+                .containsExactly("1\"p1\"", "2\"p2\"", "3\"p3\"", "4\"p4\"");
+    }
+
+    @Test
+    @DisplayName("upload → si falla una parte se aborta la subida multipart")
+    void upload_abortsOnPartFailure() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(500).message("boom").build());
+
+        assertThatThrownBy(() -> uploader.upload("bucketdyc", "video.mp4",
+                new ByteArrayInputStream(new byte[PART_SIZE * 3]), "video/mp4"))
+                .isInstanceOf(S3Exception.class);
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3Client).abortMultipartUpload(abort.capture());
+        assertThat(abort.getValue().uploadId()).isEqualTo("u1");
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+}
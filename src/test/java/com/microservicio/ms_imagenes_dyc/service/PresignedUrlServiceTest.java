@@ -0,0 +1,107 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import com.microservicio.ms_imagenes_dyc.config.PresignProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.PresignedUrlDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+class PresignedUrlServiceTest {
+
+    private final S3Metrics metrics = new S3Metrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+    private final AwsCredentialsProvider credentials =
+            StaticCredentialsProvider.create(AwsBasicCredentials.create("AKID", "SECRET"));
+    private S3Presigner presigner;
+    private PresignedUrlService service;
+
+    @BeforeEach
+    void setUp() {
+        // Firmar es local: no hace falta red ni credenciales reales
+        presigner = presigner(credentials);
+        service = new PresignedUrlService(presigner, credentials, new PresignProperties(), metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        presigner.close();
+    }
+
+    @Test
+    @DisplayName("presignDownloads → una URL GET por key y reutiliza las ya firmadas")
+    void presignDownloads_cachesSignedUrls() {
+        List<PresignedUrlDto> first = service.presignDownloads("bucketdyc", List.of("a.png", "b.png"));
+        List<PresignedUrlDto> second = service.presignDownloads("bucketdyc", List.of("a.png"));
+
+        assertThat(first).extracting(PresignedUrlDto::getKey).containsExactly("a.png", "b.png");
+        assertThat(first.get(0).getUrl()).contains("a.png").contains("X-Amz-Signature");
+        assertThat(first.get(0).getMethod()).isEqualTo("GET");
+        assertThat(second.get(0)).isSameAs(first.get(0));
+    }
+
+    @Test
+    @DisplayName("presignDownload → con credenciales temporales informa y cachea solo hasta que vencen")
+    void presignDownload_capsExpirationAtCredentials() {
+        Instant credentialsExpiration = Instant.now().plus(5, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        AwsCredentialsProvider session = StaticCredentialsProvider.create(AwsSessionCredentials.builder()
+                .accessKeyId("ASIA")
+                .secretAccessKey("SECRET")
+                .sessionToken("TOKEN")
+                .expirationTime(credentialsExpiration)
+                .build());
+        try (S3Presigner sessionPresigner = presigner(session)) {
+            PresignedUrlService sessionService = new PresignedUrlService(sessionPresigner, session,
+                    new PresignProperties(), metrics);
+
+            PresignedUrlDto first = sessionService.presignDownload("bucketdyc", "a.png");
+            PresignedUrlDto second = sessionService.presignDownload("bucketdyc", "a.png");
+
+            assertThat(first.getExpiresAt()).isEqualTo(credentialsExpiration.toString());
+            // Vence dentro del margen de renovación: no se entrega una URL cacheada que está por caducar
+            assertThat(second).isNotSameAs(first);
+        }
+    }
+
+    @Test
+    @DisplayName("presignUpload → URL PUT con la validez de subida")
+    void presignUpload_returnsPutUrl() {
+        PresignedUrlDto upload = service.presignUpload("bucketdyc", "c.png", "image/png");
+
+        assertThat(upload.getMethod()).isEqualTo("PUT");
+        assertThat(upload.getUrl()).contains("X-Amz-Expires=900");
+    }
+
+    @Test
+    @DisplayName("constructor → el margen de renovación debe ser menor que la validez")
+    void constructor_rejectsMarginLongerThanTtl() {
+        PresignProperties properties = new PresignProperties();
+        properties.setRefreshMargin(Duration.ofHours(24));
+
+        assertThatThrownBy(() -> new PresignedUrlService(presigner, credentials, properties, metrics))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static S3Presigner presigner(AwsCredentialsProvider credentialsProvider) {
+        return S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentialsProvider)
+                .build();
+    }
+}
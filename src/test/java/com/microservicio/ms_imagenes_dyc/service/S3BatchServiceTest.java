@@ -0,0 +1,217 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.microservicio.ms_imagenes_dyc.config.BatchProperties;
+import com.microservicio.ms_imagenes_dyc.config.ImageProperties;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchDeleteRequestDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchMoveRequestDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.BatchResultDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.MoveDto;
+import com.microservicio.ms_imagenes_dyc.models.dto.S3ObjectDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class S3BatchServiceTest {
+
+    @Mock
+    private AwsS3Service awsS3Service;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private S3BatchService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new S3BatchService(awsS3Service, executor, new BatchProperties(), new ImageProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("move → una copia fallida no aborta el lote y su origen no se borra")
+    void move_reportsPartialFailure() {
+        doThrow(S3Exception.builder().statusCode(404)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("NoSuchKey").errorMessage("missing").build())
+                .build())
+                .when(awsS3Service).copyObject("bucketdyc", "b.png", "dest/b.png");
+        when(awsS3Service.deleteObjects("bucketdyc", List.of("a.png", "c.png")))
+                .thenReturn(List.of(new BatchResultDto("a.png", true, null), new BatchResultDto("c.png", true, null)));
+
+        List<BatchResultDto> results = service.move("bucketdyc", new BatchMoveRequestDto(List.of(
+                new MoveDto("a.png", "dest/a.png"),
+                new MoveDto("b.png", "dest/b.png"),
+                new MoveDto("c.png", "dest/c.png")), null, null));
+
+        assertThat(results).extracting(BatchResultDto::isSuccess).containsExactly(true, false, true);
+        assertThat(results.get(1).getError()).isEqualTo("NoSuchKey: missing");
+        verify(awsS3Service).copyObject("bucketdyc", "a.png", "dest/a.png");
+        verify(awsS3Service).copyObject("bucketdyc", "c.png", "dest/c.png");
+    }
+
+    @Test
+    @DisplayName("move por prefijo → renombra cada key bajo el nuevo prefijo")
+    void move_byPrefixRenamesKeys() {
+        when(awsS3Service.streamObjects("bucketdyc", "old/"))
+                .thenReturn(Stream.of(new S3ObjectDto("old/x/1.png", 1L, null)));
+        when(awsS3Service.deleteObjects("bucketdyc", List.of("old/x/1.png")))
+                .thenReturn(List.of(new BatchResultDto("old/x/1.png", true, null)));
+
+        List<BatchResultDto> results = service.move("bucketdyc", new BatchMoveRequestDto(null, "old/", "new/"));
+
+        verify(awsS3Service).copyObject("bucketdyc", "old/x/1.png", "new/x/1.png");
+        assertThat(results).singleElement().extracting(BatchResultDto::isSuccess).isEqualTo(true);
+    }
+
+    @Test
+    @DisplayName("delete → exige keys o un prefijo no vacío")
+    void delete_requiresKeysOrPrefix() {
+        assertThatThrownBy(() -> service.delete("bucketdyc", new BatchDeleteRequestDto(null, " ")))
+                .isInstanceOf(ResponseStatusException.class);
+        verify(awsS3Service, never()).deleteObjects(eq("bucketdyc"), anyList());
+    }
+
+    @Test
+    @DisplayName("exportZip → escribe los objetos del prefijo en orden, relativos a su carpeta")
+    void exportZip_writesEntriesInListingOrder() throws Exception {
+        BatchProperties properties = new BatchProperties();
+        properties.setZipPrefetchObjects(2);
+        properties.setZipPrefetchBytes(DataSize.ofBytes(4));
+        service = new S3BatchService(awsS3Service, executor, properties, new ImageProperties());
+        when(awsS3Service.streamObjects("bucketdyc", "fotos/2025"))
+                .thenReturn(Stream.of(object("fotos/2025/"), object("fotos/2025/a.png"),
+                        object("fotos/2025-b/nota.txt"), object("fotos/2025/c.png")));
+        when(awsS3Service.getObjectInputStream("bucketdyc", "fotos/2025/a.png")).thenReturn(stream("png-a"));
+        when(awsS3Service.getObjectInputStream("bucketdyc", "fotos/2025-b/nota.txt")).thenReturn(stream("texto largo"));
+        when(awsS3Service.getObjectInputStream("bucketdyc", "fotos/2025/c.png")).thenReturn(stream("c"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportZip("bucketdyc", "fotos/2025", out);
+
+        assertThat(unzip(out.toByteArray())).containsExactly(
+                Map.entry("2025/a.png", "png-a"),
+                Map.entry("2025-b/nota.txt", "texto largo"),
+                Map.entry("2025/c.png", "c"));
+    }
+
+    @Test
+    @DisplayName("exportZip → un objeto ilegible se omite y queda listado en ERRORES.txt")
+    void exportZip_listsFailuresInErrorsEntry() throws Exception {
+        when(awsS3Service.streamObjects("bucketdyc", "docs/"))
+                .thenReturn(Stream.of(object("docs/a.txt"), object("docs/b.txt")));
+        when(awsS3Service.getObjectInputStream("bucketdyc", "docs/a.txt")).thenThrow(S3Exception.builder()
+                .statusCode(404)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("NoSuchKey").errorMessage("missing").build())
+                .build());
+        when(awsS3Service.getObjectInputStream("bucketdyc", "docs/b.txt")).thenReturn(stream("b"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportZip("bucketdyc", "docs/", out);
+
+        assertThat(unzip(out.toByteArray())).containsExactly(
+                Map.entry("b.txt", "b"),
+                Map.entry(S3BatchService.ZIP_ERRORS_ENTRY, "docs/a.txt: NoSuchKey: missing"));
+    }
+
+    @Test
+    @DisplayName("exportZip → las variantes generadas no se incluyen")
+    void exportZip_skipsVariants() throws Exception {
+        when(awsS3Service.streamObjects("bucketdyc", "_"))
+                .thenReturn(Stream.of(object("_notas.txt"), object("_variants/a.png/10x10-contain.png")));
+        when(awsS3Service.getObjectInputStream("bucketdyc", "_notas.txt")).thenReturn(stream("n"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportZip("bucketdyc", "_", out);
+
+        assertThat(unzip(out.toByteArray())).containsExactly(Map.entry("_notas.txt", "n"));
+        verify(awsS3Service, never()).getObjectInputStream("bucketdyc", "_variants/a.png/10x10-contain.png");
+    }
+
+    @Test
+    @DisplayName("exportZip → normaliza las rutas y omite las que saldrían de la carpeta al extraer")
+    void exportZip_rejectsUnsafeEntryNames() throws Exception {
+        when(awsS3Service.streamObjects("bucketdyc", "docs/")).thenReturn(Stream.of(object("docs//a.txt"),
+                object("docs/../x.txt"), object("docs/./sub/b.txt"), object("docs/a.txt")));
+        when(awsS3Service.getObjectInputStream("bucketdyc", "docs//a.txt")).thenReturn(stream("a"));
+        when(awsS3Service.getObjectInputStream("bucketdyc", "docs/./sub/b.txt")).thenReturn(stream("b"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportZip("bucketdyc", "docs/", out);
+
+        assertThat(unzip(out.toByteArray())).containsExactly(
+                Map.entry("a.txt", "a"),
+                Map.entry("sub/b.txt", "b"),
+                Map.entry(S3BatchService.ZIP_ERRORS_ENTRY,
+                        "docs/../x.txt: ruta no válida dentro del ZIP\n"
+                                + "docs/a.txt: repite la ruta a.txt dentro del ZIP"));
+        verify(awsS3Service, never()).getObjectInputStream("bucketdyc", "docs/../x.txt");
+        verify(awsS3Service, never()).getObjectInputStream("bucketdyc", "docs/a.txt");
+    }
+
+    @Test
+    @DisplayName("exportZip → exige un prefijo no vacío")
+    void exportZip_requiresPrefix() {
+        assertThatThrownBy(() -> service.exportZip("bucketdyc", "", new ByteArrayOutputStream()))
+                .isInstanceOf(ResponseStatusException.class);
+        verify(awsS3Service, never()).streamObjects(eq("bucketdyc"), anyString());
+    }
+
+    private static S3ObjectDto object(String key) {
+        return new S3ObjectDto(key, 1L, null);
+    }
+
+    private static ResponseInputStream<GetObjectResponse> stream(String content) {
+        return new ResponseInputStream<>(GetObjectResponse.builder().lastModified(Instant.EPOCH).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static Map<String, String> unzip(byte[] zip) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,43 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class S3MetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final S3Metrics metrics = new S3Metrics(ObservationRegistry.NOOP, meterRegistry);
+
+    @Test
+    @DisplayName("bucket → un nombre que solo produce errores no crea su propia etiqueta")
+    void errorsOnUnknownBucket_useSharedTag() {
+        assertThatThrownBy(() -> metrics.run("delete", "inventado", () -> {
+            throw S3Exception.builder().statusCode(404).build();
+        })).isInstanceOf(S3Exception.class);
+
+        assertThat(meterRegistry.find("s3.errors").tag("bucket", "inventado").counter()).isNull();
+        assertThat(meterRegistry.get("s3.errors").tag("bucket", S3Metrics.OTHER_BUCKETS).counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("bucket → con una operación exitosa el bucket obtiene su etiqueta hasta el máximo")
+    void successfulBuckets_getOwnTagUpToLimit() {
+        for (int i = 0; i < S3Metrics.MAX_BUCKET_TAGS; i++) {
+            metrics.bytes("download", "bucket-" + i, S3Metrics.IN, 1);
+        }
+        metrics.bytes("download", "uno-mas", S3Metrics.IN, 1);
+
+        assertThat(metrics.bucketTag("bucket-0", false)).isEqualTo("bucket-0");
+        assertThat(meterRegistry.find("s3.bytes").tag("bucket", "uno-mas").counter()).isNull();
+        assertThat(meterRegistry.get("s3.bytes").tag("bucket", S3Metrics.OTHER_BUCKETS).counter().count())
+                .isEqualTo(1);
+    }
+}
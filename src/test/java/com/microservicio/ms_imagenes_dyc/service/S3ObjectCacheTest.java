@@ -0,0 +1,75 @@
+package com.microservicio.ms_imagenes_dyc.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.microservicio.ms_imagenes_dyc.config.ObjectCacheProperties;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class S3ObjectCacheTest {
+
+    @Test
+    @DisplayName("put → respeta el presupuesto total en bytes")
+    void put_evictsWhenByteBudgetExceeded() {
+        ObjectCacheProperties properties = new ObjectCacheProperties();
+        properties.setMaxSize(DataSize.ofKilobytes(10));
+        S3ObjectCache cache = new S3ObjectCache(properties);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("bucketdyc", "img-" + i, bytes(4 * 1024), 0);
+        }
+        cache.cleanUp();
+
+        assertThat(cache.stats().getSizeBytes()).isLessThanOrEqualTo(10 * 1024);
+        assertThat(cache.stats().getEvictionCount()).isPositive();
+    }
+
+    @Test
+    @DisplayName("put → no guarda objetos más grandes que maxObjectSize")
+    void put_skipsOversizedObjects() {
+        ObjectCacheProperties properties = new ObjectCacheProperties();
+        properties.setMaxObjectSize(DataSize.ofBytes(100));
+        S3ObjectCache cache = new S3ObjectCache(properties);
+
+        cache.put("bucketdyc", "grande.png", bytes(101), 0);
+
+        assertThat(cache.get("bucketdyc", "grande.png")).isNull();
+    }
+
+    @Test
+    @DisplayName("invalidate → elimina solo la entrada de ese bucket y key")
+    void invalidate_removesEntry() {
+        S3ObjectCache cache = new S3ObjectCache(new ObjectCacheProperties());
+        cache.put("bucketdyc", "a.png", bytes(10), 0);
+        cache.put("otro", "a.png", bytes(10), 0);
+
+        cache.invalidate("bucketdyc", "a.png");
+
+        assertThat(cache.get("bucketdyc", "a.png")).isNull();
+        assertThat(cache.get("otro", "a.png")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("put → lo leído antes de un invalidate no se guarda; lo leído después sí")
+    void put_skipsContentFetchedBeforeInvalidate() {
+        S3ObjectCache cache = new S3ObjectCache(new ObjectCacheProperties());
+        long before = cache.generation("bucketdyc", "a.png");
+
+        cache.invalidate("bucketdyc", "a.png");
+        cache.put("bucketdyc", "a.png", bytes(10), before);
+        assertThat(cache.get("bucketdyc", "a.png")).isNull();
+
+        cache.put("bucketdyc", "a.png", bytes(20), cache.generation("bucketdyc", "a.png"));
+        assertThat(cache.get("bucketdyc", "a.png").content().asByteArrayUnsafe()).hasSize(20);
+        assertThat(cache.generation("otro", "a.png")).isZero();
+    }
+
+    private static ResponseBytes<GetObjectResponse> bytes(int size) {
+        return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), new byte[size]);
+    }
+}
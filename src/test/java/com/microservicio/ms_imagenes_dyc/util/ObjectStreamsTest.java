@@ -0,0 +1,56 @@
+package com.microservicio.ms_imagenes_dyc.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+class ObjectStreamsTest {
+
+    @Test
+    @DisplayName("transfer → copia todo el contenido y devuelve los bytes escritos")
+    void transfer_copiesWholeBody() throws Exception {
+        byte[] data = new byte[ObjectStreams.BUFFER_SIZE * 2 + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long copied = ObjectStreams.transfer(stream(data, new AtomicBoolean()), out);
+
+        assertThat(copied).isEqualTo(data.length);
+        assertThat(out.toByteArray()).isEqualTo(data);
+    }
+
+    @Test
+    @DisplayName("transfer → aborta la lectura de S3 si el cliente se desconecta")
+    void transfer_abortsWhenClientDisconnects() {
+        AtomicBoolean aborted = new AtomicBoolean();
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> ObjectStreams.transfer(stream(new byte[1024], aborted), broken))
+                .isInstanceOf(IOException.class);
+        assertThat(aborted).isTrue();
+    }
+
+    private static ResponseInputStream<GetObjectResponse> stream(byte[] data, AtomicBoolean aborted) {
+        return new ResponseInputStream<>(GetObjectResponse.builder().build(),
+                AbortableInputStream.create(new ByteArrayInputStream(data), () -> aborted.set(true)));
+    }
+}
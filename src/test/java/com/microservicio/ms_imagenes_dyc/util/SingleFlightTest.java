@@ -0,0 +1,101 @@
+package com.microservicio.ms_imagenes_dyc.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    @DisplayName("execute concurrente con la misma clave → una sola llamada y el mismo resultado para todos")
+    void execute_sharesInFlightCall() throws Exception {
+        CountDownLatch joined = new CountDownLatch(CALLERS - 1);
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(key -> joined.countDown());
+        AtomicInteger calls = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("a.png", () -> {
+                    calls.incrementAndGet();
+                    // La primera no termina hasta que las demás se sumaron
+                    await(joined);
+                    return "contenido";
+                })));
+            }
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("contenido");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("execute → la excepción de la llamada compartida llega a todos")
+    void execute_propagatesFailureToWaiters() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(key -> joined.countDown());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> singleFlight.execute("a.png", () -> {
+                started.countDown();
+                await(joined);
+                throw new IllegalStateException("S3 caído");
+            }));
+            await(started);
+            Future<String> second = executor.submit(() -> singleFlight.execute("a.png", () -> "no debería ejecutarse"));
+
+            assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause()
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("S3 caído");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("execute secuencial → no cachea: cada llamada terminada libera la clave")
+    void execute_doesNotCacheCompletedCalls() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(key -> { });
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("a.png", calls::incrementAndGet);
+        int second = singleFlight.execute("a.png", calls::incrementAndGet);
+
+        assertThat(second).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timeout esperando a las demás llamadas");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}